@@ -0,0 +1,132 @@
+package org.example;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+
+/**
+ * Small per-book JSON lookups and admin stock changes, used by the catalog page without reloading it.
+ */
+@RestController
+@RequestMapping("/api/books")
+public class BookApiController {
+
+    static final int MAX_IDS = 200;
+    static final int MAX_NEIGHBOURS = 20;
+
+    private final BookRepository bookRepository;
+    private final StockReservations reservations;
+    private final StockService stockService;
+    private final RestockService restockService;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final ApplicationEventPublisher events;
+
+    public BookApiController(BookRepository bookRepository, StockReservations reservations,
+                             StockService stockService, RestockService restockService,
+                             CoPurchaseIndex coPurchaseIndex, ApplicationEventPublisher events) {
+        this.bookRepository = bookRepository;
+        this.reservations = reservations;
+        this.stockService = stockService;
+        this.restockService = restockService;
+        this.coPurchaseIndex = coPurchaseIndex;
+        this.events = events;
+    }
+
+    public record StockAdjustment(int delta) {}
+
+    public record StockLevel(Long id, int inventory, int available) {}
+
+    public record AlsoBought(Long id, String title, String author, String coverUrl, Double price, double score) {}
+
+    /**
+     * Copies still available to add to a cart: stock minus what other carts hold.
+     * Served separately so the catalog page itself stays cacheable while carts fill up.
+     */
+    @GetMapping("/availability")
+    public Map<Long, Integer> availability(@RequestParam List<Long> ids) {
+        Map<Long, Integer> available = new LinkedHashMap<>();
+        for (BookInfo book : bookRepository.findAllById(ids.stream().limit(MAX_IDS).toList())) {
+            available.put(book.getId(), Math.max(0, book.getInventory() - reservations.reserved(book.getId())));
+        }
+        return available;
+    }
+
+    /**
+     * Books most often bought by the customers who bought this one, from {@link CoPurchaseIndex}.
+     * The book rows come from the second-level cache.
+     */
+    @GetMapping("/{id}/also-bought")
+    public ResponseEntity<List<AlsoBought>> alsoBought(@PathVariable Long id,
+                                                       @RequestParam(defaultValue = "5") int limit) {
+        if (bookRepository.findById(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        List<AlsoBought> books = new ArrayList<>();
+        for (CoPurchaseIndex.Neighbour neighbour : coPurchaseIndex.alsoBought(id, Math.min(limit, MAX_NEIGHBOURS))) {
+            bookRepository.findById(neighbour.bookId()).ifPresent(book -> books.add(new AlsoBought(book.getId(),
+                    book.getBookTitle(), book.getBookAuthor(), book.getBookCoverURL(), book.getBookPrice(), neighbour.score())));
+        }
+        return ResponseEntity.ok(books);
+    }
+
+    /**
+     * Applies a signed stock delta atomically and returns the new level, so the page can update the cell in place.
+     */
+    @PostMapping("/{id}/stock")
+    public ResponseEntity<StockLevel> adjustStock(@PathVariable Long id, @RequestBody StockAdjustment adjustment,
+                                                  HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        OptionalInt inventory = stockService.adjust(id, adjustment.delta());
+        if (inventory.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        events.publishEvent(new StockChangedEvent(Set.of(id)));
+
+        int level = inventory.getAsInt();
+        return ResponseEntity.ok(new StockLevel(id, level, Math.max(0, level - reservations.reserved(id))));
+    }
+
+    /**
+     * Bulk restock from the request body: one line per book, by bookId or isbn, with a delta or an
+     * absolute stock level. Everything valid is applied in one transaction.
+     *
+     * @param format "csv" (default, with a header row), "ndjson" or "json" (an array)
+     * @return per-line results, or 400 for an unknown format or unreadable input
+     */
+    @PostMapping("/restock")
+    public ResponseEntity<RestockResult> restock(@RequestParam(defaultValue = "csv") String format,
+                                                 HttpServletRequest request, HttpSession session) throws IOException {
+        User user = (User) session.getAttribute("user");
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        try {
+            return ResponseEntity.ok(restockService.restock(request.getInputStream(), format));
+        } catch (IllegalArgumentException e) {
+            System.out.println("⚠️ Restock refused: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
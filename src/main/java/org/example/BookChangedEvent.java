@@ -0,0 +1,23 @@
+package org.example;
+
+/**
+ * Published whenever a book is added or removed through the app (stock-only changes publish a StockChangedEvent),
+ * so in-memory catalog structures can update incrementally instead of rescanning book_info.
+ *
+ * @param bookId id of the book that changed
+ * @param book   the saved state, or null if the book was removed
+ */
+public record BookChangedEvent(Long bookId, BookInfo book) {
+
+    public static BookChangedEvent saved(BookInfo book) {
+        return new BookChangedEvent(book.getId(), book);
+    }
+
+    public static BookChangedEvent removed(Long bookId) {
+        return new BookChangedEvent(bookId, null);
+    }
+
+    public boolean isRemoval() {
+        return book == null;
+    }
+}
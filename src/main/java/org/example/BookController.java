@@ -2,9 +2,14 @@ package org.example;
 
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.*;
 
@@ -17,16 +22,63 @@ public class BookController {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookSearchService bookSearchService;
+
+    @Autowired
+    private CatalogSearchIndex searchIndex;
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Value("${bookstore.catalog.page-size:50}")
+    private int catalogPageSize;
+
     @GetMapping("/")
-    public String showInventory(Model model, HttpSession session) {
+    public String showInventory(@RequestParam(required = false) String after,
+                                @RequestParam(required = false) String before,
+                                Model model, HttpSession session, ServletWebRequest webRequest) {
+        // Unchanged catalog and same viewer: 304 before any query or rendering
+        if (catalogVersion.checkNotModified(webRequest, viewerVariant(session))) {
+            return null;
+        }
+
         BookInventory inventory = inventoryRepository.findAll().stream()
                 .findFirst()
                 .orElseGet(() -> inventoryRepository.save(new BookInventory()));
 
-        // ✅ Load all books from DB and sort alphabetically
-        List<BookInfo> allBooks = bookRepository.findAll().stream()
-                .sorted(Comparator.comparing(BookInfo::getBookTitle, String.CASE_INSENSITIVE_ORDER))
-                .toList();
+        // ✅ Seek one page at a time in title order instead of loading and sorting the whole catalog
+        CatalogCursor afterCursor = CatalogCursor.parse(after);
+        CatalogCursor beforeCursor = CatalogCursor.parse(before);
+        Pageable window = PageRequest.ofSize(catalogPageSize + 1); // one extra row tells us if there is more
+
+        List<BookInfo> pageBooks;
+        boolean hasPrev;
+        boolean hasNext;
+        if (beforeCursor != null) {
+            List<BookInfo> rows = new ArrayList<>(bookRepository.findCatalogPageBefore(
+                    beforeCursor.sortKey(), beforeCursor.id(), window));
+            hasPrev = rows.size() > catalogPageSize;
+            pageBooks = new ArrayList<>(rows.subList(0, Math.min(rows.size(), catalogPageSize)));
+            Collections.reverse(pageBooks);
+            hasNext = true;
+        } else {
+            List<BookInfo> rows = afterCursor != null
+                    ? bookRepository.findCatalogPageAfter(afterCursor.sortKey(), afterCursor.id(), window)
+                    : bookRepository.findCatalogFirstPage(window);
+            hasNext = rows.size() > catalogPageSize;
+            pageBooks = rows.subList(0, Math.min(rows.size(), catalogPageSize));
+            hasPrev = afterCursor != null;
+        }
 
         User user = (User) session.getAttribute("user");
         model.addAttribute("user", user);
@@ -34,7 +86,10 @@ public class BookController {
         model.addAttribute("isAdmin", user != null && user.isAdmin());
 
         model.addAttribute("inventory", inventory);
-        model.addAttribute("books", allBooks);
+        model.addAttribute("books", pageBooks);
+        model.addAttribute("totalBooks", searchIndex.size()); // every book is indexed, so no COUNT(*) per page view
+        model.addAttribute("prevCursor", hasPrev && !pageBooks.isEmpty() ? CatalogCursor.of(pageBooks.get(0)).toString() : null);
+        model.addAttribute("nextCursor", hasNext && !pageBooks.isEmpty() ? CatalogCursor.of(pageBooks.get(pageBooks.size() - 1)).toString() : null);
         model.addAttribute("newBook", new BookInfo());
         model.addAttribute("genres", getDistinctGenres());
 
@@ -42,8 +97,10 @@ public class BookController {
         model.addAttribute("minPrice", null);
         model.addAttribute("maxPrice", null);
         model.addAttribute("genre", "");
+        model.addAttribute("author", "");
+        model.addAttribute("publisher", "");
 
-        System.out.println("Loaded " + allBooks.size() + " books (sorted by title).");
+        System.out.println("Loaded page of " + pageBooks.size() + " books (sorted by title).");
         return "inventory";
     }
 
@@ -60,13 +117,13 @@ public class BookController {
         // *experimental*: auto-generate cover URL based on ISBN
         if (book.getBookISBN() != null && !book.getBookISBN().isEmpty()) {
             // remove hyphens and spaces before generating cover URL
-            String isbn = book.getBookISBN().trim().replaceAll("-", "").replaceAll("\\s+", "");
-            book.setBookCoverURL("https://covers.openlibrary.org/b/isbn/" + isbn + "-L.jpg");
+            book.setBookCoverURL(BookInfo.coverUrlForIsbn(BookInfo.normalizeIsbn(book.getBookISBN())));
         }
 
+        genreService.linkGenres(book);
         bookRepository.save(book);
-        inventory.addBook(book);
-        inventoryRepository.save(inventory);
+        inventoryRepository.addBookLink(inventory.getId(), book.getId());
+        events.publishEvent(BookChangedEvent.saved(book));
         return "redirect:/";
     }
 
@@ -82,17 +139,10 @@ public class BookController {
                 .findFirst()
                 .orElse(null);
 
-        if (inventory != null) {
-            BookInfo bookToRemove = inventory.getBooks().stream()
-                    .filter(b -> id.equals(b.getId()))
-                    .findFirst()
-                    .orElse(null);
-
-            if (bookToRemove != null) {
-                inventory.removeBook(bookToRemove);
-                inventoryRepository.save(inventory);
-                bookRepository.deleteById(id);
-            }
+        if (inventory != null && inventoryRepository.existsByIdAndBooks_Id(inventory.getId(), id)) {
+            inventoryRepository.removeBookLink(inventory.getId(), id);
+            bookRepository.deleteById(id);
+            events.publishEvent(BookChangedEvent.removed(id));
         }
 
         return "redirect:/";
@@ -103,34 +153,17 @@ public class BookController {
     public String searchBooks(@RequestParam(required = false) String title,
                               @RequestParam(required = false) Double minPrice,
                               @RequestParam(required = false) Double maxPrice,
-                              @RequestParam(required = false) String genre, HttpSession session,
-                              Model model) {
-
-        List<BookInfo> allBooks = bookRepository.findAll();
-
-        boolean noFilters =
-                (title == null || title.isBlank()) &&
-                        (genre == null || genre.isBlank()) &&
-                        (minPrice == null) &&
-                        (maxPrice == null);
-
-        // If no filters, just show everything
-        List<BookInfo> filtered;
-        if (noFilters) {
-            filtered = allBooks;
-        } else {
-            filtered = allBooks.stream()
-                    .filter(b -> title == null || title.isBlank() ||
-                            (b.getBookTitle() != null &&
-                                    b.getBookTitle().toLowerCase().contains(title.toLowerCase())))
-                    .filter(b -> genre == null || genre.isBlank() ||
-                            (b.getBookGenre() != null &&
-                                    b.getBookGenre().toLowerCase().contains(genre.toLowerCase())))
-                    .filter(b -> (minPrice == null || (b.getBookPrice() != null && b.getBookPrice() >= minPrice)) &&
-                            (maxPrice == null || (b.getBookPrice() != null && b.getBookPrice() <= maxPrice)))
-                    .toList();
+                              @RequestParam(required = false) String genre,
+                              @RequestParam(required = false) String author,
+                              @RequestParam(required = false) String publisher, HttpSession session,
+                              Model model, ServletWebRequest webRequest) {
+        if (catalogVersion.checkNotModified(webRequest, viewerVariant(session))) {
+            return null;
         }
 
+        // Index-backed search; facets are counted over the same result set
+        List<BookInfo> filtered = bookSearchService.search(title, author, genre, publisher, minPrice, maxPrice);
+
         BookInventory inventory = inventoryRepository.findAll().stream()
                 .findFirst()
                 .orElse(null);
@@ -144,20 +177,22 @@ public class BookController {
         model.addAttribute("isLoggedIn", loggedIn);
         model.addAttribute("isAdmin", admin);
 
-        filtered = new ArrayList<>(filtered).stream().sorted(Comparator.comparing(BookInfo::getBookTitle, String.CASE_INSENSITIVE_ORDER)).toList();
         model.addAttribute("inventory", inventory);
         model.addAttribute("books", filtered);
         model.addAttribute("genres", getDistinctGenres());
+        model.addAttribute("facets", bookSearchService.facets(filtered));
         model.addAttribute("newBook", new BookInfo());
 
         model.addAttribute("title", title);
         model.addAttribute("minPrice", minPrice);
         model.addAttribute("maxPrice", maxPrice);
         model.addAttribute("genre", genre);
-
+        model.addAttribute("author", author);
+        model.addAttribute("publisher", publisher);
 
         // ✅ Debugging
-        System.out.println("Search Request -> title=" + title + ", genre=" + genre +
+        System.out.println("Search Request -> title=" + title + ", author=" + author +
+                ", publisher=" + publisher + ", genre=" + genre +
                 ", minPrice=" + minPrice + ", maxPrice=" + maxPrice);
         System.out.println("Results found: " + filtered.size());
 
@@ -171,11 +206,7 @@ public class BookController {
             return "redirect:/login";
         }
 
-        bookRepository.findById(id).ifPresent(book -> {
-            book.setInventory(book.getInventory() + 1);
-            bookRepository.save(book);
-        });
-
+        adjustStock(id, 1);
         return "redirect:/";
     }
 
@@ -186,32 +217,25 @@ public class BookController {
             return "redirect:/login";
         }
 
-        bookRepository.findById(id).ifPresent(book -> {
-            int current = book.getInventory();
-            if (current > 0) {            // don’t go negative
-                book.setInventory(current - 1);
-                bookRepository.save(book);
-            }
-        });
-
+        adjustStock(id, -1);   // floored at zero
         return "redirect:/";
     }
 
+    // Form fallback for the JSON endpoint in BookApiController; same atomic update, no read-modify-write
+    private void adjustStock(Long id, int delta) {
+        if (stockService.adjust(id, delta).isPresent()) {
+            events.publishEvent(new StockChangedEvent(Set.of(id)));
+        }
+    }
 
+    // Pages show the viewer's name and role-specific controls, so each user gets their own ETag
+    private static String viewerVariant(HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        return user == null ? "anon" : "u" + user.getId();
+    }
 
-    // *experimental*
+    // Served from GenreService's cache, refreshed only after a book write
     private List<String> getDistinctGenres() {
-        return bookRepository.findAll().stream()
-                .map(BookInfo::getBookGenre)
-                .filter(g -> g != null && !g.isBlank()) // ✅ filter out null or empty
-                .flatMap(g -> Arrays.stream(g.split(",")))
-                .map(String::trim)
-                .filter(g -> !g.isEmpty())
-                .distinct()
-                .sorted(String.CASE_INSENSITIVE_ORDER)
-                .toList();
+        return genreService.getSortedGenreNames();
     }
-
-
-
-}
\ No newline at end of file
+}
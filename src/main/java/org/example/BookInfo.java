@@ -1,12 +1,34 @@
 package org.example;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Column;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.JoinTable;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_book_title_sort", columnList = "title_sort_key, id"),
+        @Index(name = "idx_book_price", columnList = "book_price")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class BookInfo {
 
     @Id
@@ -29,6 +51,26 @@ public class BookInfo {
     @Column(length = 2000)
     private String bookCoverURL; // full URL or relative filename
 
+    // optimistic lock: StockService's conditional decrement bumps it too, so stale copies can't overwrite stock
+    @Version
+    private Long version;
+
+    // lower-cased title kept in sync on every write so the catalog can ORDER BY / seek on an index
+    @Column(name = "title_sort_key", length = 2000)
+    private String titleSortKey;
+
+    // normalized form of bookGenres, kept in sync by GenreService.linkGenres
+    @JsonIgnore
+    @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+    @JoinTable(
+            name = "book_genre",
+            joinColumns = @JoinColumn(name = "book_id"),
+            inverseJoinColumns = @JoinColumn(name = "genre_id"),
+            indexes = @Index(name = "idx_book_genre_genre", columnList = "genre_id")
+    )
+    private Set<Genre> genres = new LinkedHashSet<>();
+
     // Constructors
     public BookInfo() {}
 
@@ -70,7 +112,13 @@ public class BookInfo {
         return bookCoverURL;
     }
     public Long getId(){ return id; }
+    // for rows inserted over JDBC (CatalogImportService); deliberately not a bean setter, so JSON can't set it
+    void assignGeneratedId(Long id) { this.id = id; }
     public int getInventory() {return inventory;}
+    @JsonIgnore
+    public String getTitleSortKey() {return titleSortKey;}
+    @JsonIgnore
+    public Set<Genre> getGenres() {return genres;}
 
 
     //ALL setters IDK if well need them
@@ -102,4 +150,30 @@ public class BookInfo {
     public boolean hasStock(int quantity) {return inventory >= quantity;}
     public void decreaseStock(int quantity) {this.inventory -= quantity;}
 
+    /**
+     * Normalizes a title into the key the catalog is ordered by.
+     * Must match the SQL backfill in CatalogSortKeyMigration.
+     */
+    public static String toSortKey(String title) {
+        return title == null ? "" : title.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Strips hyphens and whitespace from an ISBN, "" for null.
+     * Used for cover URLs and for matching duplicates on import.
+     */
+    public static String normalizeIsbn(String isbn) {
+        return isbn == null ? "" : isbn.trim().replaceAll("-", "").replaceAll("\\s+", "");
+    }
+
+    public static String coverUrlForIsbn(String normalizedIsbn) {
+        return "https://covers.openlibrary.org/b/isbn/" + normalizedIsbn + "-L.jpg";
+    }
+
+    @PrePersist
+    @PreUpdate
+    void refreshTitleSortKey() {
+        this.titleSortKey = toSortKey(bookTitle);
+    }
+
 }
@@ -1,5 +1,6 @@
 package org.example;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
 import java.util.ArrayList;
@@ -13,7 +14,12 @@ public class BookInventory {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToMany(cascade = CascadeType.MERGE, fetch = FetchType.EAGER)
+    // Lazy: membership is read through BookInventoryRepository summaries and keyset pages
+    @JsonIgnore
+    @OneToMany(cascade = CascadeType.MERGE, fetch = FetchType.LAZY)
+    @JoinTable(name = "book_inventory_books",
+            joinColumns = @JoinColumn(name = "book_inventory_id"),
+            inverseJoinColumns = @JoinColumn(name = "books_id"))
     private List<BookInfo> books = new ArrayList<>();
 
     public BookInventory() {}
@@ -36,6 +42,7 @@ public class BookInventory {
         return id;
     }
 
+    @JsonIgnore
     public List<BookInfo> getBooks(){
         List<BookInfo> sortedBooks = new ArrayList<>(books);
         sortedBooks.sort(Comparator.comparing(BookInfo::getBookTitle, String.CASE_INSENSITIVE_ORDER));
@@ -1,10 +1,19 @@
 package org.example;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,13 +23,36 @@ public class BookInventoryController {
 
     private final BookInventoryRepository bookInventoryRepository;
     private final BookRepository bookRepository;
+    private final GenreService genreService;
+    private final PriceIndex priceIndex;
+    private final ApplicationEventPublisher events;
+    private final CatalogExportService catalogExportService;
+    private final CatalogImportService catalogImportService;
+    private final CatalogVersion catalogVersion;
+    private final int defaultPageSize;
+
+    // upper bound for ?size= on the paged books endpoint
+    static final int MAX_PAGE_SIZE = 200;
 
     @Autowired
     public BookInventoryController(BookInventoryRepository bookInventoryRepository,
-                                   BookRepository bookRepository) {
+                                   BookRepository bookRepository,
+                                   GenreService genreService,
+                                   PriceIndex priceIndex,
+                                   ApplicationEventPublisher events,
+                                   CatalogExportService catalogExportService,
+                                   CatalogImportService catalogImportService,
+                                   CatalogVersion catalogVersion,
+                                   @Value("${bookstore.catalog.page-size:50}") int defaultPageSize) {
         this.bookInventoryRepository = bookInventoryRepository;
         this.bookRepository = bookRepository;
-
+        this.genreService = genreService;
+        this.priceIndex = priceIndex;
+        this.events = events;
+        this.catalogExportService = catalogExportService;
+        this.catalogImportService = catalogImportService;
+        this.catalogVersion = catalogVersion;
+        this.defaultPageSize = defaultPageSize;
     }
 
     /**
@@ -35,14 +67,15 @@ public class BookInventoryController {
     }
 
     /**
-     * Retrieves a specific book inventory by ID.
+     * Retrieves a summary of a specific book inventory by ID.
+     * Use {@link #getInventoryBooks} for the books themselves.
      *
      * @param id inventory ID
-     * @return BookInventory object or 404 if not found
+     * @return InventorySummary or 404 if not found
      */
     @GetMapping("/{id}")
-    public ResponseEntity<BookInventory> getBookInventory(@PathVariable Long id) {
-        return bookInventoryRepository.findById(id)
+    public ResponseEntity<InventorySummary> getBookInventory(@PathVariable Long id) {
+        return bookInventoryRepository.findSummaryById(id)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
 
@@ -51,11 +84,40 @@ public class BookInventoryController {
     /**
      * Lists all inventories.
      *
-     * @return list of BookInventory objects
+     * @return one InventorySummary per inventory
      */
     @GetMapping
-    public List<BookInventory> getAllInventories() {
-        return bookInventoryRepository.findAll();
+    public List<InventorySummary> getAllInventories() {
+        return bookInventoryRepository.findSummaries();
+    }
+
+    /**
+     * Retrieves one page of an inventory's books in title order.
+     *
+     * @param id inventory ID
+     * @param cursor nextCursor from the previous page, omit for the first page
+     * @param size page size, defaults to the catalog page size
+     * @return page of books or 404 if the inventory does not exist
+     */
+    @GetMapping("/{id}/books")
+    public ResponseEntity<InventoryBookPage> getInventoryBooks(@PathVariable Long id,
+                                                               @RequestParam(required = false) String cursor,
+                                                               @RequestParam(required = false) Integer size) {
+        if (!bookInventoryRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        int pageSize = Math.max(1, Math.min(size != null ? size : defaultPageSize, MAX_PAGE_SIZE));
+        PageRequest window = PageRequest.ofSize(pageSize + 1); // one extra row tells us if there is more
+
+        CatalogCursor after = CatalogCursor.parse(cursor);
+        List<BookInfo> rows = after == null
+                ? bookInventoryRepository.findBooksFirstPage(id, window)
+                : bookInventoryRepository.findBooksPageAfter(id, after.sortKey(), after.id(), window);
+
+        boolean hasNext = rows.size() > pageSize;
+        List<BookInfo> books = hasNext ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasNext ? CatalogCursor.of(books.get(books.size() - 1)).toString() : null;
+        return ResponseEntity.ok(new InventoryBookPage(books, nextCursor));
     }
 
     /**
@@ -78,20 +140,19 @@ public class BookInventoryController {
      *
      * @param id inventory ID
      * @param newBook book to add
-     * @return updated inventory or 404 if not found
+     * @return updated inventory summary or 404 if not found
      */
     @PostMapping("/{id}/books")
-    public ResponseEntity<BookInventory> addBookToInventory(@PathVariable Long id,
-                                                            @RequestBody BookInfo newBook) {
-        Optional<BookInventory> inventoryOpt = bookInventoryRepository.findById(id);
-        if (inventoryOpt.isEmpty()) return ResponseEntity.notFound().build();
+    public ResponseEntity<InventorySummary> addBookToInventory(@PathVariable Long id,
+                                                               @RequestBody BookInfo newBook) {
+        if (!bookInventoryRepository.existsById(id)) return ResponseEntity.notFound().build();
 
-        BookInventory inventory = inventoryOpt.get();
+        genreService.linkGenres(newBook);
         bookRepository.save(newBook);
-        inventory.addBook(newBook);
-        bookInventoryRepository.save(inventory);
+        bookInventoryRepository.addBookLink(id, newBook.getId());
+        events.publishEvent(BookChangedEvent.saved(newBook));
 
-        return ResponseEntity.ok(inventory);
+        return ResponseEntity.of(bookInventoryRepository.findSummaryById(id));
     }
 
     /**
@@ -99,28 +160,26 @@ public class BookInventoryController {
      *
      * @param inventoryId inventory ID
      * @param bookId book ID
-     * @return updated inventory or 404 if not found
+     * @return updated inventory summary or 404 if not found
      */
     @DeleteMapping("/{inventoryId}/books/{bookId}")
-    public ResponseEntity<BookInventory> removeBookFromInventory(@PathVariable Long inventoryId,
-                                                                 @PathVariable Long bookId) {
-        Optional<BookInventory> inventoryOpt = bookInventoryRepository.findById(inventoryId);
+    public ResponseEntity<InventorySummary> removeBookFromInventory(@PathVariable Long inventoryId,
+                                                                    @PathVariable Long bookId) {
         Optional<BookInfo> bookOpt = bookRepository.findById(bookId);
 
-        if (inventoryOpt.isEmpty() || bookOpt.isEmpty()) {
+        if (!bookInventoryRepository.existsById(inventoryId) || bookOpt.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
-        BookInventory inventory = inventoryOpt.get();
         BookInfo book = bookOpt.get();
 
-        inventory.removeBook(book);
-        bookInventoryRepository.save(inventory);
+        bookInventoryRepository.removeBookLink(inventoryId, bookId);
 
         // Optional: also remove the book from the main book table
         bookRepository.delete(book);
+        events.publishEvent(BookChangedEvent.removed(bookId));
 
-        return ResponseEntity.ok(inventory);
+        return ResponseEntity.of(bookInventoryRepository.findSummaryById(inventoryId));
     }
 
     /**
@@ -131,27 +190,121 @@ public class BookInventoryController {
      */
     @PostMapping("/books")
     public BookInfo addBookToLibrary(@RequestBody BookInfo book) {
-        return bookRepository.save(book);
+        genreService.linkGenres(book);
+        BookInfo saved = bookRepository.save(book);
+        events.publishEvent(BookChangedEvent.saved(saved));
+        return saved;
     }
 
     /**
      * Retrieves all books in the system.
      *
-     * @return list of BookInfo objects
+     * @return list of BookInfo objects, or 304 if the catalog has not changed since the client's copy
      */
     @GetMapping("/books")
-    public List<BookInfo> getAllBooks() {
+    public List<BookInfo> getAllBooks(ServletWebRequest webRequest) {
+        if (catalogVersion.checkNotModified(webRequest, null)) {
+            return null;
+        }
         return bookRepository.findAll();
     }
 
+    /**
+     * Streams every book as it is read from the database instead of building a list first.
+     *
+     * @param format "ndjson" (default, one JSON object per line) or "csv"
+     * @param response written to directly, 400 for an unknown format
+     */
+    @GetMapping("/books/export")
+    public void exportBooks(@RequestParam(defaultValue = "ndjson") String format,
+                            HttpServletResponse response) throws IOException {
+        switch (format.toLowerCase()) {
+            case "ndjson" -> {
+                response.setContentType("application/x-ndjson");
+                response.setCharacterEncoding("UTF-8");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalog.ndjson\"");
+                catalogExportService.writeNdjson(response.getOutputStream());
+            }
+            case "csv" -> {
+                response.setContentType("text/csv");
+                response.setCharacterEncoding("UTF-8");
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"catalog.csv\"");
+                catalogExportService.writeCsv(response.getOutputStream());
+            }
+            default -> response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unsupported export format: " + format);
+        }
+    }
+
+    /**
+     * Imports books from the request body as it is read, in batches, skipping ISBNs already in the catalog.
+     * Same CSV columns as the export; NDJSON uses the BookInfo JSON fields.
+     *
+     * @param format "ndjson" (default) or "csv"
+     * @return the finished job with its counters and errors, 400 for an unknown format, 401/403 unless an admin
+     */
+    @PostMapping("/books/import")
+    public ResponseEntity<ImportJob> importBooks(@RequestParam(defaultValue = "ndjson") String format,
+                                                 HttpServletRequest request, HttpSession session) throws IOException {
+        User user = (User) session.getAttribute("user");
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        if (!user.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        if (!format.equalsIgnoreCase("ndjson") && !format.equalsIgnoreCase("csv")) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(catalogImportService.importBooks(request.getInputStream(), format, "upload"));
+    }
+
+    /**
+     * Lists import jobs, including ones still running.
+     *
+     * @return jobs in start order
+     */
+    @GetMapping("/books/import")
+    public List<ImportJob> getImportJobs() {
+        return catalogImportService.getJobs();
+    }
+
+    /**
+     * Progress of a single import job.
+     *
+     * @param jobId job ID returned by the import
+     * @return ImportJob or 404 if not found
+     */
+    @GetMapping("/books/import/{jobId}")
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable String jobId) {
+        return catalogImportService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Counts books priced within a range without loading them.
+     *
+     * @param minPrice inclusive lower bound, open if omitted
+     * @param maxPrice inclusive upper bound, open if omitted
+     * @return number of matching books
+     */
+    @GetMapping("/books/count")
+    public int countBooksByPrice(@RequestParam(required = false) Double minPrice,
+                                 @RequestParam(required = false) Double maxPrice) {
+        return priceIndex.count(minPrice, maxPrice);
+    }
+
     /**
      * Retrieves a single book by its ID.
      *
      * @param bookId book ID
-     * @return BookInfo object or 404 if not found
+     * @return BookInfo object, 404 if not found, or 304 if the catalog has not changed since the client's copy
      */
     @GetMapping("/books/{bookId}")
-    public ResponseEntity<BookInfo> getBookById(@PathVariable Long bookId) {
+    public ResponseEntity<BookInfo> getBookById(@PathVariable Long bookId, ServletWebRequest webRequest) {
+        if (catalogVersion.checkNotModified(webRequest, null)) {
+            return null;
+        }
         return bookRepository.findById(bookId)
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
@@ -169,6 +322,7 @@ public class BookInventoryController {
             return ResponseEntity.notFound().build();
         }
         bookRepository.deleteById(bookId);
+        events.publishEvent(BookChangedEvent.removed(bookId));
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,6 +1,62 @@
 package org.example;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface BookInventoryRepository extends JpaRepository<BookInventory, Long> {
+
+    // One row per inventory, the books themselves are never loaded
+    @Query("""
+        SELECT new org.example.InventorySummary(i.id, COUNT(b), COALESCE(SUM(b.inventory), 0L))
+        FROM BookInventory i LEFT JOIN i.books b
+        GROUP BY i.id ORDER BY i.id
+    """)
+    List<InventorySummary> findSummaries();
+
+    @Query("""
+        SELECT new org.example.InventorySummary(i.id, COUNT(b), COALESCE(SUM(b.inventory), 0L))
+        FROM BookInventory i LEFT JOIN i.books b
+        WHERE i.id = :id GROUP BY i.id
+    """)
+    Optional<InventorySummary> findSummaryById(@Param("id") Long id);
+
+    boolean existsByIdAndBooks_Id(Long id, Long bookId);
+
+    // Keyset pages over idx_book_title_sort, same ordering as BookRepository.findCatalogFirstPage
+    @Query("SELECT b FROM BookInventory i JOIN i.books b WHERE i.id = :id ORDER BY b.titleSortKey, b.id")
+    List<BookInfo> findBooksFirstPage(@Param("id") Long id, Pageable page);
+
+    @Query("""
+        SELECT b FROM BookInventory i JOIN i.books b
+        WHERE i.id = :id AND (b.titleSortKey > :sortKey OR (b.titleSortKey = :sortKey AND b.id > :bookId))
+        ORDER BY b.titleSortKey, b.id
+    """)
+    List<BookInfo> findBooksPageAfter(@Param("id") Long id, @Param("sortKey") String sortKey,
+                                      @Param("bookId") Long bookId, Pageable page);
+
+    // Membership is written straight to the join table so the lazy books list is never initialized.
+    // The query space hint limits second-level cache invalidation to that table.
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "book_inventory_books"))
+    @Query(value = "INSERT INTO book_inventory_books (book_inventory_id, books_id) VALUES (:id, :bookId)",
+            nativeQuery = true)
+    void addBookLink(@Param("id") Long id, @Param("bookId") Long bookId);
+
+    @Transactional
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "book_inventory_books"))
+    @Query(value = "DELETE FROM book_inventory_books WHERE book_inventory_id = :id AND books_id = :bookId",
+            nativeQuery = true)
+    int removeBookLink(@Param("id") Long id, @Param("bookId") Long bookId);
 }
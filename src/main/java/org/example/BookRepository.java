@@ -1,10 +1,16 @@
 package org.example;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface BookRepository extends JpaRepository<BookInfo, Long> {
     // Containing means partial match, Ignore Case means capitals and lower case irrelevant
@@ -31,12 +37,67 @@ public interface BookRepository extends JpaRepository<BookInfo, Long> {
     List<String> findDistinctGenres();
 
     //a fallback method
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     List<BookInfo> findTop10ByOrderByBookPriceDesc();
 
     // genre based recommendations
     List<BookInfo> findTop10ByBookGenresOrderByBookPriceDesc(String genre);
 
-    @Query("SELECT b FROM BookInfo b WHERE b.bookGenres LIKE %:genre% ORDER BY b.bookPrice DESC")
-    List<BookInfo> findBooksByGenreContains(@Param("genre") String genre);
+    // (book id, genre id) pairs through book_genre, for GenreAffinityService
+    @Query("SELECT b.id, g.id FROM BookInfo b JOIN b.genres g WHERE b.id IN :ids")
+    List<Object[]> findGenreIdsOfBooks(@Param("ids") Collection<Long> ids);
+
+    // Books whose bookGenres string has not been linked to Genre rows yet
+    @Query("SELECT b FROM BookInfo b WHERE b.bookGenres IS NOT NULL AND b.bookGenres <> '' AND b.genres IS EMPTY")
+    List<BookInfo> findWithUnlinkedGenres();
+
+    // Only the columns CatalogSearchIndex needs: id, title, author, genres, publisher
+    @Query("SELECT b.id, b.bookTitle, b.bookAuthor, b.bookGenres, b.bookPublisher FROM BookInfo b")
+    List<Object[]> findSearchFields();
+
+    // Every book_genre link as (book id, genre id, genre name), for GenreFacetIndex
+    @Query("SELECT b.id, g.id, g.name FROM BookInfo b JOIN b.genres g")
+    List<Object[]> findGenreLinks();
+
+    // Only the columns PriceIndex and RecommendationIndex need: id, price
+    @Query("SELECT b.id, b.bookPrice FROM BookInfo b")
+    List<Object[]> findPriceFields();
+
+    // ISBNs as stored, CatalogImportService normalizes them for duplicate checks
+    @Query("SELECT b.bookISBN FROM BookInfo b WHERE b.bookISBN IS NOT NULL")
+    List<String> findAllIsbns();
+
+    // id and ISBN as stored, RestockService normalizes them to resolve restock lines
+    @Query("SELECT b.id, b.bookISBN FROM BookInfo b")
+    List<Object[]> findIdsAndIsbns();
+
+    // Forward-only cursor for exports: rows are fetched in batches, read-only, and bypass the second-level cache.
+    // Must be consumed inside a transaction and closed; CatalogExportService detaches each row after writing it.
+    @Query("SELECT b FROM BookInfo b ORDER BY b.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    Stream<BookInfo> streamAllForExport();
+
+    // Keyset (seek) pagination over idx_book_title_sort, pass PageRequest.ofSize(n) to bound the page
+    @Query("SELECT b FROM BookInfo b ORDER BY b.titleSortKey, b.id")
+    List<BookInfo> findCatalogFirstPage(Pageable page);
+
+    @Query("""
+        SELECT b FROM BookInfo b
+        WHERE b.titleSortKey > :sortKey OR (b.titleSortKey = :sortKey AND b.id > :id)
+        ORDER BY b.titleSortKey, b.id
+    """)
+    List<BookInfo> findCatalogPageAfter(@Param("sortKey") String sortKey, @Param("id") Long id, Pageable page);
+
+    // Walks backwards from the cursor, callers reverse the result to get title order
+    @Query("""
+        SELECT b FROM BookInfo b
+        WHERE b.titleSortKey < :sortKey OR (b.titleSortKey = :sortKey AND b.id < :id)
+        ORDER BY b.titleSortKey DESC, b.id DESC
+    """)
+    List<BookInfo> findCatalogPageBefore(@Param("sortKey") String sortKey, @Param("id") Long id, Pageable page);
 
 }
\ No newline at end of file
@@ -0,0 +1,106 @@
+package org.example;
+
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Catalog search shared by the /search page and /api/search.
+ * Filters are answered by the in-memory indexes and only the matching rows are loaded.
+ */
+@Service
+public class BookSearchService {
+
+    private final BookRepository bookRepository;
+    private final CatalogSearchIndex searchIndex;
+    private final PriceIndex priceIndex;
+    private final GenreFacetIndex genreFacetIndex;
+    private final GenreService genreService;
+
+    public BookSearchService(BookRepository bookRepository, CatalogSearchIndex searchIndex, PriceIndex priceIndex,
+                             GenreFacetIndex genreFacetIndex, GenreService genreService) {
+        this.bookRepository = bookRepository;
+        this.searchIndex = searchIndex;
+        this.priceIndex = priceIndex;
+        this.genreFacetIndex = genreFacetIndex;
+        this.genreService = genreService;
+    }
+
+    /**
+     * Case-insensitive substring match on the text filters plus an inclusive price range;
+     * null or blank filters are ignored. A genre that names a Genre row (as the dropdown and facets do)
+     * matches only books linked to exactly that genre, so the results agree with its facet count:
+     * "Fiction" doesn't bring in "Science Fiction". Any other genre text is a substring match.
+     *
+     * @return matching books sorted by title
+     */
+    public List<BookInfo> search(String title, String author, String genre, String publisher,
+                                 Double minPrice, Double maxPrice) {
+        String exactGenre = genre == null || genre.isBlank() ? null : genre.trim();
+        int[] inGenre = exactGenre == null ? null : genreFacetIndex.booksIn(exactGenre);
+        if (inGenre == null) {
+            exactGenre = null;
+        }
+
+        // Text filters are answered by the trigram index, genres by the genre index, price by the price index
+        int[] matches = matchText(title, author, exactGenre == null ? genre : null, publisher);
+        if (inGenre != null) {
+            matches = matches == null ? inGenre : CatalogSearchIndex.intersect(matches, inGenre);
+        }
+        if (minPrice != null || maxPrice != null) {
+            int[] priced = priceIndex.find(minPrice, maxPrice);
+            matches = matches == null ? priced : CatalogSearchIndex.intersect(matches, priced);
+        }
+        List<BookInfo> candidates = matches == null
+                ? bookRepository.findAll()
+                : bookRepository.findAllById(Arrays.stream(matches).mapToObj(Long::valueOf).toList());
+
+        // re-checking the filters on the loaded rows keeps results exact even if an index lags
+        String linkedGenre = exactGenre;
+        return candidates.stream()
+                .filter(b -> contains(b.getBookTitle(), title))
+                .filter(b -> linkedGenre == null
+                        ? contains(b.getBookGenre(), genre)
+                        : GenreService.splitGenres(b.getBookGenre()).contains(linkedGenre))
+                .filter(b -> contains(b.getBookAuthor(), author))
+                .filter(b -> contains(b.getBookPublisher(), publisher))
+                .filter(b -> (minPrice == null || (b.getBookPrice() != null && b.getBookPrice() >= minPrice)) &&
+                        (maxPrice == null || (b.getBookPrice() != null && b.getBookPrice() <= maxPrice)))
+                .sorted(Comparator.comparing(BookInfo::getBookTitle, String.CASE_INSENSITIVE_ORDER))
+                .toList();
+    }
+
+    /**
+     * Per-genre counts (for every genre in the dropdown) and a price histogram over the given results.
+     */
+    public SearchFacets facets(List<BookInfo> results) {
+        return SearchFacets.compute(results, genreFacetIndex, genreService.getSortedGenreNames());
+    }
+
+    private static boolean contains(String value, String term) {
+        return term == null || term.isBlank() ||
+                (value != null && value.toLowerCase().contains(term.toLowerCase()));
+    }
+
+    /**
+     * Intersects the search index postings for every non-blank text filter.
+     *
+     * @return sorted matching book ids, or null if no text filter was given
+     */
+    private int[] matchText(String title, String author, String genre, String publisher) {
+        int[] ids = null;
+        ids = narrow(ids, CatalogSearchIndex.Field.TITLE, title);
+        ids = narrow(ids, CatalogSearchIndex.Field.AUTHOR, author);
+        ids = narrow(ids, CatalogSearchIndex.Field.GENRE, genre);
+        ids = narrow(ids, CatalogSearchIndex.Field.PUBLISHER, publisher);
+        return ids;
+    }
+
+    private int[] narrow(int[] ids, CatalogSearchIndex.Field field, String term) {
+        if (term == null || term.isBlank() || (ids != null && ids.length == 0)) {
+            return ids;
+        }
+        int[] found = searchIndex.find(field, term);
+        return ids == null ? found : CatalogSearchIndex.intersect(ids, found);
+    }
+}
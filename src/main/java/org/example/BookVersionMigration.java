@@ -0,0 +1,36 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Rows saved before BookInfo had an @Version column have version NULL, which Spring Data
+ * would take to mean "new entity". Start them all at 0.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // raw JDBC behind Hibernate's back: run before anything warms the second-level cache
+public class BookVersionMigration implements CommandLineRunner {
+
+    private final DataSource dataSource;
+
+    public BookVersionMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             Statement s = c.createStatement()) {
+            int updated = s.executeUpdate("UPDATE book_info SET version = 0 WHERE version IS NULL");
+            if (updated > 0) {
+                System.out.println("✅ Initialized version for " + updated + " books.");
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * Published once after a batch of new books is saved, e.g. by a catalog import, in place of a
+ * BookChangedEvent per book. Listeners file the whole batch at once and bump or drop their caches once.
+ *
+ * @param books the saved books, with their ids and linked genres
+ */
+public record BooksAddedEvent(List<BookInfo> books) {
+}
@@ -0,0 +1,74 @@
+package org.example;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exposes Hibernate second-level and query cache hit/miss counters at runtime, plus recommendation cache
+ * and precompute stats.
+ */
+@RestController
+@RequestMapping("/api/cache")
+public class CacheStatsController {
+
+    private final Statistics statistics;
+    private final RecommendationCache recommendationCache;
+    private final RecommendationPrecomputeJob precomputeJob;
+
+    public CacheStatsController(EntityManagerFactory entityManagerFactory, RecommendationCache recommendationCache,
+                                RecommendationPrecomputeJob precomputeJob) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        this.recommendationCache = recommendationCache;
+        this.precomputeJob = precomputeJob;
+    }
+
+    /**
+     * Per-region counters plus query cache totals.
+     *
+     * @return map of region name to hit/miss/put counts
+     */
+    @GetMapping("/stats")
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> regions = new LinkedHashMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics r = statistics.getDomainDataRegionStatistics(region);
+            regions.put(region, regionStats(r.getHitCount(), r.getMissCount(), r.getPutCount(), r.getElementCountInMemory()));
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("secondLevel", regions);
+        stats.put("queryCache", regionStats(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(), -1));
+        return stats;
+    }
+
+    /**
+     * Customers with cached recommendations, and what the last precompute run did.
+     */
+    @GetMapping("/recommendations")
+    public Map<String, Object> getRecommendationStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedUsers", recommendationCache.size());
+        stats.put("precompute", precomputeJob.lastRun().orElse(null));
+        return stats;
+    }
+
+    private static Map<String, Long> regionStats(long hits, long misses, long puts, long elements) {
+        Map<String, Long> m = new LinkedHashMap<>();
+        m.put("hits", hits);
+        m.put("misses", misses);
+        m.put("puts", puts);
+        if (elements >= 0) {
+            m.put("elementsInMemory", elements);
+        }
+        return m;
+    }
+}
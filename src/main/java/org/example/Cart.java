@@ -1,7 +1,11 @@
 package org.example;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 @Entity
@@ -15,13 +19,17 @@ public class Cart {
     @JoinColumn(name = "user_id", unique = true, nullable = false)
     private User user;
 
-    @ManyToMany
-    @JoinTable(
-            name = "cart_books",
-            joinColumns = @JoinColumn(name = "cart_id"),
-            inverseJoinColumns = @JoinColumn(name = "book_id")
-    )
-    private Set<BookInfo> books = new LinkedHashSet<>();
+    // Lazy and inverse: adding a line doesn't load the others, CartService works on single rows
+    @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("id")
+    private List<CartLine> lines = new ArrayList<>();
+
+    // Running totals, kept in step with the lines so the summary never has to load them
+    @ColumnDefault("0")
+    private long totalCents;
+
+    @ColumnDefault("0")
+    private int itemCount;
 
     public Cart() {}
 
@@ -42,19 +50,98 @@ public class Cart {
         this.user = user;
     }
 
+    public List<CartLine> getLines() {
+        return lines;
+    }
+
+    /**
+     * Distinct books in the cart, in the order they were added.
+     */
     public Set<BookInfo> getBooks() {
-        return books;
+        Set<BookInfo> books = new LinkedHashSet<>();
+        for (CartLine line : lines) {
+            books.add(line.getBook());
+        }
+        return Collections.unmodifiableSet(books);
     }
 
-    public void setBooks(Set<BookInfo> books) {
-        this.books = books;
+    /**
+     * Total number of copies across all lines.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * Sum of quantity × unit price over the lines, in cents.
+     */
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public double getTotal() {
+        return totalCents / 100.0;
+    }
+
+    /**
+     * Moves the running totals by quantityDelta copies at the given unit price.
+     */
+    void recordChange(int quantityDelta, long unitPriceCents) {
+        itemCount += quantityDelta;
+        totalCents += quantityDelta * unitPriceCents;
     }
 
+    void clearTotals() {
+        itemCount = 0;
+        totalCents = 0;
+    }
+
+    /**
+     * Adds one copy, on the book's existing line if it has one.
+     */
     public void addBook(BookInfo book) {
-        this.books.add(book);
+        for (CartLine line : lines) {
+            if (isSameBook(line.getBook(), book)) {
+                line.changeQuantity(1);
+                recordChange(1, line.getUnitPriceCents());
+                return;
+            }
+        }
+        addLine(new CartLine(this, book, 1));
+    }
+
+    /**
+     * Replaces the cart contents with one copy of each book.
+     */
+    public void setBooks(Set<BookInfo> books) {
+        lines.clear();
+        clearTotals();
+        books.forEach(this::addBook);
     }
 
+    void addLine(CartLine line) {
+        lines.add(line);
+        recordChange(line.getQuantity(), line.getUnitPriceCents());
+    }
+
+    /**
+     * Removes the book's line, whatever its quantity.
+     */
     public void removeBook(BookInfo book) {
-        this.books.remove(book);
+        for (CartLine line : List.copyOf(lines)) {
+            if (isSameBook(line.getBook(), book)) {
+                removeLine(line);
+            }
+        }
+    }
+
+    void removeLine(CartLine line) {
+        if (lines.remove(line)) {
+            recordChange(-line.getQuantity(), line.getUnitPriceCents());
+        }
+    }
+
+    private static boolean isSameBook(BookInfo a, BookInfo b) {
+        return a == b || (a != null && b != null && a.getId() != null && a.getId().equals(b.getId()));
     }
 }
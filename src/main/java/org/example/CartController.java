@@ -1,17 +1,24 @@
 package org.example;
 
 import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 @Controller
 public class CartController {
 
     private final CartService cartService;
+    private final CartWriteBuffer cartWriteBuffer;
+    private final OrderPipeline orderPipeline;
 
-    public CartController(CartService cartService) {
+    public CartController(CartService cartService, CartWriteBuffer cartWriteBuffer, OrderPipeline orderPipeline) {
         this.cartService = cartService;
+        this.cartWriteBuffer = cartWriteBuffer;
+        this.orderPipeline = orderPipeline;
     }
 
     @PostMapping("/cart/add/{id}")
@@ -24,7 +31,13 @@ public class CartController {
             return "redirect:/login";
         }
 
-        cartService.addBookToCart(user, bookId);
+        // Hold a copy first, so the book can't sell out while it sits in the cart
+        if (!cartService.reserve(user, bookId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "No copies left to reserve");
+        }
+
+        // Buffered: acknowledged now, written to the cart shortly after
+        cartWriteBuffer.add(user, bookId);
         return "redirect:/";
     }
 
@@ -37,10 +50,42 @@ public class CartController {
             return "redirect:/login";
         }
 
+        cartWriteBuffer.flush(user);
         cartService.removeBookFromCart(user, bookId);
         return "redirect:/cart";
     }
 
+    @PostMapping("/cart/increment/{id}")
+    public String incrementInCart(@PathVariable("id") Long bookId,
+                                  HttpSession session) {
+
+        User user = (User) session.getAttribute("user");
+        if (user == null || !user.isCustomer()) {
+            return "redirect:/login";
+        }
+
+        cartWriteBuffer.flush(user);
+        if (!cartService.reserve(user, bookId)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "No copies left to reserve");
+        }
+        cartService.addBookToCart(user, bookId);
+        return "redirect:/cart";
+    }
+
+    @PostMapping("/cart/decrement/{id}")
+    public String decrementInCart(@PathVariable("id") Long bookId,
+                                  HttpSession session) {
+
+        User user = (User) session.getAttribute("user");
+        if (user == null || !user.isCustomer()) {
+            return "redirect:/login";
+        }
+
+        cartWriteBuffer.flush(user);
+        cartService.decrementBookInCart(user, bookId);
+        return "redirect:/cart";
+    }
+
     @GetMapping("/cart")
     public String viewCart(Model model, HttpSession session) {
         User user = (User) session.getAttribute("user");
@@ -48,6 +93,7 @@ public class CartController {
             return "redirect:/login";
         }
 
+        cartWriteBuffer.flush(user);
         Cart cart = cartService.getCart(user);
 
         boolean loggedIn = true;
@@ -57,17 +103,33 @@ public class CartController {
         model.addAttribute("isLoggedIn", loggedIn);
         model.addAttribute("isAdmin", admin);
 
-        // Reuse the same "books" collection style as inventory
+        // One row per book with its quantity; "books" kept for anything that only needs the titles
+        model.addAttribute("lines", cart.getLines());
         model.addAttribute("books", cart.getBooks());
+        model.addAttribute("itemCount", cart.getItemCount());
         model.addAttribute("cartId", cart.getId());
 
-        double total = cartService.getCartTotal(user);
-        model.addAttribute("totalPrice", total);
+        // Running total kept on the cart row, no second lookup
+        model.addAttribute("totalPrice", cart.getTotal());
 
         // Cart page doesn’t need genres/search for now, but we coud add them later
         return "cart";
     }
 
+    /**
+     * Item count and total for the navbar badge and the cart page, without loading the cart lines.
+     */
+    @GetMapping("/api/cart/summary")
+    @ResponseBody
+    public ResponseEntity<CartSummary> cartSummary(HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        if (user == null || !user.isCustomer()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        cartWriteBuffer.flush(user);
+        return ResponseEntity.ok(cartService.getCartSummary(user));
+    }
+
     @PostMapping("/cart/checkout")
     public String checkout(HttpSession session) {
         User user = (User) session.getAttribute("user");
@@ -77,7 +139,9 @@ public class CartController {
             return "redirect:/login";
         }
 
-        cartService.checkout(user);
+        // Validate and enqueue; stock and history are handled by the order workers
+        cartWriteBuffer.flush(user);
+        cartService.placeOrder(user).ifPresent(orderPipeline::submit);
         return "redirect:/purchase-history";
     }
 
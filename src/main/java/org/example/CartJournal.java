@@ -0,0 +1,133 @@
+package org.example;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log for one stripe of {@link CartWriteBuffer}: every buffered add is appended here before it is
+ * acknowledged. The log is split into numbered segments. A flush seals the active segment, and the sealed segments
+ * are deleted once their adds are in the database. Segments found at startup are what the last run didn't delete;
+ * {@link CartJournalMarkers} says which of their users were already applied.
+ * <p>
+ * Appends are flushed to the OS on every write, so they survive the process dying, not the machine losing power.
+ */
+class CartJournal implements Closeable {
+
+    private static final Pattern SEGMENT = Pattern.compile("cart-(\\d+)\\.log");
+
+    record Entry(String segment, long userId, long bookId, int quantity) {}
+
+    private final Path dir;
+    private final List<Path> sealed = new ArrayList<>();
+    private long nextSeq;
+    private BufferedWriter out;
+
+    CartJournal(Path dir) throws IOException {
+        this.dir = dir;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> SEGMENT.matcher(p.getFileName().toString()).matches())
+                    .sorted(Comparator.comparingLong(CartJournal::seqOf))
+                    .forEach(sealed::add);
+        }
+        nextSeq = sealed.isEmpty() ? 1 : seqOf(sealed.get(sealed.size() - 1)) + 1;
+        openSegment();
+    }
+
+    /**
+     * Entries left behind by the previous run, oldest first. A torn last line from a crash mid-write is skipped.
+     */
+    synchronized List<Entry> leftovers() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        for (Path segment : sealed) {
+            String id = idOf(segment);
+            try (BufferedReader in = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] parts = line.split(" ");
+                    if (parts.length != 3) {
+                        continue;
+                    }
+                    try {
+                        entries.add(new Entry(id, Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2])));
+                    } catch (NumberFormatException ignored) {
+                        // torn write
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    synchronized void append(long userId, long bookId, int quantity) throws IOException {
+        out.write(userId + " " + bookId + " " + quantity);
+        out.newLine();
+        out.flush();
+    }
+
+    /**
+     * Closes the active segment and starts a new one. Everything appended so far now belongs to the sealed segments.
+     *
+     * @return ids of all sealed segments, including ones sealed earlier and not deleted yet
+     */
+    synchronized List<String> seal() throws IOException {
+        out.close();
+        sealed.add(segmentPath(nextSeq - 1));
+        openSegment();
+        return sealedIds();
+    }
+
+    synchronized List<String> sealedIds() {
+        return sealed.stream().map(this::idOf).toList();
+    }
+
+    /**
+     * Drops the sealed segments once every entry in them is applied.
+     *
+     * @return ids of the deleted segments
+     */
+    synchronized List<String> deleteSealed() throws IOException {
+        List<String> ids = sealedIds();
+        for (Path segment : sealed) {
+            Files.deleteIfExists(segment);
+        }
+        sealed.clear();
+        return ids;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void openSegment() throws IOException {
+        out = Files.newBufferedWriter(segmentPath(nextSeq++), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    // unique across stripes, e.g. "stripe-3/cart-7.log"
+    private String idOf(Path segment) {
+        return dir.getFileName() + "/" + segment.getFileName();
+    }
+
+    private Path segmentPath(long seq) {
+        return dir.resolve("cart-" + seq + ".log");
+    }
+
+    private static long seqOf(Path segment) {
+        Matcher m = SEGMENT.matcher(segment.getFileName().toString());
+        return m.matches() ? Long.parseLong(m.group(1)) : 0;
+    }
+}
@@ -0,0 +1,44 @@
+package org.example;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * "This user's adds from this journal segment are in cart_line." Written by {@link CartJournalMarkers} in the
+ * transaction that applies them, so a segment replayed after a crash skips users it already applied.
+ * Mapped so the schema is managed with the rest; never loaded as an entity.
+ */
+@Entity
+@Table(name = "cart_journal_applied")
+@IdClass(CartJournalApplied.Key.class)
+public class CartJournalApplied {
+
+    @Id
+    @Column(length = 100)
+    private String segment;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    protected CartJournalApplied() {}
+
+    public static class Key implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private String segment;
+        private Long userId;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && Objects.equals(segment, k.segment) && Objects.equals(userId, k.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(segment, userId);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.example;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Which users' adds from which {@link CartJournal} segments have been applied. Markers live only as long as
+ * their segment: they are dropped when the segment is deleted, and stray ones are purged at startup.
+ */
+@Component
+public class CartJournalMarkers {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CartJournalMarkers(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Records the user's adds from these segments as applied. Call inside the transaction that applies them.
+     */
+    public void mark(Long userId, Collection<String> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("MERGE INTO cart_journal_applied (segment, user_id) KEY (segment, user_id) VALUES (?, ?)",
+                List.copyOf(segments), segments.size(), (ps, segment) -> {
+                    ps.setString(1, segment);
+                    ps.setLong(2, userId);
+                });
+    }
+
+    /**
+     * segment id -> users already applied from it
+     */
+    public Map<String, Set<Long>> applied() {
+        Map<String, Set<Long>> applied = new HashMap<>();
+        jdbcTemplate.query("SELECT segment, user_id FROM cart_journal_applied", rs -> {
+            applied.computeIfAbsent(rs.getString("segment"), s -> new HashSet<>()).add(rs.getLong("user_id"));
+        });
+        return applied;
+    }
+
+    public void forget(Collection<String> segments) {
+        if (segments.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM cart_journal_applied WHERE segment = ?",
+                List.copyOf(segments), segments.size(), (ps, segment) -> ps.setString(1, segment));
+    }
+
+    /**
+     * Drops markers of segments that no longer exist, e.g. when the process died between deleting a segment and
+     * forgetting it. Segment ids restart after a clean shutdown, so such a marker must not outlive startup.
+     */
+    public void retainOnly(Collection<String> segments) {
+        Set<String> keep = new HashSet<>(segments);
+        forget(applied().keySet().stream().filter(segment -> !keep.contains(segment)).toList());
+    }
+}
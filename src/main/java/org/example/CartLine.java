@@ -0,0 +1,71 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+/**
+ * One book in a cart with how many copies, so changing a quantity touches a single row.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_cart_line_cart_book", columnNames = {"cart_id", "book_id"}))
+public class CartLine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "cart_id")
+    private Cart cart;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "book_id")
+    private BookInfo book;
+
+    private int quantity;
+
+    // price when the book was first added; totals use this, not the live catalog price
+    private Double unitPrice;
+
+    protected CartLine() {}
+
+    public CartLine(Cart cart, BookInfo book, int quantity) {
+        this.cart = cart;
+        this.book = book;
+        this.quantity = quantity;
+        this.unitPrice = book.getBookPrice();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    public BookInfo getBook() {
+        return book;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public long getUnitPriceCents() {
+        return unitPrice == null ? 0 : Math.round(unitPrice * 100);
+    }
+
+    public double getSubtotal() {
+        return unitPrice == null ? 0 : unitPrice * quantity;
+    }
+
+    public void changeQuantity(int delta) {
+        this.quantity += delta;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Moves carts from the old cart_books join table to cart_line rows with quantity 1,
+ * then fills in the running totals of carts that have lines but no recorded totals yet.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // raw JDBC behind Hibernate's back: run before anything warms the second-level cache
+public class CartLineMigration implements CommandLineRunner {
+
+    private final DataSource dataSource;
+
+    public CartLineMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             Statement s = c.createStatement()) {
+
+            try {
+                int moved = s.executeUpdate(
+                        "INSERT INTO cart_line (cart_id, book_id, quantity, unit_price) " +
+                                "SELECT cb.cart_id, cb.book_id, 1, b.book_price " +
+                                "FROM cart_books cb JOIN book_info b ON b.id = cb.book_id " +
+                                "WHERE NOT EXISTS (SELECT 1 FROM cart_line l " +
+                                "WHERE l.cart_id = cb.cart_id AND l.book_id = cb.book_id)"
+                );
+                s.executeUpdate("DELETE FROM cart_books");
+                if (moved > 0) {
+                    System.out.println("✅ Moved " + moved + " cart entries to cart_line.");
+                }
+            } catch (SQLException ex) {
+                String msg = ex.getMessage() != null ? ex.getMessage().toLowerCase() : "";
+
+                // H2 uses 42102 for "table not found": nothing to migrate on a fresh database
+                if (ex.getErrorCode() != 42102 && !msg.contains("not found")) {
+                    throw ex;
+                }
+            }
+
+            int backfilled = s.executeUpdate(
+                    "UPDATE cart c SET " +
+                            "item_count = (SELECT SUM(l.quantity) FROM cart_line l WHERE l.cart_id = c.id), " +
+                            "total_cents = (SELECT SUM(ROUND(l.unit_price * 100) * l.quantity) FROM cart_line l WHERE l.cart_id = c.id) " +
+                            "WHERE c.item_count = 0 AND EXISTS (SELECT 1 FROM cart_line l WHERE l.cart_id = c.id)"
+            );
+            if (backfilled > 0) {
+                System.out.println("✅ Backfilled running totals for " + backfilled + " carts.");
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package org.example;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Optional;
+
+public interface CartLineRepository extends JpaRepository<CartLine, Long> {
+
+    // single row through uk_cart_line_cart_book
+    Optional<CartLine> findByCartIdAndBookId(Long cartId, Long bookId);
+
+    // Clears the persistence context afterwards so a loaded Cart.lines can't resurrect the deleted rows
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM CartLine l WHERE l.cart.id = :cartId")
+    int deleteByCartId(@Param("cartId") Long cartId);
+}
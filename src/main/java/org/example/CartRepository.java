@@ -1,9 +1,22 @@
 package org.example;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findByUser(User user);
+
+    // Row lock for cart writes: two tabs changing the same cart queue up instead of losing a total update
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Cart c WHERE c.user = :user")
+    Optional<Cart> findByUserForUpdate(@Param("user") User user);
+
+    // Just the running totals, no lines
+    @Query("SELECT new org.example.CartSummary(c.itemCount, c.totalCents) FROM Cart c WHERE c.user = :user")
+    Optional<CartSummary> findSummaryByUser(@Param("user") User user);
 }
@@ -1,23 +1,44 @@
 package org.example;
 
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
-
-import java.util.Objects;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Service
 public class CartService {
 
     private final CartRepository cartRepository;
+    private final CartLineRepository cartLineRepository;
     private final BookRepository bookRepository;
-    private final PurchaseHistoryService purchaseHistoryService;
-
-    public CartService(CartRepository cartRepository, BookRepository bookRepository, PurchaseHistoryService purchaseHistoryService) {
+    private final UserRepository userRepository;
+    private final OrderRepository orderRepository;
+    private final OrderService orderService;
+    private final StockReservations reservations;
+    private final CartJournalMarkers journalMarkers;
+    private final TransactionTemplate transactionTemplate;
+
+    public CartService(CartRepository cartRepository, CartLineRepository cartLineRepository, BookRepository bookRepository,
+                       UserRepository userRepository, OrderRepository orderRepository, OrderService orderService,
+                       StockReservations reservations, CartJournalMarkers journalMarkers,
+                       PlatformTransactionManager transactionManager) {
         this.cartRepository = cartRepository;
+        this.cartLineRepository = cartLineRepository;
         this.bookRepository = bookRepository;
-        this.purchaseHistoryService = purchaseHistoryService;
+        this.userRepository = userRepository;
+        this.orderRepository = orderRepository;
+        this.orderService = orderService;
+        this.reservations = reservations;
+        this.journalMarkers = journalMarkers;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     public Cart getOrCreateCart(User user) {
@@ -32,85 +53,191 @@ public class CartService {
         return getOrCreateCart(user);
     }
 
+    // Locks the cart row (creating the cart if needed) so line changes and the running totals move together
+    private Cart lockCart(User user) {
+        return cartRepository.findByUserForUpdate(user)
+                .orElseGet(() -> cartRepository.save(new Cart(user)));
+    }
+
+    /**
+     * Holds one more copy of the book for the user before it goes into their cart.
+     *
+     * @return false if the book doesn't exist or every remaining copy is already held
+     */
+    public boolean reserve(User user, Long bookId) {
+        return bookRepository.findById(bookId)
+                .map(book -> reservations.reserve(user.getId(), bookId, book.getInventory(), 1))
+                .orElse(false);
+    }
+
+    /**
+     * Adds one copy of the book: bumps its line's quantity, or inserts a new line.
+     */
+    @Transactional
     public void addBookToCart(User user, Long bookId) {
-        Cart cart = getOrCreateCart(user);
-        BookInfo book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new IllegalArgumentException("Book not found: " + bookId));
-        cart.addBook(book);
-        cartRepository.save(cart);
+        Cart cart = lockCart(user);
+        if (!addCopies(cart, bookId, 1)) {
+            throw new IllegalArgumentException("Book not found: " + bookId);
+        }
     }
 
-    public void removeBookFromCart(User user, Long bookId) {
-        Cart cart = getOrCreateCart(user);
-        Optional<BookInfo> bookOpt = cart.getBooks().stream()
-                .filter(b -> b.getId().equals(bookId))
-                .findFirst();
-
-        bookOpt.ifPresent(book -> {
-            cart.removeBook(book);
-            cartRepository.save(cart);
+    /**
+     * Applies coalesced adds from {@link CartWriteBuffer} in one transaction: book id -> copies to add.
+     * Books deleted since the click (and users deleted since) are skipped.
+     */
+    @Transactional
+    public void applyAdds(Long userId, Map<Long, Integer> quantities) {
+        Optional<User> user = userRepository.findById(userId);
+        if (user.isEmpty()) {
+            System.out.println("Dropping buffered cart adds for missing user " + userId);
+            return;
+        }
+        Cart cart = lockCart(user.get());
+        quantities.forEach((bookId, quantity) -> {
+            if (!addCopies(cart, bookId, quantity)) {
+                System.out.println("Dropping buffered cart add for missing book " + bookId);
+            }
         });
     }
 
+    /**
+     * Same as {@link #applyAdds(Long, Map)}, and records in the same transaction that the user's adds from these
+     * journal segments are applied, so replaying the segments after a crash doesn't add them twice.
+     */
+    @Transactional
+    public void applyAdds(Long userId, Map<Long, Integer> quantities, Collection<String> journalSegments) {
+        applyAdds(userId, quantities);
+        journalMarkers.mark(userId, journalSegments);
+    }
 
-    public void checkout(User user) {
-        Cart cart = getOrCreateCart(user);
-
-        if (cart.getBooks().isEmpty()) {
-            return; // nothing to do
+    // false if the book doesn't exist
+    private boolean addCopies(Cart cart, Long bookId, int quantity) {
+        Optional<CartLine> existing = cartLineRepository.findByCartIdAndBookId(cart.getId(), bookId);
+        if (existing.isPresent()) {
+            CartLine line = existing.get();
+            line.changeQuantity(quantity);
+            cart.recordChange(quantity, line.getUnitPriceCents());
+            return true;
         }
+        Optional<BookInfo> book = bookRepository.findById(bookId);
+        if (book.isEmpty()) {
+            return false;
+        }
+        CartLine line = cartLineRepository.save(new CartLine(cart, book.get(), quantity));
+        cart.addLine(line);
+        return true;
+    }
 
-        // 1) Count how many of each book is in the cart
-        Map<Long, Long> countsByBookId = cart.getBooks().stream()
-                .filter(Objects::nonNull)
-                .filter(b -> b.getId() != null)
-                .collect(Collectors.groupingBy(BookInfo::getId, Collectors.counting()));
-
-        // 2) Load fresh copies from the DB for stock checks
-        Iterable<BookInfo> booksFromDb = bookRepository.findAllById(countsByBookId.keySet());
-
-        // 3) Verify stock for each book
-        for (BookInfo book : booksFromDb) {
-            long needed = countsByBookId.getOrDefault(book.getId(), 0L);
-            if (!book.hasStock((int) needed)) {
-                // Not enough inventory: do NOT complete checkout.
-                // (You could instead throw an exception and show a nice message on the UI.)
-                System.out.println("Not enough stock for '" + book.getBookTitle()
-                        + "'. Needed: " + needed + ", available: " + book.getInventory());
-                return;
+    /**
+     * Takes one copy of the book out of the cart, dropping the line when it reaches zero.
+     */
+    @Transactional
+    public void decrementBookInCart(User user, Long bookId) {
+        Cart cart = lockCart(user);
+        cartLineRepository.findByCartIdAndBookId(cart.getId(), bookId).ifPresent(line -> {
+            if (line.getQuantity() > 1) {
+                line.changeQuantity(-1);
+                cart.recordChange(-1, line.getUnitPriceCents());
+            } else {
+                cart.removeLine(line);
+                cartLineRepository.delete(line);
             }
+            releaseAfterCommit(user.getId(), bookId, 1);
+        });
+    }
+
+    /**
+     * Removes the book's line, whatever its quantity.
+     */
+    @Transactional
+    public void removeBookFromCart(User user, Long bookId) {
+        Cart cart = lockCart(user);
+        cartLineRepository.findByCartIdAndBookId(cart.getId(), bookId).ifPresent(line -> {
+            cart.removeLine(line);
+            cartLineRepository.delete(line);
+            releaseAfterCommit(user.getId(), bookId, line.getQuantity());
+        });
+    }
+
+    // The copies leave the cart only if the transaction commits; until then the hold must stay
+    private void releaseAfterCommit(Long userId, Long bookId, int quantity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reservations.release(userId, bookId, quantity);
+                }
+            });
+        } else {
+            reservations.release(userId, bookId, quantity);
         }
+    }
 
-        // 4) All good → decrement inventory
-        for (BookInfo book : booksFromDb) {
-            long neededLong = countsByBookId.getOrDefault(book.getId(), 0L);
-            int needed = (int) neededLong;
-            if (needed > 0) {
-                book.decreaseStock(needed);
-                bookRepository.save(book);
+    /**
+     * Turns the cart into a PENDING order and empties the cart, in one transaction. Lines the user still
+     * holds reservations for skip the stock check; the rest are checked against the books already loaded
+     * with the lines. The pipeline takes the stock later, and releases the holds when it does.
+     *
+     * @return the order ID, or empty if the cart was empty or a book is already out of stock (the cart is kept)
+     */
+    public Optional<Long> placeOrder(User user) {
+        return Optional.ofNullable(transactionTemplate.execute(status -> {
+            Cart cart = lockCart(user);
+            List<CartLine> lines = cart.getLines();
+            if (lines.isEmpty()) {
+                return null; // nothing to do
             }
-        }
 
-        // 5) Move all books from cart → purchase history
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-        history.getBooks().addAll(cart.getBooks());
-        cart.getBooks().clear();
+            for (CartLine line : lines) {
+                BookInfo book = line.getBook();
+                if (!reservations.holds(user.getId(), book.getId(), line.getQuantity()) && !book.hasStock(line.getQuantity())) {
+                    System.out.println("Not enough stock for '" + book.getBookTitle() + "'. Needed: "
+                            + line.getQuantity() + ", available: " + book.getInventory());
+                    return null;
+                }
+            }
 
-        // 6) Persist
-        purchaseHistoryService.save(history);
-        cartRepository.save(cart);
-    }
+            CustomerOrder order = new CustomerOrder(user);
+            lines.forEach(line -> order.addLine(line.getBook(), line.getQuantity(), line.getUnitPrice()));
+            orderRepository.save(order);
 
+            // Empty the cart in one statement; the zeroed totals are flushed before the delete clears the session
+            cart.clearTotals();
+            cartLineRepository.deleteByCartId(cart.getId());
+            return order.getId();
+        }));
+    }
 
-    public double getCartTotal(User user) {
-        Cart cart = getOrCreateCart(user);
-        return cart.getBooks().stream()
-                .map(BookInfo::getBookPrice)
-                .filter(Objects::nonNull)
-                .mapToDouble(Double::doubleValue)
-                .sum();
+    /**
+     * Places the order and processes it on the calling thread instead of the pipeline.
+     * Stock is taken with conditional updates, so concurrent checkouts of the same title can't oversell.
+     *
+     * @return true if the order went through, false if the cart was empty or a book was out of stock
+     */
+    public boolean checkout(User user) {
+        return placeOrder(user).map(orderService::processNow).orElse(false);
     }
 
+    /**
+     * A rejected order's books go back into the cart, so the customer can adjust and try again.
+     */
+    @EventListener
+    @Transactional
+    public void onOrderRejected(OrderRejectedEvent event) {
+        applyAdds(event.userId(), event.quantities());
+    }
 
+    /**
+     * Sum of quantity × unit price over the cart's lines, read from the cart's running total.
+     */
+    public double getCartTotal(User user) {
+        return getCartSummary(user).total();
+    }
 
+    /**
+     * Item count and total for the badge and cart page: one cart row, no lines.
+     */
+    public CartSummary getCartSummary(User user) {
+        return cartRepository.findSummaryByUser(user).orElse(CartSummary.EMPTY);
+    }
 }
@@ -0,0 +1,19 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A cart's running totals, read from the cart row without loading its lines.
+ *
+ * @param itemCount  number of copies across all lines
+ * @param totalCents sum of quantity × unit price, in cents
+ */
+public record CartSummary(int itemCount, long totalCents) {
+
+    public static final CartSummary EMPTY = new CartSummary(0, 0);
+
+    @JsonProperty("total")
+    public double total() {
+        return totalCents / 100.0;
+    }
+}
@@ -0,0 +1,220 @@
+package org.example;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Write-behind buffer for "Add to Cart" clicks. An add is journaled and acknowledged straight away;
+ * adds are coalesced per user and book, and written to cart_line in one transaction per user on a
+ * short interval, or as soon as that user's cart is read, changed some other way, or checked out.
+ * <p>
+ * Users are spread over stripes by id, and each stripe has its own pending adds and its own journal, so clicks
+ * from different users rarely contend. Each user's transaction also marks their adds in the sealed journal
+ * segments as applied ({@link CartJournalMarkers}), so a crash before the segments are deleted doesn't replay
+ * them twice. With {@code bookstore.cart.write-behind.enabled=false} every add goes straight to {@link CartService}.
+ */
+@Component
+public class CartWriteBuffer {
+
+    private static final int STRIPES = 16;
+
+    private static final class Stripe {
+        // user id -> book id -> copies to add; guarded by the stripe's own monitor
+        final Map<Long, Map<Long, Integer>> pending = new HashMap<>();
+        // one flush per stripe at a time, so sealing and deleting segments don't interleave
+        final Object flushLock = new Object();
+        final CartJournal journal;
+
+        Stripe(CartJournal journal) {
+            this.journal = journal;
+        }
+    }
+
+    private final CartService cartService;
+    private final CartJournalMarkers journalMarkers;
+    private final boolean enabled;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    public CartWriteBuffer(CartService cartService, CartJournalMarkers journalMarkers,
+                           @Value("${bookstore.cart.write-behind.enabled:true}") boolean enabled,
+                           @Value("${bookstore.cart.journal-dir:./data/cart-journal}") String journalDir) throws IOException {
+        this.cartService = cartService;
+        this.journalMarkers = journalMarkers;
+        this.enabled = enabled;
+        if (!enabled) {
+            return;
+        }
+
+        Map<String, Set<Long>> applied = journalMarkers.applied();
+        List<String> leftoverSegments = new ArrayList<>();
+        int replayed = 0;
+        int skipped = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe stripe = new Stripe(new CartJournal(Path.of(journalDir, "stripe-" + i)));
+            stripes[i] = stripe;
+            for (CartJournal.Entry entry : stripe.journal.leftovers()) {
+                if (applied.getOrDefault(entry.segment(), Set.of()).contains(entry.userId())) {
+                    skipped++;
+                    continue;
+                }
+                stripe.pending.computeIfAbsent(entry.userId(), id -> new LinkedHashMap<>())
+                        .merge(entry.bookId(), entry.quantity(), Integer::sum);
+                replayed++;
+            }
+            if (stripe.pending.isEmpty()) {
+                stripe.journal.deleteSealed();
+            } else {
+                leftoverSegments.addAll(stripe.journal.sealedIds());
+            }
+        }
+        journalMarkers.retainOnly(leftoverSegments);
+        if (replayed > 0 || skipped > 0) {
+            System.out.println("🛒 Replaying " + replayed + " unflushed cart adds from " + journalDir
+                    + (skipped > 0 ? " (" + skipped + " already applied)" : ""));
+        }
+    }
+
+    /**
+     * Records one copy of the book for the user's cart. Returns once the add is journaled, before it reaches the database.
+     */
+    public void add(User user, Long bookId) {
+        if (!enabled) {
+            cartService.addBookToCart(user, bookId);
+            return;
+        }
+
+        Stripe stripe = stripeFor(user.getId());
+        try {
+            synchronized (stripe) {
+                stripe.journal.append(user.getId(), bookId, 1);
+                stripe.pending.computeIfAbsent(user.getId(), id -> new LinkedHashMap<>())
+                        .merge(bookId, 1, Integer::sum);
+            }
+            return;
+        } catch (IOException e) {
+            System.out.println("⚠️ Cart journal write failed, adding directly: " + e.getMessage());
+        }
+        cartService.addBookToCart(user, bookId);
+    }
+
+    /**
+     * Makes sure the user's buffered adds are in the database, e.g. before their cart is shown or checked out.
+     * Only this user's adds are written; a flush of their stripe that is already running is waited out.
+     */
+    public void flush(User user) {
+        if (!enabled) {
+            return;
+        }
+        Stripe stripe = stripeFor(user.getId());
+        synchronized (stripe.flushLock) {
+            Map<Long, Integer> books;
+            List<String> segments;
+            synchronized (stripe) {
+                books = stripe.pending.remove(user.getId());
+                if (books == null) {
+                    return;
+                }
+                try {
+                    segments = stripe.journal.seal();
+                } catch (IOException e) {
+                    // the adds are still in the active segment; leave them to the next scheduled flush
+                    stripe.pending.put(user.getId(), books);
+                    System.out.println("⚠️ Could not seal cart journal: " + e.getMessage());
+                    return;
+                }
+            }
+            // the sealed segments also hold other users' adds, which stay buffered; the scheduled flush deletes them
+            apply(stripe, user.getId(), books, segments);
+        }
+    }
+
+    /**
+     * Writes every buffered add to cart_line, one transaction per user. A user whose write fails keeps their
+     * adds buffered, and the stripe keeps its sealed segments, until a later flush gets them in.
+     */
+    @Scheduled(fixedDelayString = "${bookstore.cart.flush-interval-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        int users = 0;
+        int failed = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe.flushLock) {
+                Map<Long, Map<Long, Integer>> batch;
+                List<String> segments;
+                synchronized (stripe) {
+                    batch = new HashMap<>(stripe.pending);
+                    if (batch.isEmpty() && stripe.journal.sealedIds().isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        segments = batch.isEmpty() ? stripe.journal.sealedIds() : stripe.journal.seal();
+                    } catch (IOException e) {
+                        System.out.println("⚠️ Could not seal cart journal: " + e.getMessage());
+                        failed++;
+                        continue;
+                    }
+                    stripe.pending.clear();
+                }
+
+                int stripeFailed = 0;
+                for (Map.Entry<Long, Map<Long, Integer>> entry : batch.entrySet()) {
+                    if (!apply(stripe, entry.getKey(), entry.getValue(), segments)) {
+                        stripeFailed++;
+                    }
+                }
+                users += batch.size();
+                failed += stripeFailed;
+
+                // every entry in the sealed segments is applied (and marked) now, unless a user failed
+                if (stripeFailed == 0) {
+                    try {
+                        journalMarkers.forget(stripe.journal.deleteSealed());
+                    } catch (IOException | RuntimeException e) {
+                        System.out.println("⚠️ Could not delete flushed cart journal segments: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        if (users > 0 && failed == 0) {
+            System.out.println("🛒 Flushed buffered cart adds for " + users + " users.");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        flush();
+        for (Stripe stripe : stripes) {
+            stripe.journal.close();
+        }
+    }
+
+    // false if the write failed and the adds went back into the buffer; they are still in the sealed segments
+    private boolean apply(Stripe stripe, Long userId, Map<Long, Integer> books, List<String> segments) {
+        try {
+            cartService.applyAdds(userId, books, segments);
+            return true;
+        } catch (RuntimeException e) {
+            synchronized (stripe) {
+                Map<Long, Integer> pending = stripe.pending.computeIfAbsent(userId, id -> new LinkedHashMap<>());
+                books.forEach((bookId, quantity) -> pending.merge(bookId, quantity, Integer::sum));
+            }
+            System.out.println("⚠️ Flushing cart adds for user " + userId + " failed, will retry: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private Stripe stripeFor(Long userId) {
+        return stripes[Math.floorMod(Long.hashCode(userId), STRIPES)];
+    }
+}
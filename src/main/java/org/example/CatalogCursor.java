@@ -0,0 +1,37 @@
+package org.example;
+
+/**
+ * Seek position in the catalog: the (titleSortKey, id) of a boundary row.
+ * Rendered into URLs as "sortKey,id"; the id is split off at the last comma
+ * so titles that contain commas still round-trip.
+ */
+public record CatalogCursor(String sortKey, Long id) {
+
+    public static CatalogCursor of(BookInfo book) {
+        return new CatalogCursor(book.getTitleSortKey(), book.getId());
+    }
+
+    /**
+     * @param raw value of an after/before request parameter
+     * @return the cursor, or null if raw is missing or malformed
+     */
+    public static CatalogCursor parse(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+        int comma = raw.lastIndexOf(',');
+        if (comma < 0) {
+            return null;
+        }
+        try {
+            return new CatalogCursor(raw.substring(0, comma), Long.parseLong(raw.substring(comma + 1).trim()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return sortKey + "," + id;
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole catalog straight from a database cursor to an output stream.
+ * At most one book is held at a time, so memory does not grow with the catalog.
+ */
+@Service
+public class CatalogExportService {
+
+    // flush this often so the client starts receiving data without waiting for the full export
+    static final int FLUSH_EVERY = 500;
+
+    static final String CSV_HEADER =
+            "id,isbn,title,author,publisher,genres,price,inventory,description,coverUrl";
+
+    private final BookRepository bookRepository;
+    private final ObjectWriter bookWriter;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CatalogExportService(BookRepository bookRepository, ObjectMapper objectMapper) {
+        this.bookRepository = bookRepository;
+        this.bookWriter = objectMapper.writerFor(BookInfo.class);
+    }
+
+    /**
+     * One JSON object per line (application/x-ndjson), ordered by id.
+     *
+     * @return number of books written
+     */
+    @Transactional(readOnly = true)
+    public int writeNdjson(OutputStream out) throws IOException {
+        try (Stream<BookInfo> books = bookRepository.streamAllForExport()) {
+            int written = 0;
+            Iterator<BookInfo> it = books.iterator();
+            while (it.hasNext()) {
+                BookInfo book = it.next();
+                out.write(bookWriter.writeValueAsBytes(book));
+                out.write('\n');
+                written = afterRow(book, written, out);
+            }
+            out.flush();
+            return written;
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header row, ordered by id.
+     *
+     * @return number of books written
+     */
+    @Transactional(readOnly = true)
+    public int writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        try (Stream<BookInfo> books = bookRepository.streamAllForExport()) {
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+            int written = 0;
+            Iterator<BookInfo> it = books.iterator();
+            while (it.hasNext()) {
+                BookInfo book = it.next();
+                writer.write(csvRow(book));
+                written = afterRow(book, written, writer);
+            }
+            writer.flush();
+            return written;
+        }
+    }
+
+    static String csvRow(BookInfo book) {
+        return String.join(",",
+                csv(book.getId()), csv(book.getBookISBN()), csv(book.getBookTitle()), csv(book.getBookAuthor()),
+                csv(book.getBookPublisher()), csv(book.getBookGenre()), csv(book.getBookPrice()),
+                csv(book.getInventory()), csv(book.getBookDescription()), csv(book.getBookCoverURL())) + "\r\n";
+    }
+
+    static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String s = value.toString();
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+            return s;
+        }
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    // Detach so the persistence context stays empty, and flush the first row and every FLUSH_EVERY after it
+    private int afterRow(BookInfo book, int written, Flushable out) throws IOException {
+        entityManager.detach(book);
+        written++;
+        if (written == 1 || written % FLUSH_EVERY == 0) {
+            out.flush();
+        }
+        return written;
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Offline import: start the app with --bookstore.import.file=feed.csv (or .ndjson / .jsonl).
+ * Runs after the migrations and index warm-up.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class CatalogImportCommand implements CommandLineRunner {
+
+    private final CatalogImportService importService;
+    private final String importFile;
+
+    public CatalogImportCommand(CatalogImportService importService,
+                                @Value("${bookstore.import.file:}") String importFile) {
+        this.importService = importService;
+        this.importFile = importFile;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        if (importFile == null || importFile.isBlank()) {
+            return;
+        }
+        Path path = Path.of(importFile);
+        String format = path.getFileName().toString().toLowerCase().endsWith(".csv") ? "csv" : "ndjson";
+        try (InputStream in = Files.newInputStream(path)) {
+            importService.importBooks(in, format, path.toString());
+        }
+    }
+}
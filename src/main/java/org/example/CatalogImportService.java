@@ -0,0 +1,319 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Bulk catalog import from CSV (same columns as the export) or JSON lines.
+ * Input is parsed one row at a time and written in batches, each batch in its own transaction as one JDBC
+ * batch of book_info inserts and one of book_genre links.
+ * Rows whose normalized ISBN is already in the catalog, or earlier in the same feed, are skipped.
+ * Only the most recent finished jobs are kept for {@link #getJobs}; running ones are always listed.
+ */
+@Service
+public class CatalogImportService {
+
+    static final String INSERT_BOOK_SQL = """
+            INSERT INTO book_info (bookisbn, book_title, book_genres, book_author, book_publisher, book_description,
+                                   book_price, inventory, book_coverurl, title_sort_key, version)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+            """;
+
+    static final String INSERT_GENRE_LINK_SQL = "INSERT INTO book_genre (book_id, genre_id) VALUES (?, ?)";
+
+    private final BookRepository bookRepository;
+    private final GenreService genreService;
+    private final ApplicationEventPublisher events;
+    private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final int keepFinishedJobs;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    public CatalogImportService(BookRepository bookRepository, GenreService genreService,
+                                ApplicationEventPublisher events, ObjectMapper objectMapper,
+                                JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${bookstore.import.batch-size:500}") int batchSize,
+                                @Value("${bookstore.import.keep-finished-jobs:20}") int keepFinishedJobs) {
+        this.bookRepository = bookRepository;
+        this.genreService = genreService;
+        this.events = events;
+        this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.keepFinishedJobs = keepFinishedJobs;
+    }
+
+    /**
+     * Reads the stream to the end and imports it. The job is visible through {@link #getJob}
+     * while it runs.
+     *
+     * @param format "csv" or "ndjson"
+     * @param source shown on the job, e.g. a file name
+     */
+    public ImportJob importBooks(InputStream in, String format, String source) {
+        ImportJob job = new ImportJob(source, format);
+        jobs.put(job.getId(), job);
+        System.out.println("📥 Import " + job.getId() + " started from " + source + " (" + format + ")");
+        try {
+            Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            RowSource rows = switch (format.toLowerCase()) {
+                case "csv" -> csvRows(reader);
+                case "ndjson" -> ndjsonRows(new BufferedReader(reader));
+                default -> throw new IllegalArgumentException("Unsupported import format: " + format);
+            };
+            run(job, rows);
+            job.finish(ImportJob.Status.COMPLETED);
+        } catch (IOException | RuntimeException e) {
+            job.failed(0, "Import aborted after row " + job.getRowsRead() + ": " + e.getMessage());
+            job.finish(ImportJob.Status.FAILED);
+        }
+        evictFinishedJobs();
+        System.out.println("📥 Import " + job.getId() + " " + job.getStatus() + ": " + job.getImported() +
+                " imported, " + job.getDuplicates() + " duplicates, " + job.getFailed() + " failed");
+        return job;
+    }
+
+    public Optional<ImportJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public List<ImportJob> getJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(ImportJob::getStartedAt))
+                .toList();
+    }
+
+    // drops the oldest finished jobs beyond keepFinishedJobs
+    private void evictFinishedJobs() {
+        List<ImportJob> finished = jobs.values().stream()
+                .filter(job -> job.getFinishedAt() != null)
+                .sorted(Comparator.comparing(ImportJob::getFinishedAt).reversed())
+                .toList();
+        for (int i = keepFinishedJobs; i < finished.size(); i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+    }
+
+    private void run(ImportJob job, RowSource rows) throws IOException {
+        Set<String> seenIsbns = new HashSet<>();
+        for (String isbn : bookRepository.findAllIsbns()) {
+            seenIsbns.add(BookInfo.normalizeIsbn(isbn));
+        }
+
+        List<BookInfo> batch = new ArrayList<>(batchSize);
+        while (true) {
+            BookInfo book;
+            try {
+                book = rows.next();
+            } catch (IllegalArgumentException e) {
+                job.rowRead();
+                job.failed(1, "Row " + job.getRowsRead() + ": " + e.getMessage());
+                continue;
+            }
+            if (book == null) {
+                break;
+            }
+            job.rowRead();
+
+            String isbn = BookInfo.normalizeIsbn(book.getBookISBN());
+            if (!isbn.isEmpty() && !seenIsbns.add(isbn)) {
+                job.duplicate();
+                continue;
+            }
+            if (!isbn.isEmpty() && (book.getBookCoverURL() == null || book.getBookCoverURL().isBlank())) {
+                book.setBookCoverURL(BookInfo.coverUrlForIsbn(isbn));
+            }
+
+            batch.add(book);
+            if (batch.size() >= batchSize) {
+                writeBatch(job, batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(job, batch);
+        }
+    }
+
+    private void writeBatch(ImportJob job, List<BookInfo> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                genreService.linkGenres(batch);
+                insertBooks(batch);
+                insertGenreLinks(batch);
+            });
+        } catch (RuntimeException e) {
+            job.failed(batch.size(), "Batch ending at row " + job.getRowsRead() + " not saved: " + e.getMessage());
+            return;
+        }
+        // the rows went in behind Hibernate's back, so cached query results (genre names, top books) are stale
+        entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictQueryRegions();
+        job.imported(batch.size());
+        // one event for the batch, so caches are dropped and the catalog version bumped once
+        events.publishEvent(new BooksAddedEvent(List.copyOf(batch)));
+    }
+
+    // one JDBC batch; IDENTITY keys come back from the batch and are set on the books for the event
+    private void insertBooks(List<BookInfo> batch) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_BOOK_SQL, new String[]{"id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        BookInfo book = batch.get(i);
+                        ps.setString(1, book.getBookISBN());
+                        ps.setString(2, book.getBookTitle());
+                        ps.setString(3, book.getBookGenre());
+                        ps.setString(4, book.getBookAuthor());
+                        ps.setString(5, book.getBookPublisher());
+                        ps.setString(6, book.getBookDescription());
+                        ps.setObject(7, book.getBookPrice(), Types.DOUBLE);
+                        ps.setInt(8, book.getInventory());
+                        ps.setString(9, book.getBookCoverURL());
+                        ps.setString(10, BookInfo.toSortKey(book.getBookTitle()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return batch.size();
+                    }
+                }, keys);
+
+        List<Map<String, Object>> ids = keys.getKeyList();
+        if (ids.size() != batch.size()) {
+            throw new IllegalStateException("Expected " + batch.size() + " generated ids, got " + ids.size());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).assignGeneratedId(((Number) ids.get(i).values().iterator().next()).longValue());
+        }
+    }
+
+    private void insertGenreLinks(List<BookInfo> batch) {
+        List<Object[]> links = new ArrayList<>();
+        for (BookInfo book : batch) {
+            for (Genre genre : book.getGenres()) {
+                links.add(new Object[]{book.getId(), genre.getId()});
+            }
+        }
+        if (!links.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_GENRE_LINK_SQL, links);
+        }
+    }
+
+    /**
+     * Next parsed book, null at end of input. Throws IllegalArgumentException for a bad row
+     * after consuming it, so the caller can record it and carry on.
+     */
+    private interface RowSource {
+        BookInfo next() throws IOException;
+    }
+
+    private RowSource csvRows(Reader reader) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.next();
+        if (header == null) {
+            return () -> null;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("title")) {
+            throw new IllegalArgumentException("CSV header must contain a title column");
+        }
+
+        return () -> {
+            List<String> record;
+            do {
+                record = csv.next();
+            } while (record != null && record.size() == 1 && record.get(0).isBlank());
+            if (record == null) {
+                return null;
+            }
+            List<String> r = record;
+            Function<String, String> col = name -> {
+                Integer i = columns.get(name);
+                return i == null || i >= r.size() || r.get(i).isBlank() ? null : r.get(i);
+            };
+            return newBook(col.apply("title"), col.apply("genres"), parsePrice(col.apply("price")),
+                    col.apply("isbn"), col.apply("author"), col.apply("publisher"),
+                    col.apply("description"), col.apply("coverurl"), parseInventory(col.apply("inventory")));
+        };
+    }
+
+    private RowSource ndjsonRows(BufferedReader reader) {
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            BookInfo parsed;
+            try {
+                parsed = objectMapper.readValue(line, BookInfo.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("invalid JSON: " + e.getOriginalMessage());
+            }
+            // copy so an "id" in the feed never reaches persist()
+            return newBook(parsed.getBookTitle(), parsed.getBookGenre(), parsed.getBookPrice(),
+                    parsed.getBookISBN(), parsed.getBookAuthor(), parsed.getBookPublisher(),
+                    parsed.getBookDescription(), parsed.getBookCoverURL(), parsed.getInventory());
+        };
+    }
+
+    private static BookInfo newBook(String title, String genres, Double price, String isbn, String author,
+                                    String publisher, String description, String coverUrl, Integer inventory) {
+        if (title == null || title.isBlank()) {
+            throw new IllegalArgumentException("title is required");
+        }
+        BookInfo book = new BookInfo(title, genres, price, isbn, author, publisher, description, coverUrl);
+        if (inventory != null) {
+            book.setInventory(inventory);
+        }
+        return book;
+    }
+
+    private static Double parsePrice(String value) {
+        try {
+            return value == null ? null : Double.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid price '" + value + "'");
+        }
+    }
+
+    private static Integer parseInventory(String value) {
+        try {
+            return value == null ? null : Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid inventory '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over title, author, genre and publisher.
+ * Each trigram maps to a sorted int[] of book ids, so a substring query is
+ * an intersection of a few posting lists followed by a contains() check on
+ * the (already lower-cased) candidates, with no trip to the database.
+ */
+@Component
+public class CatalogSearchIndex implements CommandLineRunner {
+
+    public enum Field { TITLE, AUTHOR, GENRE, PUBLISHER }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final BookRepository bookRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // one trigram -> postings map per Field
+    private final Map<Field, Map<Long, Postings>> postings = new EnumMap<>(Field.class);
+
+    // lower-cased field values per book id, used to verify candidates and to remove a book's trigrams
+    private final Map<Integer, String[]> docs = new HashMap<>();
+
+    public CatalogSearchIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+        for (Field field : Field.values()) {
+            postings.put(field, new HashMap<>());
+        }
+    }
+
+    /**
+     * Builds the index from book_info at startup.
+     */
+    @Override
+    public void run(String... args) {
+        rebuild();
+    }
+
+    public void rebuild() {
+        List<Object[]> rows;
+        // read under the lock, or a book indexed between the read and clear() would be dropped
+        lock.writeLock().lock();
+        try {
+            rows = bookRepository.findSearchFields();
+            docs.clear();
+            postings.values().forEach(Map::clear);
+            for (Object[] row : rows) {
+                addLocked(toIntId((Long) row[0]), new String[]{
+                        lower((String) row[1]), lower((String) row[2]), lower((String) row[3]), lower((String) row[4])});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Search index built for " + rows.size() + " books.");
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isRemoval()) {
+            remove(event.bookId());
+        } else {
+            index(event.book());
+        }
+    }
+
+    @EventListener
+    public void onBooksAdded(BooksAddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.books().forEach(this::indexLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or re-indexes a single book.
+     */
+    public void index(BookInfo book) {
+        lock.writeLock().lock();
+        try {
+            indexLocked(book);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexLocked(BookInfo book) {
+        if (book == null || book.getId() == null) {
+            return;
+        }
+        int id = toIntId(book.getId());
+        removeLocked(id);
+        addLocked(id, new String[]{
+                lower(book.getBookTitle()), lower(book.getBookAuthor()),
+                lower(book.getBookGenre()), lower(book.getBookPublisher())});
+    }
+
+    public void remove(Long bookId) {
+        if (bookId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(toIntId(bookId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds books whose field contains the term, ignoring case
+     * (same semantics as {@code value.toLowerCase().contains(term.toLowerCase())}).
+     *
+     * @return sorted ids of matching books
+     */
+    public int[] find(Field field, String term) {
+        String needle = term.toLowerCase();
+        int f = field.ordinal();
+        Map<Long, Postings> fieldPostings = postings.get(field);
+
+        lock.readLock().lock();
+        try {
+            int[] candidates;
+            if (needle.length() < 3) {
+                // too short for a trigram: check every indexed value (still in memory, no DB)
+                candidates = allIdsLocked();
+            } else {
+                candidates = null;
+                for (int i = 0; i + 3 <= needle.length(); i++) {
+                    Postings list = fieldPostings.get(trigram(needle, i));
+                    if (list == null) {
+                        return EMPTY;
+                    }
+                    candidates = candidates == null ? list.toArray() : intersect(candidates, list.ids, list.size);
+                    if (candidates.length == 0) {
+                        return EMPTY;
+                    }
+                }
+            }
+
+            // trigrams can match out of order, so confirm the real substring
+            int n = 0;
+            int[] out = new int[candidates.length];
+            for (int id : candidates) {
+                String value = docs.get(id)[f];
+                if (value != null && value.contains(needle)) {
+                    out[n++] = id;
+                }
+            }
+            return Arrays.copyOf(out, n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Intersects two sorted id arrays.
+     */
+    public static int[] intersect(int[] a, int[] b) {
+        return intersect(a, b, b.length);
+    }
+
+    private static int[] intersect(int[] a, int[] b, int bLen) {
+        int[] out = new int[Math.min(a.length, bLen)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < bLen) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    private void addLocked(int id, String[] values) {
+        docs.put(id, values);
+        for (Field field : Field.values()) {
+            String v = values[field.ordinal()];
+            if (v == null) {
+                continue;
+            }
+            Map<Long, Postings> fieldPostings = postings.get(field);
+            for (int i = 0; i + 3 <= v.length(); i++) {
+                fieldPostings.computeIfAbsent(trigram(v, i), k -> new Postings()).add(id);
+            }
+        }
+    }
+
+    private void removeLocked(int id) {
+        String[] values = docs.remove(id);
+        if (values == null) {
+            return;
+        }
+        for (Field field : Field.values()) {
+            String v = values[field.ordinal()];
+            if (v == null) {
+                continue;
+            }
+            Map<Long, Postings> fieldPostings = postings.get(field);
+            for (int i = 0; i + 3 <= v.length(); i++) {
+                long key = trigram(v, i);
+                Postings list = fieldPostings.get(key);
+                if (list != null && list.remove(id) && list.size == 0) {
+                    fieldPostings.remove(key);
+                }
+            }
+        }
+    }
+
+    private int[] allIdsLocked() {
+        int[] ids = new int[docs.size()];
+        int n = 0;
+        for (Integer id : docs.keySet()) {
+            ids[n++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static String lower(String s) {
+        return s == null ? null : s.toLowerCase();
+    }
+
+    static int toIntId(Long id) {
+        return Math.toIntExact(id);
+    }
+
+    /**
+     * Growable sorted int array; ids are mostly appended in increasing order.
+     */
+    private static final class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] == id) {
+                return; // same trigram repeated in one value
+            }
+            int pos = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0 && pos < size) {
+                return; // already present
+            }
+            int insertAt = pos >= 0 ? pos : -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, insertAt, ids, insertAt + 1, size - insertAt);
+            ids[insertAt] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Backfills title_sort_key for rows written before the column existed,
+ * otherwise they would never show up in the keyset-paged catalog.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // raw JDBC behind Hibernate's back: run before anything warms the second-level cache
+public class CatalogSortKeyMigration implements CommandLineRunner {
+
+    private final DataSource dataSource;
+
+    public CatalogSortKeyMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             Statement s = c.createStatement()) {
+
+            int updated = s.executeUpdate(
+                    "UPDATE book_info " +
+                            "SET title_sort_key = LOWER(TRIM(COALESCE(book_title, ''))) " +
+                            "WHERE title_sort_key IS NULL"
+            );
+            if (updated > 0) {
+                System.out.println("✅ Backfilled title_sort_key for " + updated + " books.");
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+import org.springframework.http.HttpHeaders;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic catalog version, bumped on every BookChangedEvent, BooksAddedEvent or StockChangedEvent. Catalog responses use it as
+ * their ETag/Last-Modified so unchanged catalogs answer 304 before any query or rendering.
+ */
+@Component
+public class CatalogVersion {
+
+    // seeded from the clock so versions keep increasing across restarts
+    private final AtomicLong version = new AtomicLong(System.currentTimeMillis());
+
+    // HTTP dates have second precision, so this is kept in whole seconds
+    private volatile long lastModified = truncateToSeconds(System.currentTimeMillis());
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        bump();
+    }
+
+    // a bulk change is one new version, however many books it touched
+    @EventListener
+    public void onBooksAdded(BooksAddedEvent event) {
+        bump();
+    }
+
+    @EventListener
+    public void onStockChanged(StockChangedEvent event) {
+        bump();
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    public long lastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Strong ETag for the current version.
+     *
+     * @param variant distinguishes responses that also depend on something else, e.g. the logged-in user
+     */
+    public String etag(String variant) {
+        return "\"catalog-" + version.get() + (variant == null ? "" : "-" + variant) + "\"";
+    }
+
+    /**
+     * Sets ETag, Last-Modified and Cache-Control on the response and returns true if the client's
+     * copy is current, in which case the caller should return null and the response becomes a 304.
+     */
+    public boolean checkNotModified(ServletWebRequest request, String variant) {
+        if (request.getResponse() != null) {
+            // clients may keep a copy but must revalidate it every time
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().getHeaderValue());
+        }
+        return request.checkNotModified(etag(variant), lastModified);
+    }
+
+    // Bumped now, and again after commit, so a request that read the old rows before the commit can't keep
+    // its ETag current: otherwise clients would get 304s for stale stock until the next unrelated change
+    private void bump() {
+        increment();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment();
+                }
+            });
+        }
+    }
+
+    private void increment() {
+        version.incrementAndGet();
+        lastModified = truncateToSeconds(System.currentTimeMillis());
+    }
+
+    private static long truncateToSeconds(long millis) {
+        return millis - millis % 1000;
+    }
+}
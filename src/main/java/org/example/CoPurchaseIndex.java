@@ -0,0 +1,192 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * "Customers who bought this also bought": a sparse, symmetric book x book matrix of how many customers
+ * bought both, plus how many customers bought each book, all in {@link IntIntMap}s. Neighbours are ranked
+ * by cosine similarity, co-buyers / sqrt(buyers(a) * buyers(b)), so bestsellers don't top every list.
+ * <p>
+ * Built from completed order lines at startup; after that each completed order only adds the pairs
+ * between its newly owned books and the customer's earlier ones. Removing an entry from the purchase
+ * history doesn't undo the pairs: the sale still happened.
+ */
+@Component
+public class CoPurchaseIndex implements CommandLineRunner {
+
+    public record Neighbour(long bookId, double score) {}
+
+    private final OrderLineRepository orderLineRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // book -> number of distinct customers who bought it
+    private final IntIntMap buyers = new IntIntMap();
+
+    // book -> (other book -> number of customers who bought both)
+    private final Map<Integer, IntIntMap> coBuyers = new HashMap<>();
+
+    public CoPurchaseIndex(OrderLineRepository orderLineRepository) {
+        this.orderLineRepository = orderLineRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        List<Object[]> rows = orderLineRepository.findPurchasedUserBookPairs();
+        lock.writeLock().lock();
+        try {
+            buyers.clear();
+            coBuyers.clear();
+            Long user = null;
+            List<Integer> basket = new ArrayList<>();
+            for (Object[] row : rows) {
+                if (!row[0].equals(user)) {
+                    addLocked(basket, List.of());
+                    basket.clear();
+                    user = (Long) row[0];
+                }
+                basket.add(CatalogSearchIndex.toIntId((Long) row[1]));
+            }
+            addLocked(basket, List.of());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Co-purchase index built from " + rows.size() + " customer/book pairs.");
+    }
+
+    /**
+     * Counts the books these orders give their customers for the first time. Call in the transaction
+     * that completes them; the matrix only changes once it commits.
+     */
+    public void recordPurchases(Collection<CustomerOrder> orders) {
+        Map<Long, List<CustomerOrder>> byUser = new LinkedHashMap<>();
+        orders.forEach(order -> byUser.computeIfAbsent(order.getUser().getId(), id -> new ArrayList<>()).add(order));
+
+        List<Runnable> updates = new ArrayList<>();
+        byUser.forEach((userId, userOrders) -> {
+            Set<Integer> bought = new LinkedHashSet<>();
+            userOrders.forEach(order -> order.getLines().forEach(line -> bought.add(CatalogSearchIndex.toIntId(line.getBook().getId()))));
+            List<Long> orderIds = userOrders.stream().map(CustomerOrder::getId).toList();
+
+            List<Integer> earlier = orderLineRepository.findPurchasedBookIdsOutside(userId, orderIds).stream()
+                    .map(CatalogSearchIndex::toIntId)
+                    .toList();
+            bought.removeAll(earlier);
+            if (!bought.isEmpty()) {
+                List<Integer> newlyOwned = List.copyOf(bought);
+                updates.add(() -> add(newlyOwned, earlier));
+            }
+        });
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    updates.forEach(Runnable::run);
+                }
+            });
+        } else {
+            updates.forEach(Runnable::run);
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.isRemoval()) {
+            return;
+        }
+        int id = CatalogSearchIndex.toIntId(event.bookId());
+        lock.writeLock().lock();
+        try {
+            buyers.remove(id);
+            IntIntMap row = coBuyers.remove(id);
+            if (row != null) {
+                row.forEach((other, count) -> {
+                    IntIntMap otherRow = coBuyers.get(other);
+                    if (otherRow != null) {
+                        otherRow.remove(id);
+                    }
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The {@code limit} books most often bought by the same customers as this one, most similar first.
+     */
+    public List<Neighbour> alsoBought(Long bookId, int limit) {
+        int id = CatalogSearchIndex.toIntId(bookId);
+        lock.readLock().lock();
+        try {
+            IntIntMap row = coBuyers.get(id);
+            if (row == null || limit <= 0) {
+                return List.of();
+            }
+            double ownBuyers = Math.max(1, buyers.get(id));
+            Comparator<Neighbour> better = Comparator.comparingDouble(Neighbour::score)
+                    .thenComparing(Neighbour::bookId, Comparator.reverseOrder());
+            // the root is the weakest neighbour kept so far
+            PriorityQueue<Neighbour> heap = new PriorityQueue<>(limit + 1, better);
+            row.forEach((other, both) -> {
+                Neighbour candidate = new Neighbour(other, both / Math.sqrt(ownBuyers * Math.max(1, buyers.get(other))));
+                if (heap.size() < limit) {
+                    heap.add(candidate);
+                } else if (better.compare(candidate, heap.peek()) > 0) {
+                    heap.poll();
+                    heap.add(candidate);
+                }
+            });
+
+            Neighbour[] best = new Neighbour[heap.size()];
+            for (int i = best.length - 1; i >= 0; i--) {
+                best[i] = heap.poll();
+            }
+            return Arrays.asList(best);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void add(List<Integer> newlyOwned, List<Integer> earlier) {
+        lock.writeLock().lock();
+        try {
+            addLocked(newlyOwned, earlier);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // each newly owned book gains a buyer, and pairs with the earlier books and with the other new ones
+    private void addLocked(List<Integer> newlyOwned, List<Integer> earlier) {
+        for (int i = 0; i < newlyOwned.size(); i++) {
+            int book = newlyOwned.get(i);
+            buyers.addTo(book, 1);
+            for (int other : earlier) {
+                pairLocked(book, other);
+            }
+            for (int j = i + 1; j < newlyOwned.size(); j++) {
+                pairLocked(book, newlyOwned.get(j));
+            }
+        }
+    }
+
+    private void pairLocked(int a, int b) {
+        if (a == b) {
+            return;
+        }
+        coBuyers.computeIfAbsent(a, k -> new IntIntMap()).addTo(b, 1);
+        coBuyers.computeIfAbsent(b, k -> new IntIntMap()).addTo(a, 1);
+    }
+}
@@ -0,0 +1,124 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A checked-out cart on its way through the order pipeline: PENDING until a worker takes the stock,
+ * then COMPLETED, or REJECTED if a book ran out in the meantime.
+ */
+@Entity
+@Table(name = "customer_order",
+        indexes = @Index(name = "idx_customer_order_user_created", columnList = "user_id, created_at"))
+public class CustomerOrder {
+
+    public enum Status { PENDING, COMPLETED, REJECTED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status = Status.PENDING;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    private Instant completedAt;
+
+    private String failureReason;
+
+    private int itemCount;
+
+    private long totalCents;
+
+    // optimistic lock: two workers that both read the order as PENDING can't both complete it;
+    // the loser's transaction, stock decrement included, rolls back
+    @Version
+    private Long version;
+
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    @OrderBy("id")
+    private List<OrderLine> lines = new ArrayList<>();
+
+    protected CustomerOrder() {}
+
+    public CustomerOrder(User user) {
+        this.user = user;
+        // stored with microsecond precision; truncating here keeps purchase-history cursors equal to the row
+        this.createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public double getTotal() {
+        return totalCents / 100.0;
+    }
+
+    public List<OrderLine> getLines() {
+        return lines;
+    }
+
+    public boolean isPending() {
+        return status == Status.PENDING;
+    }
+
+    public void addLine(BookInfo book, int quantity, Double unitPrice) {
+        OrderLine line = new OrderLine(this, book, quantity, unitPrice);
+        lines.add(line);
+        itemCount += quantity;
+        totalCents += quantity * line.getUnitPriceCents();
+    }
+
+    public void complete() {
+        this.status = Status.COMPLETED;
+        this.completedAt = Instant.now();
+    }
+
+    public void reject(String reason) {
+        this.status = Status.REJECTED;
+        this.completedAt = Instant.now();
+        this.failureReason = reason;
+    }
+}
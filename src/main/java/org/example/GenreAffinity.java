@@ -0,0 +1,102 @@
+package org.example;
+
+import jakarta.persistence.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A customer's taste as one row: genre id -> weight, where a purchased copy adds 1 to each of its
+ * book's genres. Weights decay with a half-life, so older purchases count for less; they are stored
+ * as of {@code updatedAt} and only brought forward when the row is written.
+ */
+@Entity
+@Table(name = "user_genre_affinity")
+public class GenreAffinity {
+
+    // weights that decayed below this are dropped, which keeps the row small
+    static final double MIN_WEIGHT = 0.01;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Version
+    private Long version;
+
+    // "genreId:weight,genreId:weight", heaviest first
+    @Column(length = 4000)
+    private String weights = "";
+
+    private Instant updatedAt;
+
+    protected GenreAffinity() {}
+
+    public GenreAffinity(Long userId, Instant now) {
+        this.userId = userId;
+        this.updatedAt = now;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    // changes on every write, so results computed from this row can tell when it moved on
+    public Long getVersion() {
+        return version;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public Map<Long, Double> getWeights() {
+        Map<Long, Double> result = new LinkedHashMap<>();
+        if (weights == null || weights.isEmpty()) {
+            return result;
+        }
+        for (String entry : weights.split(",")) {
+            int colon = entry.indexOf(':');
+            result.put(Long.parseLong(entry.substring(0, colon)), Double.parseDouble(entry.substring(colon + 1)));
+        }
+        return result;
+    }
+
+    /**
+     * Decays the stored weights to {@code now} and adds the given ones on top.
+     */
+    public void add(Map<Long, Double> added, Instant now, Duration halfLife) {
+        double factor = decay(updatedAt, now, halfLife);
+        Map<Long, Double> merged = new LinkedHashMap<>();
+        getWeights().forEach((genreId, weight) -> merged.put(genreId, weight * factor));
+        added.forEach((genreId, weight) -> merged.merge(genreId, weight, Double::sum));
+        replace(merged, now);
+    }
+
+    public void replace(Map<Long, Double> newWeights, Instant now) {
+        StringBuilder sb = new StringBuilder();
+        newWeights.entrySet().stream()
+                .filter(e -> e.getValue() >= MIN_WEIGHT)
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .forEach(e -> {
+                    if (sb.length() > 0) {
+                        sb.append(',');
+                    }
+                    sb.append(e.getKey()).append(':').append(Math.round(e.getValue() * 1000) / 1000.0);
+                });
+        this.weights = sb.toString();
+        this.updatedAt = now;
+    }
+
+    /**
+     * How much a weight recorded at {@code then} is worth at {@code now}; 1 when decay is off.
+     */
+    static double decay(Instant then, Instant now, Duration halfLife) {
+        if (halfLife == null || halfLife.isZero() || then == null || !now.isAfter(then)) {
+            return 1.0;
+        }
+        return Math.pow(0.5, (double) Duration.between(then, now).toMillis() / halfLife.toMillis());
+    }
+}
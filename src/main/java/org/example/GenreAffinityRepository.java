@@ -0,0 +1,6 @@
+package org.example;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface GenreAffinityRepository extends JpaRepository<GenreAffinity, Long> {
+}
@@ -0,0 +1,122 @@
+package org.example;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Keeps each customer's {@link GenreAffinity} row up to date. Completing an order adds its lines to the
+ * row, so reading a customer's taste never goes back over their purchases. A row is only rebuilt from
+ * the order lines when it doesn't exist yet or a purchase is removed from the history.
+ */
+@Service
+public class GenreAffinityService {
+
+    private final GenreAffinityRepository affinityRepository;
+    private final OrderLineRepository orderLineRepository;
+    private final BookRepository bookRepository;
+    private final Duration halfLife;
+
+    public GenreAffinityService(GenreAffinityRepository affinityRepository, OrderLineRepository orderLineRepository,
+                                BookRepository bookRepository,
+                                @Value("${bookstore.recommendations.affinity-half-life-days:180}") long halfLifeDays) {
+        this.affinityRepository = affinityRepository;
+        this.orderLineRepository = orderLineRepository;
+        this.bookRepository = bookRepository;
+        this.halfLife = Duration.ofDays(Math.max(0, halfLifeDays));
+    }
+
+    /**
+     * Adds the completed orders' lines to their owners' rows. Runs in the transaction that completes them,
+     * with one genre lookup for all the books involved.
+     */
+    @Transactional
+    public void recordPurchases(Collection<CustomerOrder> orders) {
+        Set<Long> bookIds = new HashSet<>();
+        orders.forEach(order -> order.getLines().forEach(line -> bookIds.add(line.getBook().getId())));
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Long>> genresByBook = new HashMap<>();
+        for (Object[] row : bookRepository.findGenreIdsOfBooks(bookIds)) {
+            genresByBook.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Long) row[1]);
+        }
+
+        Map<Long, Map<Long, Double>> addedByUser = new LinkedHashMap<>();
+        for (CustomerOrder order : orders) {
+            Map<Long, Double> added = addedByUser.computeIfAbsent(order.getUser().getId(), id -> new HashMap<>());
+            for (OrderLine line : order.getLines()) {
+                for (Long genreId : genresByBook.getOrDefault(line.getBook().getId(), List.of())) {
+                    added.merge(genreId, (double) line.getQuantity(), Double::sum);
+                }
+            }
+        }
+
+        Instant now = Instant.now();
+        addedByUser.forEach((userId, added) -> {
+            Optional<GenreAffinity> existing = affinityRepository.findById(userId);
+            if (existing.isPresent()) {
+                existing.get().add(added, now, halfLife);
+            } else {
+                // first purchase, or a customer from before profiles existed: start from the full history,
+                // which already includes these orders' lines once they are flushed
+                rebuild(userId);
+            }
+        });
+    }
+
+    /**
+     * The customer's genre weights, heaviest first. Empty if they haven't bought anything.
+     */
+    @Transactional
+    public Map<Long, Double> getAffinity(Long userId) {
+        return getProfile(userId).getWeights();
+    }
+
+    /**
+     * The customer's row itself, for callers that also need its version.
+     */
+    @Transactional
+    public GenreAffinity getProfile(Long userId) {
+        return affinityRepository.findById(userId).orElseGet(() -> rebuild(userId));
+    }
+
+    /**
+     * Like {@link #getProfile} but never writes: a customer without a row gets an unsaved one computed from
+     * their history (version null). For batch readers that shouldn't insert a row per customer.
+     */
+    @Transactional(readOnly = true)
+    public GenreAffinity readProfile(Long userId) {
+        return affinityRepository.findById(userId).orElseGet(() -> {
+            Instant now = Instant.now();
+            GenreAffinity affinity = new GenreAffinity(userId, now);
+            affinity.replace(weightsFromHistory(userId, now), now);
+            return affinity;
+        });
+    }
+
+    /**
+     * Recomputes the row from the customer's completed order lines, each decayed from when it was ordered.
+     */
+    @Transactional
+    public GenreAffinity rebuild(Long userId) {
+        Instant now = Instant.now();
+        Map<Long, Double> weights = weightsFromHistory(userId, now);
+        GenreAffinity affinity = affinityRepository.findById(userId).orElseGet(() -> new GenreAffinity(userId, now));
+        affinity.replace(weights, now);
+        return affinityRepository.save(affinity);
+    }
+
+    private Map<Long, Double> weightsFromHistory(Long userId, Instant now) {
+        Map<Long, Double> weights = new HashMap<>();
+        for (Object[] row : orderLineRepository.findPurchasedGenreQuantities(userId)) {
+            double quantity = ((Number) row[1]).doubleValue();
+            weights.merge((Long) row[0], quantity * GenreAffinity.decay((Instant) row[2], now, halfLife), Double::sum);
+        }
+        return weights;
+    }
+}
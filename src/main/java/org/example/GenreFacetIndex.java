@@ -0,0 +1,231 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One BitSet of book ids per Genre id, following the book_genre links. Counting how many of a result set
+ * fall in each genre is an AND + cardinality instead of a query per genre, and {@link RecommendationIndex}
+ * scores a customer's genre profile by walking the same postings.
+ */
+@Component
+public class GenreFacetIndex implements CommandLineRunner {
+
+    /**
+     * A private, read-only copy of the postings, for scoring many customers against one catalog state.
+     */
+    public record Snapshot(Map<Long, BitSet> booksByGenre, long fingerprint) {
+
+        public Map<Integer, Double> sumWeights(Map<Long, Double> weightByGenre) {
+            return GenreFacetIndex.sumWeights(booksByGenre, weightByGenre);
+        }
+    }
+
+    private final BookRepository bookRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Long, BitSet> booksByGenre = new HashMap<>();
+
+    // genres each book is currently filed under, needed to un-file it
+    private final Map<Integer, Set<Long>> genresByBook = new HashMap<>();
+
+    // facets are asked for by name; Genre rows never change name
+    private final Map<String, Long> genreIdsByName = new HashMap<>();
+
+    // XOR of a hash of every book's (id, genre ids), so a change of filing is visible without comparing postings
+    private volatile long fingerprint;
+
+    public GenreFacetIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        List<Object[]> rows = bookRepository.findGenreLinks();
+        Map<Integer, Set<Long>> linked = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            booksByGenre.clear();
+            genresByBook.clear();
+            genreIdsByName.clear();
+            fingerprint = 0;
+            for (Object[] row : rows) {
+                Long genreId = (Long) row[1];
+                genreIdsByName.put((String) row[2], genreId);
+                linked.computeIfAbsent(CatalogSearchIndex.toIntId((Long) row[0]), id -> new HashSet<>()).add(genreId);
+            }
+            linked.forEach(this::addLocked);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        int id = CatalogSearchIndex.toIntId(event.bookId());
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (!event.isRemoval()) {
+                fileLocked(event.book());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onBooksAdded(BooksAddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo book : event.books()) {
+                removeLocked(CatalogSearchIndex.toIntId(book.getId()));
+                fileLocked(book);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param matched ids of the books in a result set
+     * @param genres  genre names to count, in display order
+     * @return genre -> number of matched books filed under it, in the order given
+     */
+    public Map<String, Integer> countByGenre(BitSet matched, List<String> genres) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            for (String genre : genres) {
+                Long genreId = genreIdsByName.get(genre);
+                BitSet books = genreId == null ? null : booksByGenre.get(genreId);
+                if (books == null) {
+                    counts.put(genre, 0);
+                    continue;
+                }
+                BitSet both = (BitSet) books.clone();
+                both.and(matched);
+                counts.put(genre, both.cardinality());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return counts;
+    }
+
+    /**
+     * @param genre a genre name, as listed in the dropdown and facets
+     * @return sorted ids of the books filed under exactly that genre, or null if no genre has that name
+     */
+    public int[] booksIn(String genre) {
+        lock.readLock().lock();
+        try {
+            Long genreId = genreIdsByName.get(genre);
+            if (genreId == null) {
+                return null;
+            }
+            BitSet books = booksByGenre.get(genreId);
+            return books == null ? new int[0] : books.stream().toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param weightByGenre Genre id -> weight
+     * @return book id -> sum of the weights of the genres it is filed under, for books in at least one of them
+     */
+    public Map<Integer, Double> sumWeights(Map<Long, Double> weightByGenre) {
+        lock.readLock().lock();
+        try {
+            return sumWeights(booksByGenre, weightByGenre);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Changes whenever a book is filed under different genres, added with genres, or removed.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            Map<Long, BitSet> copy = new HashMap<>();
+            booksByGenre.forEach((genre, books) -> copy.put(genre, (BitSet) books.clone()));
+            return new Snapshot(copy, fingerprint);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Map<Integer, Double> sumWeights(Map<Long, BitSet> booksByGenre, Map<Long, Double> weightByGenre) {
+        Map<Integer, Double> scores = new HashMap<>();
+        weightByGenre.forEach((genre, weight) -> {
+            BitSet books = booksByGenre.get(genre);
+            if (books == null) {
+                return;
+            }
+            for (int id = books.nextSetBit(0); id >= 0; id = books.nextSetBit(id + 1)) {
+                scores.merge(id, weight, Double::sum);
+            }
+        });
+        return scores;
+    }
+
+    private void fileLocked(BookInfo book) {
+        Set<Long> genreIds = new HashSet<>();
+        for (Genre genre : book.getGenres()) {
+            genreIdsByName.put(genre.getName(), genre.getId());
+            genreIds.add(genre.getId());
+        }
+        addLocked(CatalogSearchIndex.toIntId(book.getId()), genreIds);
+    }
+
+    private void addLocked(int id, Set<Long> genres) {
+        if (genres.isEmpty()) {
+            return;
+        }
+        genresByBook.put(id, genres);
+        fingerprint ^= hash(id, genres);
+        for (Long genre : genres) {
+            booksByGenre.computeIfAbsent(genre, g -> new BitSet()).set(id);
+        }
+    }
+
+    private void removeLocked(int id) {
+        Set<Long> genres = genresByBook.remove(id);
+        if (genres == null) {
+            return;
+        }
+        fingerprint ^= hash(id, genres);
+        for (Long genre : genres) {
+            BitSet books = booksByGenre.get(genre);
+            if (books != null) {
+                books.clear(id);
+                if (books.isEmpty()) {
+                    booksByGenre.remove(genre);
+                }
+            }
+        }
+    }
+
+    // Genre ids are database keys, so this means the same thing after a restart
+    private static long hash(int id, Set<Long> genres) {
+        long genreHash = 0;
+        for (Long genre : genres) {
+            genreHash += genre * 0xD6E8FEB86659FD93L; // order-independent
+        }
+        long h = id * 0x9E3779B97F4A7C15L;
+        h = (h ^ genreHash) * 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Links books that were saved before the genre table existed to their Genre rows.
+ */
+@Component
+public class GenreMigration implements CommandLineRunner {
+
+    private final BookRepository bookRepository;
+    private final GenreService genreService;
+
+    public GenreMigration(BookRepository bookRepository, GenreService genreService) {
+        this.bookRepository = bookRepository;
+        this.genreService = genreService;
+    }
+
+    @Override
+    @Transactional
+    public void run(String... args) {
+        List<BookInfo> unlinked = bookRepository.findWithUnlinkedGenres();
+        for (BookInfo book : unlinked) {
+            genreService.linkGenres(book);
+        }
+        bookRepository.saveAll(unlinked);
+        if (!unlinked.isEmpty()) {
+            System.out.println("✅ Linked genres for " + unlinked.size() + " books.");
+        }
+    }
+}
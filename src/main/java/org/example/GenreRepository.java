@@ -0,0 +1,19 @@
+package org.example;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface GenreRepository extends JpaRepository<Genre, Long> {
+    List<Genre> findByNameIn(Collection<String> names);
+
+    // Only genres that at least one book still links to
+    @Query("SELECT DISTINCT g.name FROM BookInfo b JOIN b.genres g")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<String> findLinkedGenreNames();
+}
@@ -0,0 +1,133 @@
+package org.example;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+public class GenreService {
+
+    private final GenreRepository genreRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    // sorted genre names for the dropdowns, rebuilt lazily after a book write
+    private volatile List<String> sortedGenreNames;
+
+    public GenreService(GenreRepository genreRepository, JdbcTemplate jdbcTemplate) {
+        this.genreRepository = genreRepository;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Splits a comma-separated bookGenres value into trimmed, non-empty names.
+     */
+    public static Set<String> splitGenres(String bookGenres) {
+        if (bookGenres == null || bookGenres.isBlank()) {
+            return Collections.emptySet();
+        }
+        return Arrays.stream(bookGenres.split(","))
+                .map(String::trim)
+                .filter(g -> !g.isEmpty())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    /**
+     * Points the book at the Genre rows for its bookGenres string, creating missing ones.
+     * Call before saving the book.
+     */
+    @Transactional
+    public void linkGenres(BookInfo book) {
+        linkGenres(List.of(book));
+    }
+
+    /**
+     * Batch form of {@link #linkGenres(BookInfo)}: one lookup for all the books' genre names.
+     */
+    @Transactional
+    public void linkGenres(Collection<BookInfo> books) {
+        Set<String> allNames = new HashSet<>();
+        for (BookInfo book : books) {
+            allNames.addAll(splitGenres(book.getBookGenre()));
+        }
+        Map<String, Genre> existing = allNames.isEmpty() ? new HashMap<>() :
+                genreRepository.findByNameIn(allNames).stream()
+                        .collect(Collectors.toMap(Genre::getName, Function.identity()));
+
+        Set<String> missing = new HashSet<>(allNames);
+        missing.removeAll(existing.keySet());
+        if (!missing.isEmpty()) {
+            missing.forEach(this::insertIfAbsent);
+            genreRepository.findByNameIn(missing).forEach(genre -> existing.put(genre.getName(), genre));
+        }
+
+        for (BookInfo book : books) {
+            Set<Genre> linked = new LinkedHashSet<>();
+            for (String name : splitGenres(book.getBookGenre())) {
+                linked.add(existing.get(name));
+            }
+            book.getGenres().clear();
+            book.getGenres().addAll(linked);
+        }
+    }
+
+    // Another request may be adding a book with the same new genre. Its insert waits on idx_genre_name until that
+    // transaction commits and then loses; the caller re-reads the winner's row. Plain JDBC rather than save(), so
+    // the violation doesn't mark the surrounding transaction rollback-only.
+    private void insertIfAbsent(String name) {
+        try {
+            jdbcTemplate.update("INSERT INTO genre (name) VALUES (?)", name);
+        } catch (DuplicateKeyException e) {
+            // someone else created it first
+        }
+    }
+
+    /**
+     * Genres currently used by at least one book, sorted case-insensitively.
+     * Served from memory until the next book write.
+     */
+    public List<String> getSortedGenreNames() {
+        List<String> names = sortedGenreNames;
+        if (names == null) {
+            names = genreRepository.findLinkedGenreNames().stream()
+                    .sorted(String.CASE_INSENSITIVE_ORDER)
+                    .toList();
+            sortedGenreNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * A removal may take a genre's last book, so it drops the cached names. A saved book only
+     * drops them if it is filed under a genre that isn't listed yet.
+     */
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isRemoval() || !isListed(List.of(event.book()))) {
+            sortedGenreNames = null;
+        }
+    }
+
+    @EventListener
+    public void onBooksAdded(BooksAddedEvent event) {
+        if (!isListed(event.books())) {
+            sortedGenreNames = null;
+        }
+    }
+
+    // true if the cached names already include every genre of these books
+    private boolean isListed(Collection<BookInfo> books) {
+        List<String> names = sortedGenreNames;
+        if (names == null) {
+            return true;
+        }
+        Set<String> listed = new HashSet<>(names);
+        return books.stream().flatMap(book -> book.getGenres().stream())
+                .allMatch(genre -> listed.contains(genre.getName()));
+    }
+}
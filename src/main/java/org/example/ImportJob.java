@@ -0,0 +1,71 @@
+package org.example;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one bulk catalog import, readable while the import is still running.
+ */
+public class ImportJob {
+
+    public enum Status { RUNNING, COMPLETED, FAILED }
+
+    // only the first errors are kept so a bad feed can't fill the heap
+    static final int MAX_ERRORS = 100;
+
+    private final String id = UUID.randomUUID().toString();
+    private final String source;
+    private final String format;
+    private final Instant startedAt = Instant.now();
+    private volatile Instant finishedAt;
+    private volatile Status status = Status.RUNNING;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+
+    public ImportJob(String source, String format) {
+        this.source = source;
+        this.format = format;
+    }
+
+    void rowRead() { rowsRead.incrementAndGet(); }
+    void imported(int count) { imported.addAndGet(count); }
+    void duplicate() { duplicates.incrementAndGet(); }
+
+    void failed(long count, String error) {
+        failed.addAndGet(count);
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    void finish(Status status) {
+        this.status = status;
+        this.finishedAt = Instant.now();
+    }
+
+    public String getId() { return id; }
+    public String getSource() { return source; }
+    public String getFormat() { return format; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public Status getStatus() { return status; }
+    public long getRowsRead() { return rowsRead.get(); }
+    public long getImported() { return imported.get(); }
+    public long getDuplicates() { return duplicates.get(); }
+    public long getFailed() { return failed.get(); }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+}
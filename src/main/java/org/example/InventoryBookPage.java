@@ -0,0 +1,11 @@
+package org.example;
+
+import java.util.List;
+
+/**
+ * One keyset page of an inventory's books in title order.
+ *
+ * @param books      books on this page
+ * @param nextCursor pass as ?cursor= for the following page, null on the last page
+ */
+public record InventoryBookPage(List<BookInfo> books, String nextCursor) {}
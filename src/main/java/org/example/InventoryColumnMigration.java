@@ -1,6 +1,8 @@
 package org.example;
 
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import javax.sql.DataSource;
@@ -9,6 +11,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 @Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // raw JDBC behind Hibernate's back: run before anything warms the second-level cache
 public class InventoryColumnMigration implements CommandLineRunner {
 
     private final DataSource dataSource;
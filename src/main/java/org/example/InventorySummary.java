@@ -0,0 +1,10 @@
+package org.example;
+
+/**
+ * Inventory listing row, computed in the database instead of loading the inventory's books.
+ *
+ * @param id         inventory ID
+ * @param bookCount  number of books in the inventory
+ * @param totalStock sum of the books' stock counts
+ */
+public record InventorySummary(Long id, long bookCount, long totalStock) {}
@@ -0,0 +1,52 @@
+package org.example;
+
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Order status for the purchase-history page to poll while the pipeline works.
+ */
+@RestController
+@RequestMapping("/api/orders")
+public class OrderApiController {
+
+    private final OrderService orderService;
+
+    public OrderApiController(OrderService orderService) {
+        this.orderService = orderService;
+    }
+
+    public record OrderLineView(Long bookId, String title, int quantity, Double unitPrice) {}
+
+    public record OrderView(Long id, CustomerOrder.Status status, Instant createdAt, Instant completedAt,
+                            int itemCount, long totalCents, String failureReason, List<OrderLineView> lines) {
+
+        static OrderView of(CustomerOrder order) {
+            List<OrderLineView> lines = order.getLines().stream()
+                    .map(l -> new OrderLineView(l.getBook().getId(), l.getBook().getBookTitle(), l.getQuantity(), l.getUnitPrice()))
+                    .toList();
+            return new OrderView(order.getId(), order.getStatus(), order.getCreatedAt(), order.getCompletedAt(),
+                    order.getItemCount(), order.getTotalCents(), order.getFailureReason(), lines);
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<OrderView> getOrder(@PathVariable Long id, HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // someone else's order is reported as missing, not forbidden
+        return orderService.findForUser(id, user)
+                .map(order -> ResponseEntity.ok(OrderView.of(order)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
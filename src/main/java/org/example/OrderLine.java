@@ -0,0 +1,78 @@
+package org.example;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+/**
+ * One book in an order, with the quantity and the title and price it was sold at. Lines are only
+ * ever inserted: they are the customer's purchase history, so later catalog edits don't rewrite it.
+ * Every column but {@code hidden} is insert-only; removing a purchase from the history just sets that
+ * flag with a keyed update, so the sale stays on record and the order's totals still match its lines.
+ */
+@Entity
+public class OrderLine {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "order_id", updatable = false)
+    private CustomerOrder order;
+
+    @ManyToOne(optional = false)
+    @JoinColumn(name = "book_id", updatable = false)
+    private BookInfo book;
+
+    @Column(updatable = false)
+    private int quantity;
+
+    @Column(updatable = false)
+    private Double unitPrice;
+
+    @Column(updatable = false)
+    private String bookTitle;
+
+    @JsonIgnore
+    private boolean hidden;
+
+    protected OrderLine() {}
+
+    OrderLine(CustomerOrder order, BookInfo book, int quantity, Double unitPrice) {
+        this.order = order;
+        this.book = book;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.bookTitle = book.getBookTitle();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public CustomerOrder getOrder() {
+        return order;
+    }
+
+    public BookInfo getBook() {
+        return book;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    // title when it was bought
+    public String getBookTitle() {
+        return bookTitle != null ? bookTitle : book.getBookTitle();
+    }
+
+    public long getUnitPriceCents() {
+        return unitPrice == null ? 0 : Math.round(unitPrice * 100);
+    }
+}
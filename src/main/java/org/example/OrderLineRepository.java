@@ -0,0 +1,82 @@
+package org.example;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Purchase history queries. A purchase is a line of a COMPLETED order; they all start from the
+ * user's orders through idx_customer_order_user_created. Lines the customer removed from their history
+ * are hidden, not deleted: the history and the taste profile skip them, while sales data (what a customer
+ * owns, what is bought together) still counts them.
+ */
+public interface OrderLineRepository extends JpaRepository<OrderLine, Long> {
+
+    // Keyset page, newest first: purchases since `from` and strictly before the (beforeAt, beforeId) position.
+    // The first page passes the range's upper bound as beforeAt and Long.MIN_VALUE as beforeId.
+    @Query("""
+        SELECT l FROM OrderLine l JOIN FETCH l.order o JOIN FETCH l.book
+        WHERE o.user.id = :userId AND o.status = org.example.CustomerOrder.Status.COMPLETED
+          AND l.hidden = false
+          AND o.createdAt >= :from
+          AND (o.createdAt < :beforeAt OR (o.createdAt = :beforeAt AND l.id < :beforeId))
+        ORDER BY o.createdAt DESC, l.id DESC
+    """)
+    List<OrderLine> findPurchasePage(@Param("userId") Long userId, @Param("from") Instant from,
+                                     @Param("beforeAt") Instant beforeAt, @Param("beforeId") Long beforeId,
+                                     Pageable page);
+
+    @Query("""
+        SELECT COALESCE(SUM(l.quantity), 0) FROM OrderLine l JOIN l.order o
+        WHERE o.user.id = :userId AND o.status = org.example.CustomerOrder.Status.COMPLETED
+          AND l.hidden = false
+    """)
+    long sumPurchasedQuantity(@Param("userId") Long userId);
+
+    @Query("""
+        SELECT DISTINCT l.book.id FROM OrderLine l JOIN l.order o
+        WHERE o.user.id = :userId AND o.status = org.example.CustomerOrder.Status.COMPLETED
+    """)
+    List<Long> findPurchasedBookIds(@Param("userId") Long userId);
+
+    // Every (customer, book) that has a completed purchase, grouped by customer, for CoPurchaseIndex at startup
+    @Query("""
+        SELECT DISTINCT o.user.id, l.book.id FROM OrderLine l JOIN l.order o
+        WHERE o.status = org.example.CustomerOrder.Status.COMPLETED
+        ORDER BY o.user.id
+    """)
+    List<Object[]> findPurchasedUserBookPairs();
+
+    // Books the user had already bought outside the given orders
+    @Query("""
+        SELECT DISTINCT l.book.id FROM OrderLine l JOIN l.order o
+        WHERE o.user.id = :userId AND o.status = org.example.CustomerOrder.Status.COMPLETED
+          AND o.id NOT IN :orderIds
+    """)
+    List<Long> findPurchasedBookIdsOutside(@Param("userId") Long userId, @Param("orderIds") Collection<Long> orderIds);
+
+    // One row per (purchase line, genre): genre id, copies, when it was ordered. Only GenreAffinityService
+    // reads this, to build a customer's profile the first time or after a purchase is removed
+    @Query("""
+        SELECT g.id, l.quantity, o.createdAt FROM OrderLine l JOIN l.order o JOIN l.book b JOIN b.genres g
+        WHERE o.user.id = :userId AND o.status = org.example.CustomerOrder.Status.COMPLETED
+          AND l.hidden = false
+    """)
+    List<Object[]> findPurchasedGenreQuantities(@Param("userId") Long userId);
+
+    // Hide by key; the owner check rides along in the same statement
+    @Modifying
+    @Query("""
+        UPDATE OrderLine l SET l.hidden = true
+        WHERE l.id = :id AND l.hidden = false
+          AND l.order.id IN (SELECT o.id FROM CustomerOrder o
+                             WHERE o.user.id = :userId AND o.status = org.example.CustomerOrder.Status.COMPLETED)
+    """)
+    int hidePurchase(@Param("userId") Long userId, @Param("id") Long id);
+}
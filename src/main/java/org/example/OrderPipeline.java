@@ -0,0 +1,176 @@
+package org.example;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Processes placed orders off the request thread. Order IDs go onto a bounded queue; a fixed number
+ * of workers drain it a batch at a time, so orders for the same book share one stock update.
+ * <p>
+ * Workers are virtual threads when the JVM has them, platform threads otherwise. With
+ * {@code bookstore.orders.workers=0} orders are processed on the submitting thread. Orders are
+ * PENDING rows in the database, so whatever was queued at shutdown is picked up again at startup.
+ * <p>
+ * A batch that fails is queued again, each order after a growing delay; an order that has failed
+ * {@code bookstore.orders.max-retries} times is rejected, with its books back in the cart.
+ */
+@Component
+public class OrderPipeline implements CommandLineRunner {
+
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final int workers;
+    private final int batchSize;
+    private final int maxRetries;
+    private final long retryDelayMs;
+    private final BlockingQueue<Long> queue;
+    private final List<Thread> threads = new ArrayList<>();
+    // order id -> failed attempts so far, only for orders that have failed
+    private final Map<Long, Integer> failures = new ConcurrentHashMap<>();
+    private ScheduledExecutorService retries;
+    private volatile boolean running;
+
+    public OrderPipeline(OrderService orderService, OrderRepository orderRepository,
+                         @Value("${bookstore.orders.workers:4}") int workers,
+                         @Value("${bookstore.orders.queue-capacity:10000}") int queueCapacity,
+                         @Value("${bookstore.orders.batch-size:50}") int batchSize,
+                         @Value("${bookstore.orders.max-retries:3}") int maxRetries,
+                         @Value("${bookstore.orders.retry-delay-ms:2000}") long retryDelayMs) {
+        this.orderService = orderService;
+        this.orderRepository = orderRepository;
+        this.workers = workers;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryDelayMs = Math.max(0, retryDelayMs);
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    @Override
+    public void run(String... args) {
+        if (workers <= 0) {
+            return;
+        }
+        running = true;
+        retries = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "order-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ThreadFactory factory = workerThreadFactory();
+        for (int i = 0; i < workers; i++) {
+            Thread worker = factory.newThread(this::work);
+            worker.setName("order-worker-" + i);
+            threads.add(worker);
+            worker.start();
+        }
+
+        List<Long> pending = orderRepository.findIdsByStatus(CustomerOrder.Status.PENDING);
+        pending.forEach(this::enqueue);
+        System.out.println("📦 Order pipeline started with " + workers + " workers"
+                + (pending.isEmpty() ? "" : ", resuming " + pending.size() + " pending orders"));
+    }
+
+    /**
+     * Hands a placed order to the workers. Inside a transaction it is queued after commit,
+     * so a worker never looks for an order row that isn't visible yet.
+     */
+    public void submit(Long orderId) {
+        if (workers <= 0) {
+            orderService.process(List.of(orderId));
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(orderId);
+                }
+            });
+        } else {
+            enqueue(orderId);
+        }
+    }
+
+    private void enqueue(Long orderId) {
+        if (!running || !queue.offer(orderId)) {
+            // queue full (or workers stopped): the caller pays for its own order instead of growing the backlog
+            System.out.println("📦 Order queue full or stopped, processing order " + orderId + " on the calling thread");
+            orderService.process(List.of(orderId));
+        }
+    }
+
+    private void work() {
+        List<Long> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Long first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                orderService.process(batch);
+                batch.forEach(failures::remove);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.out.println("⚠️ Processing orders " + batch + " failed: " + e.getMessage());
+                // orders the batch did finish are skipped when they come round again
+                batch.forEach(orderId -> retryLater(orderId, e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void retryLater(Long orderId, RuntimeException cause) {
+        int failed = failures.merge(orderId, 1, Integer::sum);
+        if (failed <= maxRetries && running) {
+            retries.schedule(() -> enqueue(orderId), retryDelayMs * failed, TimeUnit.MILLISECONDS);
+            return;
+        }
+        failures.remove(orderId);
+        try {
+            orderService.fail(orderId, "Could not be processed, please try again");
+            System.out.println("⚠️ Gave up on order " + orderId + " after " + failed + " attempts: " + cause.getMessage());
+        } catch (RuntimeException e) {
+            // still PENDING: picked up again on the next start
+            System.out.println("⚠️ Could not mark order " + orderId + " as failed: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (retries != null) {
+            retries.shutdownNow(); // their orders are still PENDING rows
+        }
+        for (Thread worker : threads) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    // Thread.ofVirtual() only exists from Java 21; looked up reflectively so the build still targets 17
+    private static ThreadFactory workerThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return task -> {
+                Thread thread = new Thread(task);
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.example;
+
+import java.util.Map;
+
+/**
+ * Published when the pipeline rejects an order, so its books can go back into the user's cart.
+ *
+ * @param userId     owner of the order
+ * @param quantities book id to quantity, as ordered
+ */
+public record OrderRejectedEvent(Long userId, Map<Long, Integer> quantities) {}
@@ -0,0 +1,29 @@
+package org.example;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface OrderRepository extends JpaRepository<CustomerOrder, Long> {
+
+    @Query("SELECT o FROM CustomerOrder o LEFT JOIN FETCH o.lines l LEFT JOIN FETCH l.book WHERE o.id = :id")
+    Optional<CustomerOrder> findWithLinesById(@Param("id") Long id);
+
+    // What a worker picks up: only orders nobody has finished yet
+    @Query("SELECT o FROM CustomerOrder o JOIN FETCH o.lines l JOIN FETCH l.book " +
+            "WHERE o.id IN :ids AND o.status = org.example.CustomerOrder.Status.PENDING")
+    List<CustomerOrder> findPendingWithLines(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT o.id FROM CustomerOrder o WHERE o.status = :status ORDER BY o.id")
+    List<Long> findIdsByStatus(@Param("status") CustomerOrder.Status status);
+
+    @Query("SELECT o.status FROM CustomerOrder o WHERE o.id = :id")
+    Optional<CustomerOrder.Status> findStatusById(@Param("id") Long id);
+
+    // newest first, through idx_customer_order_user_created
+    List<CustomerOrder> findTop20ByUserIdOrderByCreatedAtDesc(Long userId);
+}
@@ -0,0 +1,204 @@
+package org.example;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns pending orders into purchases: takes the stock, records the purchase, adds it to the customer's
+ * genre profile, and marks the order COMPLETED, or REJECTED (with its books back in the cart) when a
+ * book has run out.
+ */
+@Service
+public class OrderService {
+
+    static final int MAX_ATTEMPTS = 3;
+
+    private final OrderRepository orderRepository;
+    private final StockService stockService;
+    private final ApplicationEventPublisher events;
+    private final StockReservations reservations;
+    private final GenreAffinityService affinityService;
+    private final CoPurchaseIndex coPurchaseIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderService(OrderRepository orderRepository, StockService stockService, ApplicationEventPublisher events,
+                        StockReservations reservations, GenreAffinityService affinityService,
+                        CoPurchaseIndex coPurchaseIndex, PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.stockService = stockService;
+        this.events = events;
+        this.reservations = reservations;
+        this.affinityService = affinityService;
+        this.coPurchaseIndex = coPurchaseIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Completes a batch of pending orders. Stock for the whole batch is taken together, one conditional
+     * update per book however many orders contain it. If any book is short, that is undone and the orders
+     * are processed one at a time, so only the ones that can't be filled get rejected.
+     */
+    public void process(List<Long> orderIds) {
+        if (orderIds.size() > 1) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> completeAll(orderIds, status)))) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                System.out.println("Order batch " + orderIds + " failed (" + e.getMessage() + "), processing one by one");
+            }
+        }
+        orderIds.forEach(this::processOne);
+    }
+
+    /**
+     * Processes one order on the calling thread.
+     *
+     * @return true if the order is completed
+     */
+    public boolean processNow(Long orderId) {
+        return processOne(orderId) == CustomerOrder.Status.COMPLETED;
+    }
+
+    /**
+     * Gives up on an order that kept failing to process: it is rejected with the reason, and its books go
+     * back into the cart like a stock-out. Does nothing if the order isn't pending any more.
+     */
+    public void fail(Long orderId, String reason) {
+        transactionTemplate.executeWithoutResult(status -> reject(orderId, order -> reason));
+    }
+
+    public Optional<CustomerOrder> findForUser(Long orderId, User user) {
+        return orderRepository.findWithLinesById(orderId)
+                .filter(order -> order.getUser().getId().equals(user.getId()));
+    }
+
+    public List<CustomerOrder> recentOrders(User user) {
+        return orderRepository.findTop20ByUserIdOrderByCreatedAtDesc(user.getId());
+    }
+
+    private boolean completeAll(List<Long> orderIds, TransactionStatus status) {
+        List<CustomerOrder> orders = orderRepository.findPendingWithLines(orderIds);
+        Map<Long, Integer> totals = quantities(orders);
+        if (!totals.isEmpty() && !stockService.tryDecrement(totals).isEmpty()) {
+            status.setRollbackOnly();
+            return false;
+        }
+        orders.forEach(this::complete);
+        recordPurchases(orders);
+        publishStockChanges(orders);
+        System.out.println("Completed " + orders.size() + " orders with one stock update for each of " + totals.size() + " books");
+        return true;
+    }
+
+    private CustomerOrder.Status processOne(Long orderId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Long> outOfStock = transactionTemplate.execute(status -> processOnce(orderId, status));
+                if (outOfStock != null && !outOfStock.isEmpty()) {
+                    transactionTemplate.executeWithoutResult(status -> reject(orderId, order -> stockOutReason(order, outOfStock)));
+                }
+                return orderRepository.findStatusById(orderId).orElse(null);
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e; // stays PENDING and is picked up again on the next restart
+                }
+                System.out.println("Order " + orderId + " hit a concurrent update, retrying (" + attempt + "/" + MAX_ATTEMPTS + ")");
+            }
+        }
+    }
+
+    // IDs of the books that were short; empty when the order completed or wasn't pending any more
+    private List<Long> processOnce(Long orderId, TransactionStatus status) {
+        List<CustomerOrder> orders = orderRepository.findPendingWithLines(List.of(orderId));
+        if (orders.isEmpty()) {
+            return List.of();
+        }
+        List<Long> outOfStock = stockService.tryDecrement(quantities(orders));
+        if (!outOfStock.isEmpty()) {
+            // give back any lines already taken
+            status.setRollbackOnly();
+            return outOfStock;
+        }
+        complete(orders.get(0));
+        recordPurchases(orders);
+        publishStockChanges(orders);
+        return List.of();
+    }
+
+    // the order's lines are the purchase record; nothing else about the user's past purchases is touched
+    private void complete(CustomerOrder order) {
+        order.complete();
+        releaseAfterCommit(order);
+    }
+
+    // what recommendations learn from a purchase: the buyer's genre profile and the co-purchase matrix
+    private void recordPurchases(List<CustomerOrder> orders) {
+        affinityService.recordPurchases(orders);
+        coPurchaseIndex.recordPurchases(orders);
+        orders.stream().map(order -> order.getUser().getId()).distinct()
+                .forEach(userId -> events.publishEvent(new PurchasesChangedEvent(userId)));
+    }
+
+    private static String stockOutReason(CustomerOrder order, List<Long> outOfStock) {
+        String titles = order.getLines().stream()
+                .filter(line -> outOfStock.contains(line.getBook().getId()))
+                .map(line -> "'" + line.getBook().getBookTitle() + "'")
+                .collect(Collectors.joining(", "));
+        return "Not enough stock for " + titles;
+    }
+
+    private void reject(Long orderId, Function<CustomerOrder, String> reason) {
+        orderRepository.findWithLinesById(orderId).filter(CustomerOrder::isPending).ifPresent(order -> {
+            order.reject(reason.apply(order));
+            releaseAfterCommit(order);
+            System.out.println("Order " + orderId + " rejected: " + order.getFailureReason());
+            events.publishEvent(new OrderRejectedEvent(order.getUser().getId(), quantities(List.of(order))));
+        });
+    }
+
+    // The order's units are now either taken from stock or not wanted; its owner's cart holds go either way
+    private void releaseAfterCommit(CustomerOrder order) {
+        Long userId = order.getUser().getId();
+        Map<Long, Integer> quantities = quantities(List.of(order));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reservations.release(userId, quantities);
+                }
+            });
+        } else {
+            reservations.release(userId, quantities);
+        }
+    }
+
+    // only stock moved, so the genre, price and search indexes are left alone
+    private void publishStockChanges(List<CustomerOrder> orders) {
+        Set<Long> bookIds = new HashSet<>();
+        orders.forEach(order -> order.getLines().forEach(line -> bookIds.add(line.getBook().getId())));
+        if (!bookIds.isEmpty()) {
+            events.publishEvent(new StockChangedEvent(bookIds));
+        }
+    }
+
+    private static Map<Long, Integer> quantities(List<CustomerOrder> orders) {
+        Map<Long, Integer> totals = new LinkedHashMap<>();
+        for (CustomerOrder order : orders) {
+            for (OrderLine line : order.getLines()) {
+                totals.merge(line.getBook().getId(), line.getQuantity(), Integer::sum);
+            }
+        }
+        return totals;
+    }
+}
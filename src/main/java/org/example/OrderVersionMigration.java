@@ -0,0 +1,36 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Orders placed before CustomerOrder had an @Version column have version NULL. Start them all at 0,
+ * before the order pipeline picks up the pending ones.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // raw JDBC behind Hibernate's back: run before anything warms the second-level cache
+public class OrderVersionMigration implements CommandLineRunner {
+
+    private final DataSource dataSource;
+
+    public OrderVersionMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        try (Connection c = dataSource.getConnection();
+             Statement s = c.createStatement()) {
+            int updated = s.executeUpdate("UPDATE customer_order SET version = 0 WHERE version IS NULL");
+            if (updated > 0) {
+                System.out.println("✅ Initialized version for " + updated + " orders.");
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Book prices as a sorted double[] with a parallel int[] of book ids, ordered
+ * by (price, id). A min/max range is two binary searches, so counts are
+ * O(log n) and listing the ids is O(log n + k). Prices are kept exactly as
+ * stored, so the bounds compare the same way as the search filter's doubles.
+ * Books without a price are not indexed, matching the filter which never lets them through.
+ */
+@Component
+public class PriceIndex implements CommandLineRunner {
+
+    private final BookRepository bookRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private double[] prices = new double[16];
+    private int[] ids = new int[16];
+    private int size;
+
+    // where each book currently sits, needed to move it when its price changes
+    private final Map<Integer, Double> priceById = new HashMap<>();
+
+    public PriceIndex(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public void run(String... args) {
+        rebuild();
+    }
+
+    public void rebuild() {
+        List<Object[]> rows = bookRepository.findPriceFields();
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            priceById.clear();
+            for (Object[] row : rows) {
+                if (row[1] != null) {
+                    priceById.put(CatalogSearchIndex.toIntId((Long) row[0]), (Double) row[1]);
+                }
+            }
+            // sort ids by (price, id) once instead of inserting one by one
+            Integer[] order = priceById.keySet().toArray(new Integer[0]);
+            Arrays.sort(order, (a, b) -> {
+                int c = Double.compare(priceById.get(a), priceById.get(b));
+                return c != 0 ? c : Integer.compare(a, b);
+            });
+            int n = order.length;
+            prices = new double[Math.max(16, n)];
+            ids = new int[Math.max(16, n)];
+            for (int i = 0; i < n; i++) {
+                ids[i] = order[i];
+                prices[i] = priceById.get(order[i]);
+            }
+            size = n;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("Price index built for " + size + " books.");
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isRemoval()) {
+            remove(event.bookId());
+        } else if (event.book().getId() != null) {
+            put(event.book().getId(), event.book().getBookPrice());
+        }
+    }
+
+    @EventListener
+    public void onBooksAdded(BooksAddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo book : event.books()) {
+                putLocked(CatalogSearchIndex.toIntId(book.getId()), book.getBookPrice());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or moves a book to its current price; a null price removes it.
+     */
+    public void put(Long bookId, Double price) {
+        lock.writeLock().lock();
+        try {
+            putLocked(CatalogSearchIndex.toIntId(bookId), price);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long bookId) {
+        if (bookId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(CatalogSearchIndex.toIntId(bookId));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of priced books with minPrice <= price <= maxPrice; a null bound is open.
+     */
+    public int count(Double minPrice, Double maxPrice) {
+        lock.readLock().lock();
+        try {
+            return Math.max(0, upper(maxPrice) - lower(minPrice));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of priced books with minPrice <= price <= maxPrice, sorted by id
+     * so they can be intersected with other index results.
+     */
+    public int[] find(Double minPrice, Double maxPrice) {
+        int[] out;
+        lock.readLock().lock();
+        try {
+            int from = lower(minPrice);
+            int to = upper(maxPrice);
+            out = from < to ? Arrays.copyOfRange(ids, from, to) : new int[0];
+        } finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(out);
+        return out;
+    }
+
+    private void putLocked(int id, Double price) {
+        removeLocked(id);
+        if (price == null) {
+            return;
+        }
+        int pos = -search(price, id) - 1;
+        if (size == ids.length) {
+            prices = Arrays.copyOf(prices, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(prices, pos, prices, pos + 1, size - pos);
+        System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+        prices[pos] = price;
+        ids[pos] = id;
+        size++;
+        priceById.put(id, price);
+    }
+
+    private void removeLocked(int id) {
+        Double price = priceById.remove(id);
+        if (price == null) {
+            return;
+        }
+        int pos = search(price, id);
+        if (pos >= 0) {
+            System.arraycopy(prices, pos + 1, prices, pos, size - pos - 1);
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+        }
+    }
+
+    // binary search on (price, id); same contract as Arrays.binarySearch
+    private int search(double price, int id) {
+        int lo = 0, hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Double.compare(prices[mid], price);
+            if (cmp == 0) {
+                cmp = Integer.compare(ids[mid], id);
+            }
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    // first position with price >= minPrice
+    private int lower(Double minPrice) {
+        if (minPrice == null) {
+            return 0;
+        }
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] < minPrice) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // first position with price > maxPrice
+    private int upper(Double maxPrice) {
+        if (maxPrice == null) {
+            return size;
+        }
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (prices[mid] <= maxPrice) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,39 @@
+package org.example;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Seek position in a purchase history: the (order createdAt, line id) of the last row shown.
+ * Rendered into URLs as "2024-05-01T10:15:30.123456Z,42".
+ */
+public record PurchaseCursor(Instant createdAt, Long id) {
+
+    public static PurchaseCursor of(OrderLine line) {
+        return new PurchaseCursor(line.getOrder().getCreatedAt(), line.getId());
+    }
+
+    /**
+     * @param raw value of an after request parameter
+     * @return the cursor, or null if raw is missing or malformed
+     */
+    public static PurchaseCursor parse(String raw) {
+        if (raw == null || raw.isEmpty()) {
+            return null;
+        }
+        int comma = raw.lastIndexOf(',');
+        if (comma < 0) {
+            return null;
+        }
+        try {
+            return new PurchaseCursor(Instant.parse(raw.substring(0, comma).trim()), Long.parseLong(raw.substring(comma + 1).trim()));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return createdAt + "," + id;
+    }
+}
@@ -1,40 +1,112 @@
 package org.example;
 
 import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
 @Controller
 public class PurchaseHistoryController {
 
     private final PurchaseHistoryService purchaseHistoryService;
+    private final OrderService orderService;
+    private final int pageSize;
 
-    public PurchaseHistoryController(PurchaseHistoryService purchaseHistoryService) {
+    public PurchaseHistoryController(PurchaseHistoryService purchaseHistoryService, OrderService orderService,
+                                     @Value("${bookstore.history.page-size:20}") int pageSize) {
         this.purchaseHistoryService = purchaseHistoryService;
+        this.orderService = orderService;
+        this.pageSize = pageSize;
+    }
+
+    public record PurchaseView(Long id, Long bookId, String title, String author, String genre, String coverUrl,
+                               int quantity, Double unitPrice, Instant purchasedAt) {
+
+        static PurchaseView of(OrderLine line) {
+            BookInfo book = line.getBook();
+            return new PurchaseView(line.getId(), book.getId(), line.getBookTitle(), book.getBookAuthor(),
+                    book.getBookGenre(), book.getBookCoverURL(), line.getQuantity(), line.getUnitPrice(),
+                    line.getOrder().getCreatedAt());
+        }
     }
 
+    public record PurchasePageView(List<PurchaseView> purchases, String nextCursor) {}
+
     @GetMapping("/purchase-history")
-    public String viewPurchaseHistory(Model model, HttpSession session) {
+    public String viewPurchaseHistory(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                      @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                      Model model, HttpSession session) {
         User user = (User) session.getAttribute("user");
         if (user == null || !user.isCustomer()) {
             return "redirect:/login";
         }
 
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-
         model.addAttribute("user", user);
         model.addAttribute("isLoggedIn", true);
         model.addAttribute("isAdmin", user.isAdmin());
 
-        // reuse "books" like cart/inventory
-        model.addAttribute("books", history.getBooks());
+        // first page only; the rest is fetched from /api/purchase-history as the user scrolls
+        PurchaseHistoryService.PurchasePage page = purchaseHistoryService.getPurchases(user, from, to, null, pageSize);
+        model.addAttribute("purchases", page.purchases());
+        model.addAttribute("nextCursor", page.next() == null ? null : page.next().toString());
+        model.addAttribute("purchasedCount", purchaseHistoryService.countPurchasedCopies(user));
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+
+        // recent orders, including ones the pipeline hasn't finished yet
+        List<CustomerOrder> orders = orderService.recentOrders(user);
+        model.addAttribute("orders", orders);
+        model.addAttribute("hasPendingOrders", orders.stream().anyMatch(CustomerOrder::isPending));
 
         return "purchase-history"; // matches purchase-history.html
     }
 
+    /**
+     * Next page of purchases for infinite scroll.
+     *
+     * @param after cursor returned with the previous page, omitted for the first page
+     */
+    @GetMapping("/api/purchase-history")
+    @ResponseBody
+    public ResponseEntity<PurchasePageView> purchasePage(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                         @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam(required = false) Integer size,
+                                                         HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        if (user == null || !user.isCustomer()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        PurchaseHistoryService.PurchasePage page = purchaseHistoryService.getPurchases(user, from, to,
+                PurchaseCursor.parse(after), size == null ? pageSize : size);
+        return ResponseEntity.ok(new PurchasePageView(
+                page.purchases().stream().map(PurchaseView::of).toList(),
+                page.next() == null ? null : page.next().toString()));
+    }
+
+    @DeleteMapping("/api/purchase-history/{id}")
+    @ResponseBody
+    public ResponseEntity<Void> deletePurchase(@PathVariable Long id, HttpSession session) {
+        User user = (User) session.getAttribute("user");
+        if (user == null || !user.isCustomer()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return purchaseHistoryService.removePurchase(user, id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
     @PostMapping("/purchase-history/remove/{id}")
-    public String removeFromHistory(@PathVariable("id") Long bookId,
+    public String removeFromHistory(@PathVariable("id") Long purchaseId,
                                     HttpSession session) {
 
         User user = (User) session.getAttribute("user");
@@ -42,7 +114,7 @@ public class PurchaseHistoryController {
             return "redirect:/login";
         }
 
-        purchaseHistoryService.removeBookFromHistory(user, bookId);
+        purchaseHistoryService.removePurchase(user, purchaseId);
         return "redirect:/purchase-history";
     }
 }
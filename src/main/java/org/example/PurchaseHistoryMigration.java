@@ -0,0 +1,93 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Moves the old purchase_history / purchased_books sets into one COMPLETED order per user, a line
+ * with quantity 1 per book at its current price (the price paid was never recorded), then drops
+ * the old tables. Also fills in title snapshots on order lines written before they existed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // raw JDBC behind Hibernate's back: run before anything warms the second-level cache
+public class PurchaseHistoryMigration implements CommandLineRunner {
+
+    private final DataSource dataSource;
+
+    public PurchaseHistoryMigration(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        try (Connection c = dataSource.getConnection()) {
+            try {
+                migrate(c);
+            } catch (SQLException ex) {
+                String msg = ex.getMessage() != null ? ex.getMessage().toLowerCase() : "";
+
+                // H2 uses 42102 for "table not found": nothing to migrate on a fresh database
+                if (ex.getErrorCode() != 42102 && !msg.contains("not found")) {
+                    throw ex;
+                }
+            }
+
+            try (Statement s = c.createStatement()) {
+                s.executeUpdate("UPDATE order_line l SET book_title = " +
+                        "(SELECT b.book_title FROM book_info b WHERE b.id = l.book_id) WHERE l.book_title IS NULL");
+            }
+        }
+    }
+
+    private void migrate(Connection c) throws SQLException {
+        // marks the orders created here, so their lines can be matched back to them
+        Timestamp migratedAt = Timestamp.from(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            int orders;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO customer_order (user_id, status, created_at, completed_at, item_count, total_cents) " +
+                            "SELECT ph.user_id, 'COMPLETED', ?, ?, COUNT(*), COALESCE(SUM(ROUND(b.book_price * 100)), 0) " +
+                            "FROM purchase_history ph " +
+                            "JOIN purchased_books pb ON pb.purchase_history_id = ph.id " +
+                            "JOIN book_info b ON b.id = pb.book_id " +
+                            "GROUP BY ph.user_id")) {
+                ps.setTimestamp(1, migratedAt);
+                ps.setTimestamp(2, migratedAt);
+                orders = ps.executeUpdate();
+            }
+
+            int lines;
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO order_line (order_id, book_id, quantity, unit_price, book_title) " +
+                            "SELECT o.id, b.id, 1, b.book_price, b.book_title " +
+                            "FROM purchase_history ph " +
+                            "JOIN purchased_books pb ON pb.purchase_history_id = ph.id " +
+                            "JOIN book_info b ON b.id = pb.book_id " +
+                            "JOIN customer_order o ON o.user_id = ph.user_id AND o.created_at = ?")) {
+                ps.setTimestamp(1, migratedAt);
+                lines = ps.executeUpdate();
+            }
+
+            try (Statement s = c.createStatement()) {
+                s.executeUpdate("DROP TABLE purchased_books");
+                s.executeUpdate("DROP TABLE purchase_history");
+            }
+            c.commit();
+            System.out.println("✅ Moved " + lines + " purchased books into " + orders + " completed orders.");
+        } catch (SQLException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -1,51 +1,96 @@
 package org.example;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
 
+/**
+ * A customer's purchase history, read from their completed orders. Checkout only ever inserts order
+ * rows, so its cost doesn't depend on how much the customer bought before, and the history is read
+ * one keyset page at a time, so neither does viewing it.
+ */
 @Service
 public class PurchaseHistoryService {
 
-    private final PurchaseHistoryRepository purchaseHistoryRepository;
-    private final BookRepository bookRepository;
+    // upper bound for the page size, whatever the client asks for
+    static final int MAX_PAGE_SIZE = 100;
 
-    public PurchaseHistoryService(PurchaseHistoryRepository purchaseHistoryRepository,
-                                  BookRepository bookRepository) {
-        this.purchaseHistoryRepository = purchaseHistoryRepository;
-        this.bookRepository = bookRepository;
-    }
-
-    public PurchaseHistory getOrCreateHistory(User user) {
-        return purchaseHistoryRepository.findByUser(user)
-                .orElseGet(() -> purchaseHistoryRepository.save(new PurchaseHistory(user)));
-    }
+    // open upper end of a date range
+    private static final Instant END_OF_TIME = Instant.parse("9999-12-31T00:00:00Z");
 
-    public void addBookToHistory(User user, Long bookId) {
-        PurchaseHistory history = getOrCreateHistory(user);
+    private final OrderLineRepository orderLineRepository;
+    private final GenreAffinityService affinityService;
+    private final ApplicationEventPublisher events;
 
-        BookInfo book = bookRepository.findById(bookId)
-                .orElseThrow(() -> new IllegalArgumentException("Book not found: " + bookId));
-
-        history.addBook(book);
-        purchaseHistoryRepository.save(history);
+    public PurchaseHistoryService(OrderLineRepository orderLineRepository, GenreAffinityService affinityService,
+                                  ApplicationEventPublisher events) {
+        this.orderLineRepository = orderLineRepository;
+        this.affinityService = affinityService;
+        this.events = events;
     }
 
-    public void removeBookFromHistory(User user, Long bookId) {
-        PurchaseHistory history = getOrCreateHistory(user);
+    /**
+     * @param next where the following page starts, null on the last page
+     */
+    public record PurchasePage(List<OrderLine> purchases, PurchaseCursor next) {}
+
+    /**
+     * One page of purchased order lines, newest order first. Buying a book again is a separate entry.
+     *
+     * @param from  first day to include, open if null
+     * @param to    last day to include, open if null
+     * @param after cursor from the previous page, null for the first page
+     */
+    public PurchasePage getPurchases(User user, LocalDate from, LocalDate to, PurchaseCursor after, int size) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        ZoneId zone = ZoneId.systemDefault();
+        Instant lower = from == null ? Instant.EPOCH : from.atStartOfDay(zone).toInstant();
+        Instant upper = to == null ? END_OF_TIME : to.plusDays(1).atStartOfDay(zone).toInstant();
 
-        Optional<BookInfo> bookOpt = history.getBooks().stream()
-                .filter(b -> b.getId().equals(bookId))
-                .findFirst();
+        Instant beforeAt = upper;
+        Long beforeId = Long.MIN_VALUE;
+        if (after != null && after.createdAt().isBefore(upper)) {
+            beforeAt = after.createdAt();
+            beforeId = after.id();
+        }
 
-        bookOpt.ifPresent(book -> {
-            history.removeBook(book);
-            purchaseHistoryRepository.save(history);
-        });
+        // one extra row tells us if there is another page
+        List<OrderLine> rows = orderLineRepository.findPurchasePage(user.getId(), lower, beforeAt, beforeId,
+                PageRequest.ofSize(limit + 1));
+        if (rows.size() <= limit) {
+            return new PurchasePage(rows, null);
+        }
+        List<OrderLine> page = rows.subList(0, limit);
+        return new PurchasePage(page, PurchaseCursor.of(page.get(limit - 1)));
     }
 
-    public void save(PurchaseHistory history) {
-        purchaseHistoryRepository.save(history);
+    /**
+     * Copies bought over the user's whole history, summed in the database.
+     */
+    public long countPurchasedCopies(User user) {
+        return orderLineRepository.sumPurchasedQuantity(user.getId());
     }
 
+    /**
+     * Hides one purchase entry from the user's history by its key. The order line itself is kept,
+     * so the order's totals and the sale record stay as they were.
+     *
+     * @return false if there is no such purchase of this user, or it is already hidden
+     */
+    @Transactional
+    public boolean removePurchase(User user, Long purchaseId) {
+        if (orderLineRepository.hidePurchase(user.getId(), purchaseId) == 0) {
+            return false;
+        }
+        // a removed purchase stops counting towards recommendations; rare enough to recompute
+        affinityService.rebuild(user.getId());
+        events.publishEvent(new PurchasesChangedEvent(user.getId()));
+        return true;
+    }
 }
@@ -0,0 +1,9 @@
+package org.example;
+
+/**
+ * Published when a customer's purchases change: an order of theirs completed, or an entry was removed
+ * from their history. Anything derived from what they bought, like their recommendations, is stale.
+ *
+ * @param userId the customer
+ */
+public record PurchasesChangedEvent(Long userId) {}
@@ -0,0 +1,132 @@
+package org.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Recommended book ids per customer, least recently used evicted first, each kept for at most a TTL.
+ * An entry is dropped when the customer's purchases change, and goes stale when the catalog changes in a
+ * way that affects scoring ({@link RecommendationIndex#version()}). Concurrent misses for the same customer
+ * share one computation: the first caller computes, the others wait for its result.
+ */
+@Component
+public class RecommendationCache {
+
+    private final class Entry {
+        final CompletableFuture<List<Long>> ids = new CompletableFuture<>();
+        final int limit;
+        final long catalogVersion;
+        final long loadedAt;
+
+        Entry(int limit, long catalogVersion, long loadedAt) {
+            this.limit = limit;
+            this.catalogVersion = catalogVersion;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isFresh(int limit, long catalogVersion, long now) {
+            return this.limit == limit && this.catalogVersion == catalogVersion && now - loadedAt < ttlMillis;
+        }
+    }
+
+    private final RecommendationIndex recommendationIndex;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    // guarded by itself
+    private final LinkedHashMap<Long, Entry> entries;
+
+    @Autowired
+    public RecommendationCache(RecommendationIndex recommendationIndex,
+                               @Value("${bookstore.recommendations.cache.max-users:10000}") int maxUsers,
+                               @Value("${bookstore.recommendations.cache.ttl-seconds:600}") long ttlSeconds) {
+        this(recommendationIndex, maxUsers, ttlSeconds * 1000, System::currentTimeMillis);
+    }
+
+    RecommendationCache(RecommendationIndex recommendationIndex, int maxUsers, long ttlMillis, LongSupplier clock) {
+        this.recommendationIndex = recommendationIndex;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        int capacity = Math.max(1, maxUsers);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * The cached ids for this customer, or the loader's result, which is then cached. A loader that
+     * throws caches nothing; callers waiting on it get the same exception.
+     */
+    public List<Long> get(Long userId, int limit, Supplier<List<Long>> loader) {
+        long now = clock.getAsLong();
+        long catalogVersion = recommendationIndex.version();
+        Entry entry;
+        boolean mine = false;
+        synchronized (entries) {
+            entry = entries.get(userId);
+            if (entry == null || !entry.isFresh(limit, catalogVersion, now)) {
+                entry = new Entry(limit, catalogVersion, now);
+                entries.put(userId, entry);
+                mine = true;
+            }
+        }
+
+        if (mine) {
+            try {
+                entry.ids.complete(List.copyOf(loader.get()));
+            } catch (RuntimeException e) {
+                synchronized (entries) {
+                    entries.remove(userId, entry);
+                }
+                entry.ids.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return entry.ids.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    public void invalidate(Long userId) {
+        synchronized (entries) {
+            entries.remove(userId);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // Dropped now, and again after commit, so a page load racing the commit can't put the old list back
+    @EventListener
+    public void onPurchasesChanged(PurchasesChangedEvent event) {
+        invalidate(event.userId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(event.userId());
+                }
+            });
+        }
+    }
+}
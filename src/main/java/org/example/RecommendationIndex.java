@@ -0,0 +1,184 @@
+package org.example;
+
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Ranks books for a genre profile. The genre postings are {@link GenreFacetIndex}'s, keyed by the same Genre ids
+ * as the profile; this index only adds each book's price. Each book scores the sum of the weights of its genres,
+ * and a min-heap of size {@code limit} keeps the best ones (ties go to the dearer book, as the old per-genre
+ * queries ordered by price).
+ */
+@Component
+public class RecommendationIndex implements CommandLineRunner, RecommendationScorer {
+
+    /**
+     * A private, read-only copy of the index, so a batch job can score every customer against one
+     * catalog state without taking the index locks per customer.
+     */
+    public final class Snapshot implements RecommendationScorer {
+        private final GenreFacetIndex.Snapshot genres;
+        private final Map<Integer, Double> priceByBook;
+        private final long version;
+
+        private Snapshot(GenreFacetIndex.Snapshot genres, Map<Integer, Double> priceByBook, long priceFingerprint) {
+            this.genres = genres;
+            this.priceByBook = priceByBook;
+            this.version = priceFingerprint ^ genres.fingerprint();
+        }
+
+        @Override
+        public List<Long> topBooks(Map<Long, Double> affinity, Set<Long> exclude, int limit) {
+            if (limit <= 0 || affinity.isEmpty()) {
+                return List.of();
+            }
+            return rank(genres.sumWeights(affinity), priceByBook, exclude, limit);
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+    }
+
+    private final BookRepository bookRepository;
+    private final GenreFacetIndex genreIndex;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, Double> priceByBook = new HashMap<>();
+
+    // XOR of a hash of every book's (id, price): stock changes publish the same event but leave it alone,
+    // and unlike a counter it means the same thing after a restart, so stored results can be checked
+    private volatile long priceFingerprint;
+
+    public RecommendationIndex(BookRepository bookRepository, GenreFacetIndex genreIndex) {
+        this.bookRepository = bookRepository;
+        this.genreIndex = genreIndex;
+    }
+
+    @Override
+    public void run(String... args) {
+        List<Object[]> rows = bookRepository.findPriceFields();
+        lock.writeLock().lock();
+        try {
+            priceByBook.clear();
+            priceFingerprint = 0;
+            for (Object[] row : rows) {
+                addLocked(CatalogSearchIndex.toIntId((Long) row[0]), (Double) row[1]);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        int id = CatalogSearchIndex.toIntId(event.bookId());
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (!event.isRemoval()) {
+                addLocked(id, event.book().getBookPrice());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onBooksAdded(BooksAddedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (BookInfo book : event.books()) {
+                int id = CatalogSearchIndex.toIntId(book.getId());
+                removeLocked(id);
+                addLocked(id, book.getBookPrice());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes whenever a book is added or removed, or its genres or price change.
+     */
+    @Override
+    public long version() {
+        return priceFingerprint ^ genreIndex.fingerprint();
+    }
+
+    @Override
+    public List<Long> topBooks(Map<Long, Double> affinity, Set<Long> exclude, int limit) {
+        if (limit <= 0 || affinity.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Double> scores = genreIndex.sumWeights(affinity);
+
+        lock.readLock().lock();
+        try {
+            return rank(scores, priceByBook, exclude, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Snapshot snapshot() {
+        GenreFacetIndex.Snapshot genres = genreIndex.snapshot();
+        lock.readLock().lock();
+        try {
+            return new Snapshot(genres, new HashMap<>(priceByBook), priceFingerprint);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static List<Long> rank(Map<Integer, Double> scores, Map<Integer, Double> priceByBook,
+                                   Set<Long> exclude, int limit) {
+        Comparator<Integer> better = Comparator.<Integer>comparingDouble(scores::get)
+                .thenComparingDouble(id -> priceByBook.getOrDefault(id, 0.0))
+                .thenComparing(Comparator.reverseOrder());
+        // the root is the weakest book kept so far
+        PriorityQueue<Integer> heap = new PriorityQueue<>(limit + 1, better);
+        for (Integer id : scores.keySet()) {
+            if (exclude.contains(id.longValue())) {
+                continue;
+            }
+            if (heap.size() < limit) {
+                heap.add(id);
+            } else if (better.compare(id, heap.peek()) > 0) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+
+        Long[] best = new Long[heap.size()];
+        for (int i = best.length - 1; i >= 0; i--) {
+            best[i] = heap.poll().longValue();
+        }
+        return Arrays.asList(best);
+    }
+
+    private void addLocked(int id, Double price) {
+        double p = price == null ? 0.0 : price;
+        priceByBook.put(id, p);
+        priceFingerprint ^= hash(id, p);
+    }
+
+    private void removeLocked(int id) {
+        Double price = priceByBook.remove(id);
+        if (price != null) {
+            priceFingerprint ^= hash(id, price);
+        }
+    }
+
+    private static long hash(int id, double price) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        h = (h ^ Double.doubleToLongBits(price)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,220 @@
+package org.example;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Precomputes every customer's recommendations ahead of peak traffic. Customers are read in id order a wave
+ * at a time; each wave is split across a ForkJoin pool and scored against one {@link RecommendationIndex.Snapshot},
+ * and every leaf bulk-writes its rows to user_recommendations. Progress is saved after each wave, so a run
+ * that is stopped carries on from the last finished wave the next time.
+ * <p>
+ * Disabled unless {@code bookstore.recommendations.precompute.cron} is set. A scheduled run is handed to the
+ * job's own thread, so the shared scheduler keeps flushing carts and expiring holds while it runs.
+ */
+@Component
+public class RecommendationPrecomputeJob {
+
+    /**
+     * What the last run did. usersPerSecond covers this process only, not waves finished before a restart.
+     */
+    public record RunStats(String status, Instant startedAt, Instant finishedAt, long usersProcessed,
+                           long failures, long resumedAfterUserId, double usersPerSecond) {}
+
+    private final UserRepository userRepository;
+    private final OrderLineRepository orderLineRepository;
+    private final GenreAffinityService affinityService;
+    private final RecommendationService recommendationService;
+    private final RecommendationIndex recommendationIndex;
+    private final UserRecommendationStore store;
+    private final int parallelism;
+    private final int topN;
+    private final int waveSize;
+    private final int chunkSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService launcher = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "recommendation-precompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile RunStats lastRun;
+
+    public RecommendationPrecomputeJob(UserRepository userRepository, OrderLineRepository orderLineRepository,
+                                       GenreAffinityService affinityService, RecommendationService recommendationService,
+                                       RecommendationIndex recommendationIndex, UserRecommendationStore store,
+                                       @Value("${bookstore.recommendations.precompute.parallelism:0}") int parallelism,
+                                       @Value("${bookstore.recommendations.precompute.top-n:20}") int topN,
+                                       @Value("${bookstore.recommendations.precompute.wave-size:5000}") int waveSize,
+                                       @Value("${bookstore.recommendations.precompute.chunk-size:250}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.orderLineRepository = orderLineRepository;
+        this.affinityService = affinityService;
+        this.recommendationService = recommendationService;
+        this.recommendationIndex = recommendationIndex;
+        this.store = store;
+        // 0 = one worker per core
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.topN = Math.max(1, topN);
+        this.waveSize = Math.max(1, waveSize);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(cron = "${bookstore.recommendations.precompute.cron:-}")
+    public void scheduledRun() {
+        launcher.execute(this::run);
+    }
+
+    /**
+     * Runs the job now, unless it is already running.
+     *
+     * @return false if another run was in progress
+     */
+    public boolean run() {
+        if (!running.compareAndSet(false, true)) {
+            System.out.println("⏭️ Recommendation precompute already running, skipping");
+            return false;
+        }
+        try {
+            runOnce();
+            return true;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public Optional<RunStats> lastRun() {
+        return Optional.ofNullable(lastRun);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // an interrupted run keeps its saved progress and resumes next time
+        launcher.shutdownNow();
+    }
+
+    private void runOnce() {
+        RecommendationIndex.Snapshot snapshot = recommendationIndex.snapshot();
+        Optional<UserRecommendationStore.Progress> previous = store.loadProgress();
+
+        // an unfinished run against the same catalog picks up where it stopped; otherwise every row is redone
+        boolean resume = previous.isPresent()
+                && previous.get().status() == UserRecommendationStore.Status.RUNNING
+                && previous.get().catalogVersion() == snapshot.version();
+        long cursor = resume ? previous.get().lastUserId() : 0L;
+        long usersDone = resume ? previous.get().usersDone() : 0L;
+        long failures = resume ? previous.get().failures() : 0L;
+        Instant startedAt = resume ? previous.get().startedAt() : Instant.now();
+        long resumedAfter = cursor;
+        if (resume) {
+            System.out.println("🔁 Resuming recommendation precompute after user " + cursor);
+        }
+
+        // the same for every customer without purchases, so computed once
+        List<Long> noPurchases = recommendationService.mostExpensiveBookIds();
+
+        long startNanos = System.nanoTime();
+        long processedHere = 0;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<Long> wave;
+            while (!(wave = userRepository.findCustomerIdsAfter(cursor, PageRequest.ofSize(waveSize))).isEmpty()) {
+                long failed = pool.invoke(new Partition(wave, 0, wave.size(), snapshot, noPurchases));
+                cursor = wave.get(wave.size() - 1);
+                usersDone += wave.size();
+                failures += failed;
+                processedHere += wave.size();
+                store.saveProgress(new UserRecommendationStore.Progress(UserRecommendationStore.Status.RUNNING,
+                        cursor, snapshot.version(), usersDone, failures, startedAt, null));
+
+                double perSecond = perSecond(processedHere, startNanos);
+                System.out.printf("🧮 Precomputed recommendations for %d users (through user %d, %.0f users/s)%n",
+                        usersDone, cursor, perSecond);
+                lastRun = new RunStats("RUNNING", startedAt, null, usersDone, failures, resumedAfter, perSecond);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        Instant finishedAt = Instant.now();
+        store.saveProgress(new UserRecommendationStore.Progress(UserRecommendationStore.Status.DONE,
+                cursor, snapshot.version(), usersDone, failures, startedAt, finishedAt));
+        double perSecond = perSecond(processedHere, startNanos);
+        lastRun = new RunStats("DONE", startedAt, finishedAt, usersDone, failures, resumedAfter, perSecond);
+        System.out.printf("✅ Recommendation precompute done: %d users, %d failed, %.0f users/s, took %s%n",
+                usersDone, failures, perSecond, Duration.between(startedAt, finishedAt));
+    }
+
+    private static double perSecond(long count, long startNanos) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? count / seconds : 0;
+    }
+
+    /**
+     * Splits a wave in halves until a piece is at most chunkSize customers, then scores and writes that piece.
+     * Returns how many customers failed; their old rows stay, and page loads fall back to live computation.
+     */
+    private final class Partition extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Long> userIds;
+        private final int from;
+        private final int to;
+        private final RecommendationScorer scorer;
+        private final List<Long> noPurchases;
+
+        Partition(List<Long> userIds, int from, int to, RecommendationScorer scorer, List<Long> noPurchases) {
+            this.userIds = userIds;
+            this.from = from;
+            this.to = to;
+            this.scorer = scorer;
+            this.noPurchases = noPurchases;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > chunkSize) {
+                int mid = (from + to) >>> 1;
+                Partition left = new Partition(userIds, from, mid, scorer, noPurchases);
+                left.fork();
+                long right = new Partition(userIds, mid, to, scorer, noPurchases).compute();
+                return left.join() + right;
+            }
+
+            List<UserRecommendationStore.Row> rows = new ArrayList<>(to - from);
+            long failed = 0;
+            for (Long userId : userIds.subList(from, to)) {
+                try {
+                    rows.add(recommend(userId));
+                } catch (RuntimeException e) {
+                    failed++;
+                    System.out.println("⚠️ Precomputing recommendations for user " + userId + " failed: " + e.getMessage());
+                }
+            }
+            store.saveAll(rows);
+            return failed;
+        }
+
+        private UserRecommendationStore.Row recommend(Long userId) {
+            // read-only: customers who never bought anything don't get a row written for them
+            GenreAffinity profile = affinityService.readProfile(userId);
+            Map<Long, Double> affinity = profile.getWeights();
+            Set<Long> owned = affinity.isEmpty() ? Set.of() : new HashSet<>(orderLineRepository.findPurchasedBookIds(userId));
+            List<Long> ids = recommendationService.recommend(affinity, owned, topN, scorer, () -> noPurchases);
+            return new UserRecommendationStore.Row(userId, ids, topN, scorer.version(),
+                    profile.getVersion() == null ? -1 : profile.getVersion());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Progress of the current or last {@link RecommendationPrecomputeJob} run; a single row with id 1.
+ * A run that stops part way is left RUNNING with the last customer it finished, and the next run
+ * carries on after that customer as long as the catalog hasn't changed in between.
+ */
+@Entity
+@Table(name = "recommendation_precompute_run")
+public class RecommendationPrecomputeRun {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false, length = 16)
+    private String status;
+
+    @Column(name = "last_user_id", nullable = false)
+    private long lastUserId;
+
+    @Column(name = "catalog_version", nullable = false)
+    private long catalogVersion;
+
+    @Column(name = "users_done", nullable = false)
+    private long usersDone;
+
+    @Column(nullable = false)
+    private long failures;
+
+    @Column(name = "started_at")
+    private Instant startedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    protected RecommendationPrecomputeRun() {}
+}
@@ -0,0 +1,24 @@
+package org.example;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ranks books for a genre profile: the live {@link RecommendationIndex}, or a snapshot of it.
+ */
+public interface RecommendationScorer {
+
+    /**
+     * The {@code limit} best-scoring book ids for a genre profile, best first.
+     *
+     * @param affinity genre id -> weight
+     * @param exclude  ids never to return, e.g. books the customer already owns
+     */
+    List<Long> topBooks(Map<Long, Double> affinity, Set<Long> exclude, int limit);
+
+    /**
+     * Equal for equal catalog contents (book ids, genres, prices), across restarts too.
+     */
+    long version();
+}
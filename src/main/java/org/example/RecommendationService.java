@@ -4,107 +4,91 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @Service
 public class RecommendationService {
 
     @Autowired
-    private PurchaseHistoryRepository purchaseRepo;
+    private OrderLineRepository orderLineRepo;
 
     @Autowired
     private BookRepository bookRepo;
 
-    public List<BookInfo> getRecommendations(User user, int limit) {
+    @Autowired
+    private GenreAffinityService affinityService;
 
-        System.out.println("RecommendationService.getRecommendations");
-        System.out.println("User: " + (user == null ? "NULL" : user.getUsername()));
-        System.out.println("Limit: " + limit);
+    @Autowired
+    private RecommendationIndex recommendationIndex;
 
+    @Autowired
+    private RecommendationCache recommendationCache;
+
+    @Autowired
+    private UserRecommendationStore precomputed;
+
+    /**
+     * Served from {@link RecommendationCache} until the user buys something or the catalog changes.
+     * A miss reads the row {@link RecommendationPrecomputeJob} wrote, and only computes live if that row
+     * is missing or out of date.
+     */
+    public List<BookInfo> getRecommendations(User user, int limit) {
         if (user == null) {
             System.out.println("User is NULL → returning empty list");
             return Collections.emptyList();
         }
 
-        // get all genres from user purchases
-        // Raw genres (each may contain comma-separated items)
-        List<String> rawGenres = purchaseRepo.findGenresByUser(user.getId());
-        System.out.println("Raw genres from DB: " + rawGenres);
-
-        // Split each item by comma, flatten into one list
-        List<String> purchasedGenres = rawGenres.stream()
-                .filter(Objects::nonNull)
-                .flatMap(g -> Arrays.stream(g.split(",")))   // split by comma
-                .map(String::trim)                           // remove spaces
-                .filter(s -> !s.isEmpty())                   // ignore empty
-                .collect(Collectors.toList());
-
-        System.out.println("Normalized genres: " + purchasedGenres);
-
-        System.out.println("Purchased Genres: " + purchasedGenres);
-
-        // if no purchases
-        if (purchasedGenres.isEmpty()) {
-            System.out.println("No purchased genres → returning top 10 expensive books");
-            List<BookInfo> topBooks = bookRepo.findTop10ByOrderByBookPriceDesc();
-            System.out.println("Top books: " + topBooks);
-            return topBooks;
-        }
-
-        // counting frequency of each genre
-        Map<String, Long> genreCounts = purchasedGenres.stream()
-                .collect(Collectors.groupingBy(g -> g, Collectors.counting()));
-        System.out.println("Genre Counts: " + genreCounts);
-
-        // sort all genres by frequency
-        List<String> sortedGenres = genreCounts.entrySet().stream()
-                .sorted((a, b) -> b.getValue().compareTo(a.getValue()))
-                .map(Map.Entry::getKey)
-                .toList();
-        System.out.println("Sorted Genres by frequency: " + sortedGenres);
-
-        // user's purchase history object
-        PurchaseHistory history = purchaseRepo.findByUser(user).orElse(null);
-        System.out.println("PurchaseHistory found? " + (history != null));
-        if (history != null)
-            System.out.println("Books already owned: " + history.getBooks());
+        List<Long> ids = recommendationCache.get(user.getId(), limit, () ->
+                precomputed.lookup(user.getId(), limit, recommendationIndex.version())
+                        .orElseGet(() -> recommendBookIds(user, limit)));
 
-        List<BookInfo> recommended = new ArrayList<>();
-
-        // go through each genre and pick books
-        for (String genre : sortedGenres) {
-
-            System.out.println("Checking genre: " + genre);
+        // book rows come from the second-level cache
+        List<BookInfo> recommended = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            bookRepo.findById(id).ifPresent(recommended::add);
+        }
+        return recommended;
+    }
 
-            List<BookInfo> booksInGenre = bookRepo.findBooksByGenreContains(genre);
+    List<Long> recommendBookIds(User user, int limit) {
 
+        System.out.println("RecommendationService.recommendBookIds (cache miss)");
+        System.out.println("User: " + user.getUsername());
+        System.out.println("Limit: " + limit);
 
-            System.out.println("Books found in genre '" + genre + "': " + booksInGenre);
+        // the user's genre profile, one row kept up to date at checkout, heaviest genre first
+        Map<Long, Double> affinity = affinityService.getAffinity(user.getId());
+        System.out.println("Genre affinity: " + affinity);
 
-            for (BookInfo b : booksInGenre) {
-                boolean alreadyHas =
-                        (history != null && history.getBooks().contains(b));
+        // ids of books the user already bought; without purchases there is nothing to exclude
+        Set<Long> owned = affinity.isEmpty() ? Set.of() : new HashSet<>(orderLineRepo.findPurchasedBookIds(user.getId()));
+        System.out.println("Books already owned: " + owned);
 
-                System.out.println("   Book: " + b.getBookTitle()
-                        + " | already owned? " + alreadyHas);
+        List<Long> ids = recommend(affinity, owned, limit, recommendationIndex, this::mostExpensiveBookIds);
 
-                if (!alreadyHas) {
-                    recommended.add(b);
-                    System.out.println("Added to recommendations");
+        System.out.println("Final Recommendations ===");
+        System.out.println(ids);
 
-                    if (recommended.size() >= limit) {
-                        System.out.println("Reached limit (" + limit + ")");
-                        break;
-                    }
-                }
-            }
+        return ids;
+    }
 
-            if (recommended.size() >= limit) break;
+    /**
+     * The recommendation itself, shared by page loads and {@link RecommendationPrecomputeJob}: one pass over
+     * the postings of the user's genres with the best {@code limit} books kept in a heap, or the fallback list
+     * for a user who hasn't bought anything.
+     */
+    public List<Long> recommend(Map<Long, Double> affinity, Set<Long> owned, int limit,
+                                RecommendationScorer scorer, Supplier<List<Long>> noPurchases) {
+        if (affinity.isEmpty()) {
+            return noPurchases.get();
         }
+        return scorer.topBooks(affinity, owned, limit);
+    }
 
-        System.out.println("Final Recommendations ===");
-        System.out.println(recommended);
-
-        return recommended;
+    public List<Long> mostExpensiveBookIds() {
+        System.out.println("No purchased genres → returning top 10 expensive books");
+        List<BookInfo> topBooks = bookRepo.findTop10ByOrderByBookPriceDesc();
+        System.out.println("Top books: " + topBooks);
+        return topBooks.stream().map(BookInfo::getId).toList();
     }
 }
@@ -0,0 +1,63 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of one bulk restock: counters plus one entry per input line, in input order.
+ */
+public class RestockResult {
+
+    public enum Status { APPLIED, NOT_FOUND, INVALID }
+
+    /**
+     * @param line      1-based line number in the input (data lines only, a CSV header is not counted)
+     * @param bookId    the book the line resolved to, null if it didn't
+     * @param inventory the book's stock after the whole restock, null unless applied
+     * @param error     why the line was not applied, null if it was
+     */
+    public record Line(long line, Long bookId, Status status, Integer inventory, String error) {}
+
+    private final List<Line> lines = new ArrayList<>();
+    private int applied;
+    private int notFound;
+    private int invalid;
+    private int booksUpdated;
+
+    void add(Line line) {
+        lines.add(line);
+        switch (line.status()) {
+            case APPLIED -> applied++;
+            case NOT_FOUND -> notFound++;
+            case INVALID -> invalid++;
+        }
+    }
+
+    void booksUpdated(int count) {
+        this.booksUpdated = count;
+    }
+
+    public int getLinesRead() {
+        return lines.size();
+    }
+
+    public int getApplied() {
+        return applied;
+    }
+
+    public int getNotFound() {
+        return notFound;
+    }
+
+    public int getInvalid() {
+        return invalid;
+    }
+
+    public int getBooksUpdated() {
+        return booksUpdated;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,225 @@
+package org.example;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Bulk stock changes after a delivery or a stock take. Each input line names a book by ID or ISBN and
+ * gives either a delta or an absolute stock level. All lines are parsed and resolved first, then
+ * applied in one transaction as batched UPDATEs via {@link StockService#applyAll}; lines for the
+ * same book are folded into one change in input order, with the same result as applying them one by one.
+ * Every applied line reports the book's stock after the whole restock.
+ * <p>
+ * Input is CSV with a header (columns bookId, isbn, delta, stock), NDJSON, or a JSON array of the
+ * same fields.
+ */
+@Service
+public class RestockService {
+
+    private record Request(Long bookId, String isbn, Integer delta, Integer stock) {}
+
+    private final BookRepository bookRepository;
+    private final StockService stockService;
+    private final ApplicationEventPublisher events;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+
+    public RestockService(BookRepository bookRepository, StockService stockService,
+                          ApplicationEventPublisher events, ObjectMapper objectMapper,
+                          PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.stockService = stockService;
+        this.events = events;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Reads the stream to the end and applies every valid line.
+     *
+     * @param format "csv", "ndjson" or "json"
+     * @throws IllegalArgumentException for an unknown format or an unreadable CSV header / JSON array
+     */
+    public RestockResult restock(InputStream in, String format) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<Object> parsed = switch (format.toLowerCase(Locale.ROOT)) {
+            case "csv" -> csvRequests(reader);
+            case "ndjson" -> ndjsonRequests(new BufferedReader(reader));
+            case "json" -> jsonRequests(reader);
+            default -> throw new IllegalArgumentException("Unsupported restock format: " + format);
+        };
+
+        // resolve every ISBN with one query instead of one lookup per line
+        Map<String, Long> idsByIsbn = new HashMap<>();
+        Set<Long> knownIds = new HashSet<>();
+        for (Object[] row : bookRepository.findIdsAndIsbns()) {
+            knownIds.add((Long) row[0]);
+            if (row[1] != null) {
+                idsByIsbn.putIfAbsent(BookInfo.normalizeIsbn((String) row[1]), (Long) row[0]);
+            }
+        }
+
+        // null = invalid line, its error is in the parsed list; resolved ids in input order otherwise
+        Long[] resolved = new Long[parsed.size()];
+        Map<Long, StockService.Change> changes = new LinkedHashMap<>();
+        for (int i = 0; i < parsed.size(); i++) {
+            if (!(parsed.get(i) instanceof Request request)) {
+                continue;
+            }
+            Long bookId = request.bookId() != null
+                    ? (knownIds.contains(request.bookId()) ? request.bookId() : null)
+                    : idsByIsbn.get(BookInfo.normalizeIsbn(request.isbn()));
+            if (bookId == null) {
+                continue;
+            }
+            resolved[i] = bookId;
+            StockService.Change change = request.stock() != null
+                    ? StockService.Change.to(request.stock())
+                    : StockService.Change.by(request.delta());
+            changes.merge(bookId, change, StockService.Change::then);
+        }
+
+        Map<Long, Integer> levels = changes.isEmpty()
+                ? Map.of()
+                : transactionTemplate.execute(status -> stockService.applyAll(changes));
+        if (!levels.isEmpty()) {
+            // one event for the whole run instead of one per book
+            events.publishEvent(new StockChangedEvent(Set.copyOf(levels.keySet())));
+        }
+
+        RestockResult result = new RestockResult();
+        for (int i = 0; i < parsed.size(); i++) {
+            Object item = parsed.get(i);
+            if (item instanceof String error) {
+                result.add(new RestockResult.Line(i + 1, null, RestockResult.Status.INVALID, null, error));
+            } else if (resolved[i] == null || !levels.containsKey(resolved[i])) {
+                Request request = (Request) item;
+                String key = request.bookId() != null ? "book " + request.bookId() : "ISBN " + request.isbn();
+                result.add(new RestockResult.Line(i + 1, resolved[i], RestockResult.Status.NOT_FOUND, null, "No " + key));
+            } else {
+                result.add(new RestockResult.Line(i + 1, resolved[i], RestockResult.Status.APPLIED, levels.get(resolved[i]), null));
+            }
+        }
+        result.booksUpdated(levels.size());
+        System.out.println("📦 Restock: " + result.getApplied() + " lines applied to " + levels.size() + " books, "
+                + result.getNotFound() + " not found, " + result.getInvalid() + " invalid");
+        return result;
+    }
+
+    // Each parsed line is either a Request or a String error, so per-line results keep their input position
+
+    private List<Object> csvRequests(Reader reader) throws IOException {
+        CsvRecordReader csv = new CsvRecordReader(reader);
+        List<String> header = csv.next();
+        List<Object> parsed = new ArrayList<>();
+        if (header == null) {
+            return parsed;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("bookid") && !columns.containsKey("isbn")) {
+            throw new IllegalArgumentException("CSV header must contain a bookId or isbn column");
+        }
+
+        List<String> record;
+        while ((record = csv.next()) != null) {
+            if (record.size() == 1 && record.get(0).isBlank()) {
+                continue;
+            }
+            List<String> r = record;
+            Function<String, String> col = name -> {
+                Integer i = columns.get(name);
+                return i == null || i >= r.size() || r.get(i).isBlank() ? null : r.get(i).trim();
+            };
+            parsed.add(parseLine(col.apply("bookid"), col.apply("isbn"),
+                    col.apply("delta"), col.apply("stock")));
+        }
+        return parsed;
+    }
+
+    private List<Object> ndjsonRequests(BufferedReader reader) throws IOException {
+        List<Object> parsed = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                parsed.add(parseNode(objectMapper.readTree(line)));
+            } catch (JsonProcessingException e) {
+                parsed.add("invalid JSON: " + e.getOriginalMessage());
+            }
+        }
+        return parsed;
+    }
+
+    // Streams the array element by element rather than binding the whole list first
+    private List<Object> jsonRequests(Reader reader) throws IOException {
+        List<Object> parsed = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(reader)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Expected a JSON array of restock lines");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                parsed.add(parseNode(parser.readValueAsTree()));
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid JSON after line " + parsed.size() + ": " + e.getOriginalMessage());
+        }
+        return parsed;
+    }
+
+    private static Object parseNode(JsonNode node) {
+        return parseLine(text(node, "bookId"), text(node, "isbn"), text(node, "delta"), text(node, "stock"));
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() || value.asText().isBlank() ? null : value.asText().trim();
+    }
+
+    private static Object parseLine(String bookId, String isbn, String delta, String stock) {
+        if (bookId == null && isbn == null) {
+            return "bookId or isbn is required";
+        }
+        if ((delta == null) == (stock == null)) {
+            return "exactly one of delta or stock is required";
+        }
+        try {
+            Integer level = parseInt("stock", stock);
+            if (level != null && level < 0) {
+                return "stock must not be negative";
+            }
+            return new Request(parseNumber("bookId", bookId, Long::valueOf), isbn,
+                    parseInt("delta", delta), level);
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static Integer parseInt(String field, String value) {
+        return parseNumber(field, value, Integer::valueOf);
+    }
+
+    private static <T> T parseNumber(String field, String value, Function<String, T> parser) {
+        try {
+            return value == null ? null : parser.apply(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid " + field + " '" + value + "'");
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.example;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * JSON twin of the /search page: same filters, hits plus facet counts.
+ */
+@RestController
+@RequestMapping("/api/search")
+public class SearchApiController {
+
+    private final BookSearchService bookSearchService;
+
+    public SearchApiController(BookSearchService bookSearchService) {
+        this.bookSearchService = bookSearchService;
+    }
+
+    public record SearchResponse(int total, List<BookInfo> books, SearchFacets facets) {}
+
+    @GetMapping
+    public SearchResponse search(@RequestParam(required = false) String title,
+                                 @RequestParam(required = false) Double minPrice,
+                                 @RequestParam(required = false) Double maxPrice,
+                                 @RequestParam(required = false) String genre,
+                                 @RequestParam(required = false) String author,
+                                 @RequestParam(required = false) String publisher) {
+        List<BookInfo> books = bookSearchService.search(title, author, genre, publisher, minPrice, maxPrice);
+        return new SearchResponse(books.size(), books, bookSearchService.facets(books));
+    }
+}
@@ -0,0 +1,57 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Facet counts shown next to search results.
+ *
+ * @param genreCounts    genre -> number of results filed under it
+ * @param priceHistogram result counts per price bucket, cheapest first
+ */
+public record SearchFacets(Map<String, Integer> genreCounts, List<PriceBucket> priceHistogram) {
+
+    // bucket lower bounds in dollars; the last bucket is open-ended
+    static final double[] PRICE_EDGES = {0, 10, 20, 30, 50, 100};
+
+    /**
+     * @param min inclusive lower bound
+     * @param max exclusive upper bound, null for the open-ended last bucket
+     */
+    public record PriceBucket(double min, Double max, int count) {}
+
+    /**
+     * One pass over the results builds both the id bitset (for the genre ANDs) and the price histogram.
+     */
+    public static SearchFacets compute(List<BookInfo> results, GenreFacetIndex genreIndex, List<String> genres) {
+        BitSet matched = new BitSet();
+        int[] bucketCounts = new int[PRICE_EDGES.length];
+
+        for (BookInfo book : results) {
+            if (book.getId() != null) {
+                matched.set(CatalogSearchIndex.toIntId(book.getId()));
+            }
+            Double price = book.getBookPrice();
+            if (price != null) {
+                bucketCounts[bucketOf(price)]++;
+            }
+        }
+
+        List<PriceBucket> histogram = new ArrayList<>(PRICE_EDGES.length);
+        for (int i = 0; i < PRICE_EDGES.length; i++) {
+            Double max = i + 1 < PRICE_EDGES.length ? PRICE_EDGES[i + 1] : null;
+            histogram.add(new PriceBucket(PRICE_EDGES[i], max, bucketCounts[i]));
+        }
+        return new SearchFacets(genreIndex.countByGenre(matched, genres), histogram);
+    }
+
+    private static int bucketOf(double price) {
+        int bucket = 0;
+        while (bucket + 1 < PRICE_EDGES.length && price >= PRICE_EDGES[bucket + 1]) {
+            bucket++;
+        }
+        return bucket;
+    }
+}
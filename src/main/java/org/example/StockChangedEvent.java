@@ -0,0 +1,13 @@
+package org.example;
+
+import java.util.Set;
+
+/**
+ * Published after a stock-only change (admin +/-, completed orders, a bulk restock), in place of a
+ * BookChangedEvent per book. Only stock changed, so the search, price and genre indexes and the
+ * genre list have nothing to update.
+ *
+ * @param bookIds ids of the books whose stock was written
+ */
+public record StockChangedEvent(Set<Long> bookIds) {
+}
@@ -0,0 +1,171 @@
+package org.example;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory holds on stock for books sitting in carts, so a customer doesn't find out at checkout that
+ * a book sold out while it was in their cart. A hold keeps its units out of what others can reserve
+ * until it is released (removed from the cart, bought) or expires after the TTL; every add renews it.
+ * <p>
+ * Holds are kept in stripes by book id. Expiry runs on a {@link TimingWheel}, so an expiry pass only
+ * touches the holds that are due. Nothing here is persisted: after a restart every cart is simply unreserved.
+ */
+@Component
+public class StockReservations {
+
+    private static final int STRIPES = 32;
+
+    private record HoldKey(Long bookId, Long userId) {}
+
+    private static final class Hold {
+        int quantity;
+        long deadlineTick;
+    }
+
+    private static final class Stripe {
+        // book id -> user id -> hold
+        final Map<Long, Map<Long, Hold>> holds = new HashMap<>();
+        // book id -> units held across all users
+        final Map<Long, Integer> reserved = new HashMap<>();
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final TimingWheel<HoldKey> wheel;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+
+    @Autowired
+    public StockReservations(@Value("${bookstore.reservations.ttl-seconds:900}") long ttlSeconds,
+                             @Value("${bookstore.reservations.tick-ms:1000}") long tickMillis) {
+        this(ttlSeconds * 1000, tickMillis, System::currentTimeMillis);
+    }
+
+    StockReservations(long ttlMillis, long tickMillis, LongSupplier clock) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        // one turn of the wheel covers the TTL, so most holds expire on their first pass
+        this.wheel = new TimingWheel<>(tickMillis, (int) Math.min(4096, Math.max(64, ttlMillis / tickMillis)), clock.getAsLong());
+    }
+
+    /**
+     * Holds quantity more units of the book for the user if that many are still unreserved, and renews
+     * the user's hold on it either way.
+     *
+     * @param stock the book's current inventory
+     * @return false if fewer than quantity units are left to reserve
+     */
+    public boolean reserve(Long userId, Long bookId, int stock, int quantity) {
+        Stripe stripe = stripeFor(bookId);
+        synchronized (stripe) {
+            int reserved = stripe.reserved.getOrDefault(bookId, 0);
+            Map<Long, Hold> bookHolds = stripe.holds.get(bookId);
+            Hold hold = bookHolds == null ? null : bookHolds.get(userId);
+            boolean granted = stock - reserved >= quantity;
+            if (!granted && hold == null) {
+                return false;
+            }
+            if (hold == null) {
+                hold = new Hold();
+                stripe.holds.computeIfAbsent(bookId, id -> new HashMap<>()).put(userId, hold);
+            }
+            if (granted) {
+                hold.quantity += quantity;
+                stripe.reserved.put(bookId, reserved + quantity);
+            }
+            hold.deadlineTick = wheel.schedule(new HoldKey(bookId, userId), clock.getAsLong() + ttlMillis);
+            return granted;
+        }
+    }
+
+    /**
+     * Gives back up to quantity of the user's held units of the book.
+     */
+    public void release(Long userId, Long bookId, int quantity) {
+        Stripe stripe = stripeFor(bookId);
+        synchronized (stripe) {
+            Map<Long, Hold> bookHolds = stripe.holds.get(bookId);
+            Hold hold = bookHolds == null ? null : bookHolds.get(userId);
+            if (hold == null) {
+                return;
+            }
+            int released = Math.min(quantity, hold.quantity);
+            hold.quantity -= released;
+            if (hold.quantity == 0) {
+                removeHold(stripe, bookId, userId);
+            }
+            stripe.reserved.merge(bookId, -released, Integer::sum);
+            stripe.reserved.remove(bookId, 0);
+        }
+    }
+
+    public void release(Long userId, Map<Long, Integer> quantities) {
+        quantities.forEach((bookId, quantity) -> release(userId, bookId, quantity));
+    }
+
+    /**
+     * Whether the user holds at least quantity units of the book, i.e. checkout doesn't need to look at its stock.
+     */
+    public boolean holds(Long userId, Long bookId, int quantity) {
+        Stripe stripe = stripeFor(bookId);
+        synchronized (stripe) {
+            Map<Long, Hold> bookHolds = stripe.holds.get(bookId);
+            Hold hold = bookHolds == null ? null : bookHolds.get(userId);
+            return hold != null && hold.quantity >= quantity;
+        }
+    }
+
+    public int reserved(Long bookId) {
+        Stripe stripe = stripeFor(bookId);
+        synchronized (stripe) {
+            return stripe.reserved.getOrDefault(bookId, 0);
+        }
+    }
+
+    /**
+     * Drops holds whose TTL has passed. Entries for holds renewed since they were scheduled are ignored.
+     */
+    @Scheduled(fixedDelayString = "${bookstore.reservations.tick-ms:1000}")
+    public void expire() {
+        int expired = 0;
+        for (TimingWheel.Entry<HoldKey> entry : wheel.advance(clock.getAsLong())) {
+            Long bookId = entry.key().bookId();
+            Long userId = entry.key().userId();
+            Stripe stripe = stripeFor(bookId);
+            synchronized (stripe) {
+                Map<Long, Hold> bookHolds = stripe.holds.get(bookId);
+                Hold hold = bookHolds == null ? null : bookHolds.get(userId);
+                if (hold == null || hold.deadlineTick != entry.deadlineTick()) {
+                    continue; // released or renewed since
+                }
+                removeHold(stripe, bookId, userId);
+                stripe.reserved.merge(bookId, -hold.quantity, Integer::sum);
+                stripe.reserved.remove(bookId, 0);
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            System.out.println("⏱️ Expired " + expired + " cart reservations.");
+        }
+    }
+
+    private static void removeHold(Stripe stripe, Long bookId, Long userId) {
+        Map<Long, Hold> bookHolds = stripe.holds.get(bookId);
+        bookHolds.remove(userId);
+        if (bookHolds.isEmpty()) {
+            stripe.holds.remove(bookId);
+        }
+    }
+
+    private Stripe stripeFor(Long bookId) {
+        return stripes[Math.floorMod(Long.hashCode(bookId), STRIPES)];
+    }
+}
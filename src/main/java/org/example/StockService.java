@@ -0,0 +1,206 @@
+package org.example;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Hibernate;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * Stock changes that must not oversell under concurrency. Instead of read-check-save,
+ * each line is a conditional UPDATE that the database applies atomically.
+ */
+@Service
+public class StockService {
+
+    // bumps version so an entity read before this update fails its optimistic check instead of overwriting stock
+    static final String CONDITIONAL_DECREMENT_SQL =
+            "UPDATE book_info SET inventory = inventory - ?, version = version + 1 WHERE id = ? AND inventory >= ?";
+
+    // signed admin adjustment, floored at zero; the row lock it takes serializes concurrent adjustments
+    static final String ADJUST_SQL =
+            "UPDATE book_info SET inventory = GREATEST(inventory + ?, 0), version = version + 1 WHERE id = ?";
+
+    // bulk form of the adjustment: an absolute level (or null to keep the current one) plus a delta, floored
+    static final String RESTOCK_SQL =
+            "UPDATE book_info SET inventory = GREATEST(COALESCE(?, inventory) + ?, ?), version = version + 1 WHERE id = ?";
+
+    static final int RESTOCK_BATCH_SIZE = 1000;
+
+    /**
+     * A stock change for one book: set it to absolute (if not null), add delta, and keep the result at or
+     * above floor. A single delta has floor 0, the same as {@link #adjust}.
+     */
+    public record Change(Integer absolute, int delta, int floor) {
+
+        public static Change by(int delta) {
+            return new Change(null, delta, 0);
+        }
+
+        public static Change to(int absolute) {
+            return new Change(absolute, 0, 0);
+        }
+
+        /**
+         * This change followed by the next one, as a single change. Each step keeps its own floor:
+         * max(max(x + d1, f1) + d2, f2) = max(x + d1 + d2, max(f1 + d2, f2)), so on stock 3,
+         * "-10" then "+5" still ends at 5, as it would line by line.
+         */
+        public Change then(Change next) {
+            if (next.absolute() != null) {
+                return next;
+            }
+            return new Change(absolute, delta + next.delta(), Math.max(floor + next.delta(), next.floor()));
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public StockService(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Takes the given quantities in one JDBC batch of conditional decrements.
+     * Lines are applied in id order so concurrent checkouts lock rows in the same order.
+     * The caller's transaction must be rolled back if any line is short, or the other lines stay taken.
+     *
+     * @param quantities book ID to quantity, quantities must be positive
+     * @return IDs of books that did not have enough stock, empty if every line was taken
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<Long> tryDecrement(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> lines = new ArrayList<>(new TreeMap<>(quantities).entrySet());
+        if (lines.isEmpty()) {
+            return List.of();
+        }
+
+        entityManager.flush(); // pending entity writes must reach the rows before we update them
+        int[] counts = jdbcTemplate.batchUpdate(CONDITIONAL_DECREMENT_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<Long, Integer> line = lines.get(i);
+                ps.setInt(1, line.getValue());
+                ps.setLong(2, line.getKey());
+                ps.setInt(3, line.getValue());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return lines.size();
+            }
+        });
+
+        List<Long> shortIds = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (counts[i] != 1) {
+                shortIds.add(lines.get(i).getKey());
+            }
+        }
+        if (shortIds.isEmpty()) {
+            syncCaches(lines.stream().map(Map.Entry::getKey).toList());
+        }
+        return shortIds;
+    }
+
+    /**
+     * Adds a signed delta to the book's stock in one UPDATE, so two admins adjusting at once can't
+     * lose each other's change. Stock never goes below zero.
+     *
+     * @return the new stock level, or empty if there is no such book
+     */
+    @Transactional
+    public OptionalInt adjust(Long bookId, int delta) {
+        entityManager.flush();
+        if (jdbcTemplate.update(ADJUST_SQL, delta, bookId) == 0) {
+            return OptionalInt.empty();
+        }
+        syncCaches(List.of(bookId));
+        // still holding the row lock, so this is exactly the value our update produced
+        return OptionalInt.of(jdbcTemplate.queryForObject("SELECT inventory FROM book_info WHERE id = ?", Integer.class, bookId));
+    }
+
+    /**
+     * Applies many stock changes as JDBC batches in the caller's transaction, in id order like checkout.
+     * Caches are dropped once for the whole run: the persistence context is cleared and the
+     * BookInfo region evicted, instead of one eviction per book.
+     *
+     * @return book ID to its new stock level, only for books that exist
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Map<Long, Integer> applyAll(Map<Long, Change> changes) {
+        List<Map.Entry<Long, Change>> lines = new ArrayList<>(new TreeMap<>(changes).entrySet());
+        if (lines.isEmpty()) {
+            return Map.of();
+        }
+
+        entityManager.flush();
+        jdbcTemplate.batchUpdate(RESTOCK_SQL, lines, RESTOCK_BATCH_SIZE, (ps, line) -> {
+            if (line.getValue().absolute() == null) {
+                ps.setNull(1, Types.INTEGER);
+            } else {
+                ps.setInt(1, line.getValue().absolute());
+            }
+            ps.setInt(2, line.getValue().delta());
+            ps.setInt(3, line.getValue().floor());
+            ps.setLong(4, line.getKey());
+        });
+
+        Map<Long, Integer> levels = new HashMap<>();
+        for (int from = 0; from < lines.size(); from += RESTOCK_BATCH_SIZE) {
+            List<Long> ids = lines.subList(from, Math.min(lines.size(), from + RESTOCK_BATCH_SIZE)).stream()
+                    .map(Map.Entry::getKey).toList();
+            String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+            jdbcTemplate.query("SELECT id, inventory FROM book_info WHERE id IN (" + placeholders + ")",
+                    rs -> { levels.put(rs.getLong(1), rs.getInt(2)); }, ids.toArray());
+        }
+
+        entityManager.clear();
+        entityManagerFactory.getCache().evict(BookInfo.class);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    entityManagerFactory.getCache().evict(BookInfo.class);
+                }
+            });
+        }
+        return levels;
+    }
+
+    // The UPDATE bypassed Hibernate: reload managed copies and drop second-level cache entries,
+    // again after commit in case a concurrent reader re-cached the old row in between.
+    private void syncCaches(List<Long> ids) {
+        for (Long id : ids) {
+            entityManagerFactory.getCache().evict(BookInfo.class, id);
+            BookInfo managed = entityManager.getReference(BookInfo.class, id);
+            if (Hibernate.isInitialized(managed)) {
+                entityManager.refresh(managed);
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    ids.forEach(id -> entityManagerFactory.getCache().evict(BookInfo.class, id));
+                }
+            });
+        }
+    }
+}
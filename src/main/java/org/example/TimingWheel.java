@@ -0,0 +1,68 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hashed timing wheel: each deadline hashes by tick into one of a fixed number of buckets, so scheduling
+ * is O(1) and advancing one tick only looks at one bucket. Entries more than a full turn away just stay in
+ * their bucket until a later turn reaches their tick.
+ * <p>
+ * There is no cancel: callers re-schedule and ignore stale entries when they come due.
+ */
+class TimingWheel<K> {
+
+    record Entry<K>(K key, long deadlineTick) {}
+
+    private final long tickMillis;
+    private final List<List<Entry<K>>> buckets;
+    private final int mask;
+    private long currentTick;
+
+    /**
+     * @param slots number of buckets, rounded up to a power of two
+     */
+    TimingWheel(long tickMillis, int slots, long nowMillis) {
+        this.tickMillis = tickMillis;
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        this.mask = size - 1;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * @return the tick the entry was filed under, never earlier than the next tick
+     */
+    synchronized long schedule(K key, long deadlineMillis) {
+        long tick = Math.max((deadlineMillis + tickMillis - 1) / tickMillis, currentTick + 1);
+        buckets.get((int) (tick & mask)).add(new Entry<>(key, tick));
+        return tick;
+    }
+
+    /**
+     * Moves the wheel up to now and returns every entry whose tick has passed.
+     */
+    synchronized List<Entry<K>> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        if (target <= currentTick) {
+            return List.of();
+        }
+        List<Entry<K>> due = new ArrayList<>();
+        // after a long pause one full turn already visits every bucket
+        long steps = Math.min(target - currentTick, buckets.size());
+        for (long i = 1; i <= steps; i++) {
+            buckets.get((int) ((currentTick + i) & mask)).removeIf(entry -> {
+                if (entry.deadlineTick() <= target) {
+                    due.add(entry);
+                    return true;
+                }
+                return false;
+            });
+        }
+        currentTick = target;
+        return due;
+    }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC over user_recommendations and recommendation_precompute_run: the job writes thousands of rows
+ * per wave, and a page load needs one primary-key lookup, neither of which wants entity overhead.
+ */
+@Component
+public class UserRecommendationStore {
+
+    static final int BATCH_SIZE = 500;
+
+    static final String UPSERT_SQL = """
+            MERGE INTO user_recommendations (user_id, book_ids, top_n, catalog_version, affinity_version, computed_at)
+            KEY (user_id) VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    // Valid only if computed from today's catalog and the customer's current profile; a customer with
+    // no profile row yet counts as version -1
+    static final String LOOKUP_SQL = """
+            SELECT r.book_ids, r.top_n FROM user_recommendations r
+            LEFT JOIN user_genre_affinity a ON a.user_id = r.user_id
+            WHERE r.user_id = ? AND r.catalog_version = ? AND r.affinity_version = COALESCE(a.version, -1)
+            """;
+
+    static final String SAVE_PROGRESS_SQL = """
+            MERGE INTO recommendation_precompute_run
+                (id, status, last_user_id, catalog_version, users_done, failures, started_at, finished_at)
+            KEY (id) VALUES (1, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    /**
+     * One customer's result, as computed by the job.
+     */
+    public record Row(Long userId, List<Long> bookIds, int topN, long catalogVersion, long affinityVersion) {}
+
+    public enum Status { RUNNING, DONE }
+
+    public record Progress(Status status, long lastUserId, long catalogVersion, long usersDone, long failures,
+                           Instant startedAt, Instant finishedAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UserRecommendationStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void saveAll(List<Row> rows) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(UPSERT_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setLong(1, row.userId());
+            ps.setString(2, row.bookIds().stream().map(String::valueOf).collect(Collectors.joining(",")));
+            ps.setInt(3, row.topN());
+            ps.setLong(4, row.catalogVersion());
+            ps.setLong(5, row.affinityVersion());
+            ps.setTimestamp(6, now);
+        });
+    }
+
+    /**
+     * The customer's first {@code limit} precomputed ids, if there is a row that is still valid and asked for
+     * at least that many.
+     */
+    public Optional<List<Long>> lookup(Long userId, int limit, long catalogVersion) {
+        List<List<Long>> found = jdbcTemplate.query(LOOKUP_SQL, (rs, i) -> {
+            if (rs.getInt("top_n") < limit) {
+                return null;
+            }
+            String ids = rs.getString("book_ids");
+            return ids.isEmpty() ? List.<Long>of() : Arrays.stream(ids.split(","))
+                    .limit(limit)
+                    .map(Long::valueOf)
+                    .toList();
+        }, userId, catalogVersion);
+        return found.isEmpty() ? Optional.empty() : Optional.ofNullable(found.get(0));
+    }
+
+    public Optional<Progress> loadProgress() {
+        return jdbcTemplate.query("SELECT * FROM recommendation_precompute_run WHERE id = 1", (rs, i) -> {
+            Timestamp started = rs.getTimestamp("started_at");
+            Timestamp finished = rs.getTimestamp("finished_at");
+            return new Progress(Status.valueOf(rs.getString("status")), rs.getLong("last_user_id"),
+                    rs.getLong("catalog_version"), rs.getLong("users_done"), rs.getLong("failures"),
+                    started == null ? null : started.toInstant(), finished == null ? null : finished.toInstant());
+        }).stream().findFirst();
+    }
+
+    public void saveProgress(Progress progress) {
+        jdbcTemplate.update(SAVE_PROGRESS_SQL, progress.status().name(), progress.lastUserId(), progress.catalogVersion(),
+                progress.usersDone(), progress.failures(),
+                progress.startedAt() == null ? null : Timestamp.from(progress.startedAt()),
+                progress.finishedAt() == null ? null : Timestamp.from(progress.finishedAt()));
+    }
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A customer's precomputed recommendations, written in bulk by {@link RecommendationPrecomputeJob} through
+ * {@link UserRecommendationStore}. Mapped so the schema is managed with the rest; never loaded as an entity.
+ */
+@Entity
+@Table(name = "user_recommendations")
+public class UserRecommendations {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // best first, comma-separated
+    @Column(name = "book_ids", length = 2000, nullable = false)
+    private String bookIds;
+
+    // how many were asked for; fewer ids means there weren't more to recommend
+    @Column(name = "top_n", nullable = false)
+    private int topN;
+
+    // RecommendationIndex.version() and GenreAffinity's version the row was computed from
+    @Column(name = "catalog_version", nullable = false)
+    private long catalogVersion;
+
+    @Column(name = "affinity_version", nullable = false)
+    private long affinityVersion;
+
+    @Column(name = "computed_at", nullable = false)
+    private Instant computedAt;
+
+    protected UserRecommendations() {}
+}
@@ -1,6 +1,11 @@
 package org.example;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -8,5 +13,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
+
+    // Customer ids in key order, one page after the given id; the recommendation job walks users with this
+    @Query("SELECT u.id FROM User u WHERE u.id > :after AND u.role = 'CUSTOMER' ORDER BY u.id")
+    List<Long> findCustomerIdsAfter(@Param("after") Long after, Pageable page);
 }
 //
\ No newline at end of file
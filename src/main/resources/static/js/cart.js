@@ -18,27 +18,24 @@ document.addEventListener("DOMContentLoaded", () => {
         return `$${num.toFixed(2)}`;
     };
 
-    function recalcCartSummary() {
-        const rows = cartBody.querySelectorAll("tr");
-        const itemCount = rows.length;
-        let total = 0;
-
-        rows.forEach((row) => {
-            const raw = row.dataset.price;
-            const value = raw !== undefined ? parseFloat(raw) : NaN;
-            if (!Number.isNaN(value)) {
-                total += value;
-            }
+    // Item count and total come from the cart's running totals on the server
+    async function refreshCartSummary() {
+        const res = await fetch("/api/cart/summary", {
+            headers: { "Accept": "application/json" }
         });
+        if (!res.ok) {
+            throw new Error(`HTTP ${res.status}`);
+        }
+        const summary = await res.json();
 
         if (totalItemsEl) {
-            totalItemsEl.textContent = String(itemCount);
+            totalItemsEl.textContent = String(summary.itemCount);
         }
         if (totalPriceEl) {
-            totalPriceEl.textContent = formatPrice(total);
+            totalPriceEl.textContent = formatPrice(summary.totalCents / 100);
         }
 
-        const isEmpty = itemCount === 0;
+        const isEmpty = summary.itemCount === 0;
 
         if (emptyMsgEl)   emptyMsgEl.style.display   = isEmpty ? "" : "none";
         if (tableWrapper) tableWrapper.style.display = isEmpty ? "none" : "";
@@ -77,7 +74,7 @@ document.addEventListener("DOMContentLoaded", () => {
                 }
 
                 row.remove();
-                recalcCartSummary();
+                await refreshCartSummary();
             } catch (err) {
                 console.error("Cart remove error:", err);
                 alert("Could not remove item from cart.");
@@ -89,11 +86,10 @@ document.addEventListener("DOMContentLoaded", () => {
         });
     }
 
-    // Hook all remove forms in the cart table
+    // Hook all remove forms in the cart table (the +/- forms submit normally)
     cartBody
-        .querySelectorAll("form")
+        .querySelectorAll('form[action^="/cart/remove/"]')
         .forEach((form) => hookRemoveForm(form));
 
-    // Initial summary calculation
-    recalcCartSummary();
+    // The server renders the initial summary, so nothing to compute on load
 });
\ No newline at end of file
@@ -61,6 +61,90 @@ document.addEventListener("DOMContentLoaded", () => {
         }, 2500);
     }
 
+    // ---------- Navbar cart badge ----------
+
+    // The page itself may come from a 304, so the count is always fetched, never rendered
+    async function refreshCartBadge() {
+        const badge = document.getElementById("cartCountBadge");
+        if (!badge) return;
+
+        try {
+            const res = await fetch("/api/cart/summary", {
+                headers: { "Accept": "application/json" }
+            });
+            if (!res.ok) return;
+            const summary = await res.json();
+            badge.textContent = String(summary.itemCount);
+            badge.style.display = summary.itemCount > 0 ? "" : "none";
+        } catch (err) {
+            console.warn("Cart summary error:", err);
+        }
+    }
+
+    // ---------- Availability (stock minus copies held in carts) ----------
+
+    // Fetched separately so the page itself can still be served from cache while carts change
+    async function refreshAvailability() {
+        if (!tableBody) return;
+        const rows = Array.from(tableBody.querySelectorAll("tr[data-book-id]"));
+        if (rows.length === 0) return;
+
+        try {
+            const ids = rows.map((row) => row.dataset.bookId).join(",");
+            const res = await fetch(`/api/books/availability?ids=${ids}`);
+            if (!res.ok) return;
+            const available = await res.json();
+
+            rows.forEach((row) => {
+                const count = available[row.dataset.bookId];
+                const cell = row.querySelector(".stock-count");
+                if (cell && count !== undefined) {
+                    cell.textContent = String(count);
+                    cell.title = "Available (stock minus copies held in carts)";
+                }
+            });
+        } catch (err) {
+            console.warn("Availability error:", err);
+        }
+    }
+
+    // ---------- "Also bought" in the book modal ----------
+
+    // Loaded the first time a modal opens; the section stays hidden when nobody bought the book with others
+    async function loadAlsoBought(modal) {
+        const section = modal.querySelector(".also-bought");
+        if (!section || section.dataset.loaded === "true") return;
+        section.dataset.loaded = "true";
+
+        try {
+            const res = await fetch(`/api/books/${section.dataset.bookId}/also-bought?limit=5`, {
+                headers: { "Accept": "application/json" }
+            });
+            if (!res.ok) return;
+            const books = await res.json();
+            if (books.length === 0) return;
+
+            section.querySelector(".also-bought-list").innerHTML = books
+                .map((b) => `
+                    <li class="d-flex align-items-center mb-1">
+                        ${b.coverUrl ? `<img src="${escapeHtml(b.coverUrl)}" class="me-2" style="height:40px" alt="">` : ""}
+                        <span><strong>${escapeHtml(b.title)}</strong> ${escapeHtml(b.author || "")} ${formatPrice(b.price)}</span>
+                    </li>`)
+                .join("");
+            section.hidden = false;
+        } catch (err) {
+            section.dataset.loaded = "false";
+            console.warn("Also-bought error:", err);
+        }
+    }
+
+    function bumpCartBadge() {
+        const badge = document.getElementById("cartCountBadge");
+        if (!badge) return;
+        badge.textContent = String((parseInt(badge.textContent, 10) || 0) + 1);
+        badge.style.display = "";
+    }
+
     function applyFilters() {
         if (!tableBody) return;
 
@@ -125,6 +209,41 @@ document.addEventListener("DOMContentLoaded", () => {
         });
     }
 
+    // ---------- Admin stock +/- wiring ----------
+
+    // Posts a signed delta and writes the returned level into the cell, instead of reloading the catalog
+    function hookStockForm(form) {
+        form.addEventListener("submit", async (e) => {
+            e.preventDefault();
+
+            const row = form.closest("tr[data-book-id]");
+            if (!row) return;
+
+            try {
+                const res = await fetch(`/api/books/${row.dataset.bookId}/stock`, {
+                    method: "POST",
+                    headers: {
+                        "Content-Type": "application/json",
+                        "Accept": "application/json"
+                    },
+                    body: JSON.stringify({ delta: Number(form.dataset.delta) })
+                });
+                if (!res.ok) {
+                    throw new Error(`HTTP ${res.status}`);
+                }
+
+                const level = await res.json();
+                const cell = row.querySelector(".stock-count");
+                if (cell) {
+                    cell.textContent = String(level.available);
+                }
+            } catch (err) {
+                console.error("Stock adjust error:", err);
+                alert("Could not update stock.");
+            }
+        });
+    }
+
     // ---------- Add-to-cart wiring (dynamic) ----------
 
     function hookAddToCartForm(form) {
@@ -151,12 +270,18 @@ document.addEventListener("DOMContentLoaded", () => {
                     }
                 });
 
+                if (res.status === 409) {
+                    alert("Sorry, every remaining copy is already in someone's cart.");
+                    refreshAvailability();
+                    return;
+                }
                 if (!res.ok) {
                     throw new Error(`HTTP ${res.status}`);
                 }
 
                 showCartToast("Added to cart!");
-                // If you later add a cart count badge in navbar, update it here.
+                // Adds are buffered server-side; count locally instead of asking for the summary on every click
+                bumpCartBadge();
             } catch (err) {
                 console.error("Add to cart error:", err);
                 alert("Could not add to cart.");
@@ -213,16 +338,18 @@ document.addEventListener("DOMContentLoaded", () => {
             <td>${priceText}</td>
             <td>${escapeHtml(shortDesc)}</td>
             <td>
-                ${stock}
+                <span class="stock-count">${stock}</span>
             
                 ${
                         isAdmin
                             ? `
                             <span class="ms-2">
-                                <form method="post" action="/books/${book.id}/stock/inc" style="display:inline;">
+                                <form method="post" action="/books/${book.id}/stock/inc" style="display:inline;"
+                                      class="stock-adjust" data-delta="1">
                                     <button class="btn btn-sm btn-success">+</button>
                                 </form>
-                                <form method="post" action="/books/${book.id}/stock/dec" style="display:inline;">
+                                <form method="post" action="/books/${book.id}/stock/dec" style="display:inline;"
+                                      class="stock-adjust" data-delta="-1">
                                     <button class="btn btn-sm btn-warning">−</button>
                                 </form>
                             </span>
@@ -263,6 +390,7 @@ document.addEventListener("DOMContentLoaded", () => {
         if (isAdmin) {
             const btn = tr.querySelector(".remove-book-btn");
             if (btn) hookRemoveButton(btn);
+            tr.querySelectorAll("form.stock-adjust").forEach((f) => hookStockForm(f));
         } else if (isLoggedIn) {
             const form = tr.querySelector('form[action^="/cart/add/"]');
             if (form) hookAddToCartForm(form);
@@ -316,6 +444,11 @@ document.addEventListener("DOMContentLoaded", () => {
         <p><strong>Inventory:</strong> <span>${book.inventory ?? 0}</span></p>                   
                             <hr>
                             <p>${escapeHtml(book.bookDescription || "")}</p>
+                            <div class="also-bought" data-book-id="${book.id}" hidden>
+                                <hr>
+                                <h6>Customers who bought this also bought</h6>
+                                <ul class="list-unstyled mb-0 also-bought-list"></ul>
+                            </div>
                         </div>
                     </div>
                     <div class="modal-footer">
@@ -339,8 +472,18 @@ document.addEventListener("DOMContentLoaded", () => {
     async function loadBooks() {
         if (!inventoryId || !tableBody) return;
 
+        // The page was opened at ?before=..., only the server can rebuild that page
+        const pageParams = new URLSearchParams(window.location.search);
+        if (pageParams.has("before")) {
+            window.location.reload();
+            return;
+        }
+
         try {
-            const res = await fetch(`/api/inventories/${inventoryId}`);
+            // Refetch just the page being shown, starting at the same cursor as the server-rendered page
+            const after = pageParams.get("after");
+            const query = after ? `?cursor=${encodeURIComponent(after)}` : "";
+            const res = await fetch(`/api/inventories/${inventoryId}/books${query}`);
             if (!res.ok) throw new Error(`HTTP ${res.status}`);
 
             const data = await res.json();
@@ -365,6 +508,7 @@ document.addEventListener("DOMContentLoaded", () => {
 
             // Reapply filters
             applyFilters();
+            refreshAvailability();
             // No need to call wireAllAddToCartForms() here because createBookRow already hooks them
         } catch (err) {
             console.error("Error loading books:", err);
@@ -435,8 +579,14 @@ document.addEventListener("DOMContentLoaded", () => {
         tableBody
             .querySelectorAll(".remove-book-btn")
             .forEach((btn) => hookRemoveButton(btn));
+        tableBody
+            .querySelectorAll("form.stock-adjust")
+            .forEach((form) => hookStockForm(form));
     }
 
+    // Bootstrap fires show.bs.modal on the modal element; one listener covers rendered and JS-built modals
+    document.addEventListener("show.bs.modal", (e) => loadAlsoBought(e.target));
+
     // Hook add-to-cart forms for rows rendered by Thymeleaf (first paint)
     wireAllAddToCartForms();
 
@@ -463,6 +613,11 @@ document.addEventListener("DOMContentLoaded", () => {
         });
     }
 
-    // Initial load from API to sync everything
-    loadBooks();
+    if (isLoggedIn && !isAdmin) {
+        refreshCartBadge();
+    }
+    refreshAvailability();
+
+    // No initial loadBooks(): the server already rendered the current catalog page,
+    // and re-fetching the whole inventory would undo the pagination.
 });
\ No newline at end of file
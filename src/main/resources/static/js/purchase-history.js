@@ -0,0 +1,122 @@
+document.addEventListener("DOMContentLoaded", () => {
+    const body = document.getElementById("purchaseBody");
+    const sentinel = document.getElementById("purchaseSentinel");
+
+    if (!body) {
+        // No purchases on this page
+        return;
+    }
+
+    const escapeHtml = (str) =>
+        String(str ?? "")
+            .replace(/&/g, "&amp;")
+            .replace(/</g, "&lt;")
+            .replace(/>/g, "&gt;")
+            .replace(/"/g, "&quot;")
+            .replace(/'/g, "&#39;");
+
+    const formatPrice = (num) => `$${Number(num ?? 0).toFixed(2)}`;
+
+    // Same "yyyy-MM-dd HH:mm" as the server-rendered rows, in the browser's time zone
+    const formatDate = (iso) => {
+        const d = new Date(iso);
+        const pad = (n) => String(n).padStart(2, "0");
+        return `${d.getFullYear()}-${pad(d.getMonth() + 1)}-${pad(d.getDate())} ${pad(d.getHours())}:${pad(d.getMinutes())}`;
+    };
+
+    function createPurchaseRow(purchase) {
+        const tr = document.createElement("tr");
+        tr.dataset.purchaseId = purchase.id;
+        tr.innerHTML = `
+            <td>${purchase.coverUrl ? `<img src="${escapeHtml(purchase.coverUrl)}" class="cover-img" alt="Cover" />` : ""}</td>
+            <td>${escapeHtml(purchase.title)}</td>
+            <td>${escapeHtml(purchase.author)}</td>
+            <td>${escapeHtml(purchase.genre)}</td>
+            <td>${purchase.quantity}</td>
+            <td>${formatPrice(purchase.unitPrice)}</td>
+            <td>${formatDate(purchase.purchasedAt)}</td>
+            <td>
+                <form method="post" action="/purchase-history/remove/${purchase.id}" class="purchase-remove">
+                    <button class="btn btn-sm btn-danger">Remove</button>
+                </form>
+            </td>
+        `;
+        return tr;
+    }
+
+    // ---------- Remove (one DELETE by key, no reload) ----------
+
+    body.addEventListener("submit", async (e) => {
+        const form = e.target.closest("form.purchase-remove");
+        if (!form) return;
+        e.preventDefault();
+
+        const row = form.closest("tr[data-purchase-id]");
+        try {
+            const res = await fetch(`/api/purchase-history/${row.dataset.purchaseId}`, { method: "DELETE" });
+            if (!res.ok && res.status !== 404) {
+                throw new Error(`HTTP ${res.status}`);
+            }
+            row.remove();
+        } catch (err) {
+            console.error("Remove purchase error:", err);
+            alert("Could not remove purchase.");
+        }
+    });
+
+    // ---------- Infinite scroll ----------
+
+    if (!sentinel) return;
+
+    let loading = false;
+
+    async function loadNextPage() {
+        const cursor = sentinel.dataset.nextCursor;
+        if (loading || !cursor) return;
+        loading = true;
+
+        try {
+            const params = new URLSearchParams({ after: cursor });
+            if (sentinel.dataset.from) params.set("from", sentinel.dataset.from);
+            if (sentinel.dataset.to) params.set("to", sentinel.dataset.to);
+
+            const res = await fetch(`/api/purchase-history?${params}`, {
+                headers: { "Accept": "application/json" }
+            });
+            if (!res.ok) {
+                throw new Error(`HTTP ${res.status}`);
+            }
+            const page = await res.json();
+
+            page.purchases.forEach((purchase) => body.appendChild(createPurchaseRow(purchase)));
+
+            if (page.nextCursor) {
+                sentinel.dataset.nextCursor = page.nextCursor;
+            } else {
+                delete sentinel.dataset.nextCursor;
+                observer.disconnect();
+                sentinel.remove();
+            }
+        } catch (err) {
+            console.error("Purchase history error:", err);
+            sentinel.textContent = "Could not load more purchases.";
+            delete sentinel.dataset.nextCursor;
+            observer.disconnect();
+        } finally {
+            loading = false;
+        }
+
+        // a short page can leave the sentinel on screen, and the observer only fires on changes
+        if (sentinel.isConnected && sentinel.dataset.nextCursor
+            && sentinel.getBoundingClientRect().top < window.innerHeight + 200) {
+            loadNextPage();
+        }
+    }
+
+    const observer = new IntersectionObserver((entries) => {
+        if (entries.some((entry) => entry.isIntersecting)) {
+            loadNextPage();
+        }
+    }, { rootMargin: "200px" });
+    observer.observe(sentinel);
+});
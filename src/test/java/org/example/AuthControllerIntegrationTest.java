@@ -30,13 +30,9 @@ class AuthControllerIntegrationTest {
     @Autowired
     private CartRepository cartRepository;
 
-    @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
-
     @BeforeEach
     void setUp() {
         cartRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
         userRepository.deleteAll();
     }
 
@@ -10,6 +10,9 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.mock.web.MockHttpSession;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -35,7 +38,7 @@ class BookControllerIntegrationTest {
     private CartRepository cartRepository;
 
     @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
+    private CoPurchaseIndex coPurchaseIndex;
 
     private BookInventory inventory;
     private BookInfo book;
@@ -44,7 +47,6 @@ class BookControllerIntegrationTest {
     @BeforeEach
     void setUp() {
         cartRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
         bookInventoryRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
@@ -75,6 +77,187 @@ class BookControllerIntegrationTest {
                 .andExpect(model().attributeExists("isAdmin"));
     }
 
+    @Test
+    void whenViewHomePageAfterLastBook_thenPageIsEmpty() throws Exception {
+        String cursor = CatalogCursor.of(book).toString();
+
+        mockMvc.perform(get("/").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("books", org.hamcrest.Matchers.empty()))
+                .andExpect(model().attribute("nextCursor", org.hamcrest.Matchers.nullValue()));
+    }
+
+    @Test
+    void whenCatalogUnchanged_thenHomePageIsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // another viewer sees different controls, so the anonymous copy must not match
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+        mockMvc.perform(get("/").session(adminSession).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        // a stock change is a catalog write
+        mockMvc.perform(post("/books/{id}/stock/inc", book.getId()).session(adminSession))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get("/").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void whenCatalogUnchanged_thenSearchIsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/search").param("title", "hunger"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/search").param("title", "hunger").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void whenBookAdded_thenHomePageTotalFollows() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+        int before = (Integer) mockMvc.perform(get("/"))
+                .andReturn().getModelAndView().getModel().get("totalBooks");
+
+        mockMvc.perform(post("/addBook").session(adminSession)
+                        .param("bookTitle", "Middlemarch").param("bookAuthor", "George Eliot")
+                        .param("bookGenre", "Fiction").param("bookPrice", "9.99"))
+                .andExpect(status().is3xxRedirection());
+
+        mockMvc.perform(get("/"))
+                .andExpect(model().attribute("totalBooks", before + 1));
+    }
+
+    @Test
+    void whenSearchByAuthorAndPublisher_thenTheFormKeepsThem() throws Exception {
+        mockMvc.perform(get("/search").param("author", "collins").param("publisher", "scholastic"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("author", "collins"))
+                .andExpect(model().attribute("publisher", "scholastic"))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("value=\"collins\"")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("value=\"scholastic\"")));
+    }
+
+    @Test
+    void whenAdjustStockViaApi_thenNewLevelIsReturned() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+
+        mockMvc.perform(post("/api/books/{id}/stock", book.getId()).session(adminSession)
+                        .contentType("application/json").content("{\"delta\": 3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inventory").value(8))
+                .andExpect(jsonPath("$.available").value(8));
+
+        // floored at zero
+        mockMvc.perform(post("/api/books/{id}/stock", book.getId()).session(adminSession)
+                        .contentType("application/json").content("{\"delta\": -20}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.inventory").value(0));
+
+        mockMvc.perform(post("/api/books/{id}/stock", 999_999L).session(adminSession)
+                        .contentType("application/json").content("{\"delta\": 1}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void whenAdjustStockViaApiWithoutAdmin_thenRefused() throws Exception {
+        mockMvc.perform(post("/api/books/{id}/stock", book.getId())
+                        .contentType("application/json").content("{\"delta\": 1}"))
+                .andExpect(status().isUnauthorized());
+
+        User customer = userRepository.save(new User("shopper", "password", "shopper@example.com", "CUSTOMER"));
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+        mockMvc.perform(post("/api/books/{id}/stock", book.getId()).session(session)
+                        .contentType("application/json").content("{\"delta\": 1}"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    void whenRestockFromCsv_thenLinesAreFoldedAndReportedInOrder() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+        BookInfo other = bookRepository.save(new BookInfo("Catching Fire", "Fantasy", 19.99,
+                "978-0439023498", "Suzanne Collins", "Scholastic", "", ""));
+        String etag = mockMvc.perform(get("/")).andReturn().getResponse().getHeader("ETag");
+
+        String csv = "bookId,isbn,delta,stock\n"
+                + book.getId() + ",,10,\n"
+                + ",9780439023498,,40\n"
+                + book.getId() + ",,-3,\n"
+                + ",0000000000,5,\n"
+                + ",9780439023498,2,7\n"
+                + ",9780439023498,-2,\n";
+
+        mockMvc.perform(post("/api/books/restock").session(adminSession).contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.linesRead").value(6))
+                .andExpect(jsonPath("$.applied").value(4))
+                .andExpect(jsonPath("$.notFound").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.booksUpdated").value(2))
+                .andExpect(jsonPath("$.lines[0].inventory").value(12))
+                .andExpect(jsonPath("$.lines[1].bookId").value(other.getId()))
+                .andExpect(jsonPath("$.lines[1].inventory").value(38))
+                .andExpect(jsonPath("$.lines[3].status").value("NOT_FOUND"))
+                .andExpect(jsonPath("$.lines[4].status").value("INVALID"));
+
+        assertEquals(12, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+        assertEquals(38, bookRepository.findById(other.getId()).orElseThrow().getInventory());
+
+        // one catalog version bump for the whole restock
+        mockMvc.perform(get("/").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void whenRestockLinesForOneBookAreFolded_thenEachLineKeepsItsFloorAtZero() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+
+        // 5 - 10 floors at 0, then + 5: line by line that is 5, and folding must agree
+        String ndjson = "{\"bookId\": " + book.getId() + ", \"delta\": -10}\n"
+                + "{\"bookId\": " + book.getId() + ", \"delta\": 5}\n";
+        mockMvc.perform(post("/api/books/restock").param("format", "ndjson").session(adminSession)
+                        .contentType("application/x-ndjson").content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.lines[1].inventory").value(5));
+
+        assertEquals(5, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void whenRestockFromJsonArray_thenStockIsSet() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+
+        String json = "[{\"bookId\": " + book.getId() + ", \"stock\": 0}, {\"isbn\": \"x\"}]";
+        mockMvc.perform(post("/api/books/restock").param("format", "json").session(adminSession)
+                        .contentType("application/json").content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(1))
+                .andExpect(jsonPath("$.invalid").value(1))
+                .andExpect(jsonPath("$.lines[0].inventory").value(0));
+
+        assertEquals(0, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+
+        mockMvc.perform(post("/api/books/restock").param("format", "xml").session(adminSession).content("x"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/books/restock").content("bookId,delta\n1,1\n"))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void whenAddBook_thenRedirectToHome() throws Exception {
         MockHttpSession adminSession = new MockHttpSession();
@@ -123,6 +306,58 @@ class BookControllerIntegrationTest {
                 .andExpect(model().attributeExists("genres"));
     }
 
+    @Test
+    void whenSearchAfterAddBook_thenIndexFindsNewBook() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+
+        mockMvc.perform(post("/addBook")
+                        .session(adminSession)
+                        .param("bookTitle", "Catching Fire")
+                        .param("bookGenre", "Fantasy")
+                        .param("bookPrice", "19.99")
+                        .param("bookISBN", "9780439023498")
+                        .param("bookAuthor", "Suzanne Collins"))
+                .andExpect(status().is3xxRedirection());
+
+        mockMvc.perform(get("/search").param("title", "catching f"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("books", org.hamcrest.Matchers.hasSize(1)));
+
+        mockMvc.perform(get("/search").param("title", "catching").param("genre", "horror"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("books", org.hamcrest.Matchers.empty()));
+
+        mockMvc.perform(get("/api/search").param("author", "collins"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.books[0].bookTitle").value("Catching Fire"))
+                .andExpect(jsonPath("$.facets.genreCounts.Fantasy").value(1))
+                .andExpect(jsonPath("$.facets.priceHistogram[1].count").value(1));
+    }
+
+    @Test
+    void whenSearchByAFacetGenre_thenResultsMatchItsCount() throws Exception {
+        MockHttpSession adminSession = new MockHttpSession();
+        adminSession.setAttribute("user", user);
+        for (String[] b : new String[][]{{"Middlemarch", "Fiction"}, {"Dune", "Science Fiction"}}) {
+            mockMvc.perform(post("/addBook").session(adminSession)
+                            .param("bookTitle", b[0]).param("bookGenre", b[1]).param("bookPrice", "9.99"))
+                    .andExpect(status().is3xxRedirection());
+        }
+
+        mockMvc.perform(get("/api/search").param("genre", "Fiction"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.books[0].bookTitle").value("Middlemarch"))
+                .andExpect(jsonPath("$.facets.genreCounts.Fiction").value(1));
+
+        // not a genre name: still a substring match
+        mockMvc.perform(get("/api/search").param("genre", "fiction"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(2));
+    }
+
     @Test
     void whenAddBookWithoutLogin_thenRedirectToLogin() throws Exception {
         mockMvc.perform(post("/addBook")
@@ -140,4 +375,21 @@ class BookControllerIntegrationTest {
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/login"));
     }
+
+    @Test
+    void alsoBoughtListsBooksBoughtByTheSameCustomers() throws Exception {
+        BookInfo other = bookRepository.save(new BookInfo("Catching Fire", "Fantasy", 17.99,
+                "9780439023498", "Suzanne Collins", "Scholastic", "description", ""));
+        coPurchaseIndex.add(List.of(Math.toIntExact(book.getId()), Math.toIntExact(other.getId())), List.of());
+
+        mockMvc.perform(get("/api/books/{id}/also-bought", book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(other.getId()))
+                .andExpect(jsonPath("$[0].title").value("Catching Fire"))
+                .andExpect(jsonPath("$[0].score").value(1.0));
+
+        mockMvc.perform(get("/api/books/{id}/also-bought", other.getId() + 1000))
+                .andExpect(status().isNotFound());
+    }
 }
@@ -7,10 +7,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -36,10 +41,19 @@ class BookInventoryControllerIntegrationTest {
     private CartRepository cartRepository;
 
     @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
+    private UserRepository userRepository;
 
     @Autowired
-    private UserRepository userRepository;
+    private CatalogImportService catalogImportService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private CatalogSearchIndex searchIndex;
+
+    @Autowired
+    private GenreService genreService;
 
     private BookInventory inventory;
     private BookInfo book;
@@ -47,7 +61,6 @@ class BookInventoryControllerIntegrationTest {
     @BeforeEach
     void setUp() {
         cartRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
         bookInventoryRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
@@ -63,6 +76,12 @@ class BookInventoryControllerIntegrationTest {
         bookRepository.save(book);
     }
 
+    private MockHttpSession adminSession() {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", userRepository.save(new User("importer", "password", "importer@example.com", "ADMIN")));
+        return session;
+    }
+
     @Test
     void createInventory() throws Exception {
         
@@ -95,6 +114,54 @@ class BookInventoryControllerIntegrationTest {
                 .andExpect(jsonPath("$").isArray());
     }
 
+    @Test
+    void getAllInventories_thenReturnSummariesWithoutBooks() throws Exception {
+        book.setInventory(3);
+        inventory.addBook(book);
+        bookInventoryRepository.save(inventory);
+
+        mockMvc.perform(get("/api/inventories"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(inventory.getId()))
+                .andExpect(jsonPath("$[0].bookCount").value(1))
+                .andExpect(jsonPath("$[0].totalStock").value(3))
+                .andExpect(jsonPath("$[0].books").doesNotExist());
+    }
+
+    @Test
+    void getInventoryBooks_pagesInTitleOrder() throws Exception {
+        inventory.addBook(book);
+        for (String title : new String[]{"catching fire", "Mockingjay", "Ballad of Songbirds"}) {
+            BookInfo b = new BookInfo(title, "Fantasy", 9.99, "isbn-" + title, "Suzanne Collins", "Scholastic", "", "");
+            bookRepository.save(b);
+            inventory.addBook(b);
+        }
+        bookInventoryRepository.save(inventory);
+
+        String firstPage = mockMvc.perform(get("/api/inventories/{id}/books", inventory.getId()).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books.length()").value(2))
+                .andExpect(jsonPath("$.books[0].bookTitle").value("Ballad of Songbirds"))
+                .andExpect(jsonPath("$.books[1].bookTitle").value("catching fire"))
+                .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+        mockMvc.perform(get("/api/inventories/{id}/books", inventory.getId())
+                        .param("size", "2").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books.length()").value(2))
+                .andExpect(jsonPath("$.books[0].bookTitle").value("Mockingjay"))
+                .andExpect(jsonPath("$.books[1].bookTitle").value("The Hunger Games"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getBooksOfNonExistingInventory() throws Exception {
+        mockMvc.perform(get("/api/inventories/{id}/books", 999L))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void addBookToInventory() throws Exception {
 
@@ -108,7 +175,8 @@ class BookInventoryControllerIntegrationTest {
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(newBook)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.books.length()").value(1));
+                .andExpect(jsonPath("$.bookCount").value(1))
+                .andExpect(jsonPath("$.totalStock").value(5));
     }
 
     @Test
@@ -135,7 +203,7 @@ class BookInventoryControllerIntegrationTest {
         mockMvc.perform(delete("/api/inventories/{inventoryId}/books/{bookId}",
                         inventory.getId(), book.getId()))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.books.length()").value(0));
+                .andExpect(jsonPath("$.bookCount").value(0));
     }
 
     @Test
@@ -185,16 +253,206 @@ class BookInventoryControllerIntegrationTest {
                 .andExpect(jsonPath("$.bookTitle").value("The Hunger Games"));
     }
 
+    @Test
+    void getBookById_notModifiedUntilABookChanges() throws Exception {
+        String etag = mockMvc.perform(get("/api/inventories/books/{bookId}", book.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/inventories/books/{bookId}", book.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/inventories/books").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/inventories/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BookInfo("Catching Fire", "Fantasy", 19.99,
+                                "9780439023498", "Suzanne Collins", "Scholastic", "", ""))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/inventories/books/{bookId}", book.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookTitle").value("The Hunger Games"));
+    }
+
     @Test
     void getNonExistingBook() throws Exception {
         mockMvc.perform(get("/api/inventories/books/{bookId}", 999L))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void exportBooksAsNdjson_writesOneObjectPerLine() throws Exception {
+        bookRepository.save(new BookInfo("Catching Fire", "Fantasy", 19.99,
+                "9780439023498", "Suzanne Collins", "Scholastic", "", ""));
+
+        String body = mockMvc.perform(get("/api/inventories/books/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(body.endsWith("\n"));
+        assertEquals("The Hunger Games", objectMapper.readTree(lines[0]).get("bookTitle").asText());
+        assertEquals("Catching Fire", objectMapper.readTree(lines[1]).get("bookTitle").asText());
+    }
+
+    @Test
+    void exportBooksAsCsv_quotesFieldsWithCommas() throws Exception {
+        String body = mockMvc.perform(get("/api/inventories/books/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\r\n");
+        assertEquals(CatalogExportService.CSV_HEADER, lines[0]);
+        assertTrue(lines[1].startsWith(book.getId() + ",9780439023481,The Hunger Games,Suzanne Collins,Scholastic,Fantasy,19.99,5,\"Winning means fame and fortune."));
+    }
+
+    @Test
+    void exportBooksInUnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/inventories/books/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importBooksFromCsv_skipsDuplicateIsbnsAndReportsBadRows() throws Exception {
+        String csv = """
+                isbn,title,author,genres,price,inventory
+                978-0-439-02348-1,The Hunger Games (again),Suzanne Collins,Fantasy,19.99,5
+                9780439023498,Catching Fire,Suzanne Collins,"Fantasy, Dystopian",19.99,7
+                978 0439023498,Catching Fire (dup),Suzanne Collins,Fantasy,19.99,7
+                9780439023511,Mockingjay,Suzanne Collins,Fantasy,not-a-price,3
+                ,Untitled Feed Book,Anonymous,,4.50,
+                """;
+
+        String body = mockMvc.perform(post("/api/inventories/books/import").session(adminSession())
+                        .param("format", "csv")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.rowsRead").value(5))
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.duplicates").value(2))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0]").value(org.hamcrest.Matchers.containsString("not-a-price")))
+                .andReturn().getResponse().getContentAsString();
+
+        BookInfo imported = bookRepository.findByBookISBN("9780439023498");
+        assertEquals(7, imported.getInventory());
+        assertEquals("https://covers.openlibrary.org/b/isbn/9780439023498-L.jpg", imported.getBookCoverURL());
+        assertEquals(2, imported.getGenres().size());
+        assertEquals(3, bookRepository.count());
+
+        String jobId = objectMapper.readTree(body).get("id").asText();
+        mockMvc.perform(get("/api/inventories/books/import/{jobId}", jobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+    }
+
+    @Test
+    void importBooksFromNdjson_roundTripsTheExport() throws Exception {
+        String export = mockMvc.perform(get("/api/inventories/books/export"))
+                .andReturn().getResponse().getContentAsString();
+        String feed = export.replace("9780439023481", "9780439023498").replace("The Hunger Games", "Catching Fire")
+                + "{\"bookTitle\": \"Mockingjay\", \"bookISBN\": \"9780439023511\", \"bookPrice\": 12.5}\n"
+                + "{not json}\n";
+
+        mockMvc.perform(post("/api/inventories/books/import").session(adminSession())
+                        .contentType("application/x-ndjson")
+                        .content(feed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.failed").value(1));
+
+        assertEquals("Catching Fire", bookRepository.findByBookISBN("9780439023498").getBookTitle());
+        assertNotEquals(book.getId(), bookRepository.findByBookISBN("9780439023498").getId());
+        assertEquals(12.5, bookRepository.findByBookISBN("9780439023511").getBookPrice());
+    }
+
+    @Test
+    void importPublishesOneChangePerBatch() throws Exception {
+        long version = catalogVersion.current();
+        String csv = """
+                isbn,title,author,genres,price
+                9780439023498,Catching Fire,Suzanne Collins,"Fantasy, Dystopian",19.99
+                9780439023511,Mockingjay,Suzanne Collins,Fantasy,12.50
+                """;
+
+        mockMvc.perform(post("/api/inventories/books/import").session(adminSession()).param("format", "csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+
+        assertEquals(version + 1, catalogVersion.current());
+        assertEquals(1, searchIndex.find(CatalogSearchIndex.Field.TITLE, "mockingjay").length);
+        assertTrue(genreService.getSortedGenreNames().contains("Dystopian"));
+    }
+
+    @Test
+    void onlyTheLatestFinishedImportsAreKept() {
+        int keep = (int) ReflectionTestUtils.getField(catalogImportService, "keepFinishedJobs");
+        ReflectionTestUtils.setField(catalogImportService, "keepFinishedJobs", 1);
+        try {
+            ImportJob first = catalogImportService.importBooks(InputStream.nullInputStream(), "csv", "first");
+            ImportJob second = catalogImportService.importBooks(InputStream.nullInputStream(), "csv", "second");
+
+            assertTrue(catalogImportService.getJob(first.getId()).isEmpty());
+            assertTrue(catalogImportService.getJob(second.getId()).isPresent());
+        } finally {
+            ReflectionTestUtils.setField(catalogImportService, "keepFinishedJobs", keep);
+        }
+    }
+
+    @Test
+    void importIsForAdminsOnly() throws Exception {
+        String csv = "title\nSomebody's Book\n";
+        mockMvc.perform(post("/api/inventories/books/import").param("format", "csv").content(csv))
+                .andExpect(status().isUnauthorized());
+
+        MockHttpSession customer = new MockHttpSession();
+        customer.setAttribute("user", userRepository.save(new User("reader", "password", "reader@example.com", "CUSTOMER")));
+        mockMvc.perform(post("/api/inventories/books/import").session(customer).param("format", "csv").content(csv))
+                .andExpect(status().isForbidden());
+
+        assertEquals(1, bookRepository.count());
+    }
+
+    @Test
+    void importBooksInUnknownFormat() throws Exception {
+        mockMvc.perform(post("/api/inventories/books/import").session(adminSession()).param("format", "xml").content("x"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void getAllBooks() throws Exception {
         mockMvc.perform(get("/api/inventories/books"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$").isArray());
     }
+
+    @Test
+    void countBooksByPriceIncludesBooksAddedThroughApi() throws Exception {
+        BookInfo cheap = new BookInfo("Cheap Read", "Fantasy", 3.50, "111", "Author", "Publisher", "", "");
+        BookInfo pricey = new BookInfo("Collector Edition", "Fantasy", 250.00, "222", "Author", "Publisher", "", "");
+
+        for (BookInfo b : new BookInfo[]{cheap, pricey}) {
+            mockMvc.perform(post("/api/inventories/books")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(b)))
+                    .andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/api/inventories/books/count")
+                        .param("minPrice", "3.50")
+                        .param("maxPrice", "3.50"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("1"));
+
+        mockMvc.perform(get("/search").param("minPrice", "200"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("books", org.hamcrest.Matchers.hasSize(1)));
+    }
 }
@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 
@@ -148,4 +149,25 @@ class BookRepositoryIntegrationTest {
         List<String> genres = bookRepository.findDistinctGenres();
         assertNotNull(genres);
     }
+
+    @Test
+    void catalogPagesSeekInTitleOrder() {
+        entityManager.persist(book1);
+        entityManager.persist(book2);
+        entityManager.persist(book3);
+        entityManager.flush();
+
+        List<BookInfo> first = bookRepository.findCatalogFirstPage(PageRequest.ofSize(2));
+        assertEquals(List.of("Catching Fire", "Mockingjay"),
+                first.stream().map(BookInfo::getBookTitle).toList());
+
+        BookInfo last = first.get(1);
+        List<BookInfo> next = bookRepository.findCatalogPageAfter(last.getTitleSortKey(), last.getId(), PageRequest.ofSize(2));
+        assertEquals(List.of("The Hunger Games"), next.stream().map(BookInfo::getBookTitle).toList());
+
+        BookInfo firstOfNext = next.get(0);
+        List<BookInfo> previous = bookRepository.findCatalogPageBefore(firstOfNext.getTitleSortKey(), firstOfNext.getId(), PageRequest.ofSize(2));
+        assertEquals(List.of("Mockingjay", "Catching Fire"),
+                previous.stream().map(BookInfo::getBookTitle).toList());
+    }
 }
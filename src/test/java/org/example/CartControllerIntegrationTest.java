@@ -32,7 +32,7 @@ class CartControllerIntegrationTest {
     private CartRepository cartRepository;
 
     @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
+    private OrderRepository orderRepository;
 
     private User customer;
     private User admin;
@@ -41,7 +41,6 @@ class CartControllerIntegrationTest {
     @BeforeEach
     void setUp() {
         cartRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
 
@@ -110,6 +109,88 @@ class CartControllerIntegrationTest {
                 .andExpect(model().attributeExists("totalPrice"));
     }
 
+    @Test
+    void incrementAndDecrementChangeTheQuantityShown() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session));
+        mockMvc.perform(post("/cart/increment/{id}", book.getId()).session(session))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrl("/cart"));
+        mockMvc.perform(post("/cart/increment/{id}", book.getId()).session(session));
+        mockMvc.perform(post("/cart/decrement/{id}", book.getId()).session(session))
+                .andExpect(redirectedUrl("/cart"));
+
+        mockMvc.perform(get("/cart").session(session))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("itemCount", 2))
+                .andExpect(model().attribute("lines", org.hamcrest.Matchers.hasSize(1)))
+                .andExpect(model().attribute("totalPrice", 2 * 19.99));
+    }
+
+    @Test
+    void summaryFollowsTheCartAndResetsOnCheckout() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+
+        mockMvc.perform(get("/api/cart/summary").session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemCount").value(0))
+                .andExpect(jsonPath("$.totalCents").value(0));
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session));
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session));
+
+        mockMvc.perform(get("/api/cart/summary").session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemCount").value(2))
+                .andExpect(jsonPath("$.totalCents").value(3998))
+                .andExpect(jsonPath("$.total").value(39.98));
+
+        mockMvc.perform(post("/cart/checkout").session(session));
+
+        mockMvc.perform(get("/api/cart/summary").session(session))
+                .andExpect(jsonPath("$.itemCount").value(0))
+                .andExpect(jsonPath("$.totalCents").value(0));
+    }
+
+    @Test
+    void summaryNeedsACustomer() throws Exception {
+        mockMvc.perform(get("/api/cart/summary"))
+                .andExpect(status().isUnauthorized());
+
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", admin);
+        mockMvc.perform(get("/api/cart/summary").session(session))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void addingReservesStockUntilTheLastCopyIsHeld() throws Exception {
+        book.setInventory(2);
+        bookRepository.save(book);
+        User other = userRepository.save(new User("other", "password", "other@example.com", "CUSTOMER"));
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+        MockHttpSession otherSession = new MockHttpSession();
+        otherSession.setAttribute("user", other);
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get("/api/books/availability").param("ids", book.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['" + book.getId() + "']").value(1));
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(otherSession))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/cart/increment/{id}", book.getId()).session(session))
+                .andExpect(status().isConflict());
+        // giving a copy back on removal happens after commit, see OrderServiceTest
+    }
+
     @Test
     void viewCartNotLoggedIn() throws Exception {
         mockMvc.perform(get("/cart"))
@@ -137,6 +218,36 @@ class CartControllerIntegrationTest {
                 .andExpect(redirectedUrl("/purchase-history"));
     }
 
+    @Test
+    void checkoutPlacesAnOrderThatCanBePolled() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session));
+        mockMvc.perform(post("/cart/checkout").session(session))
+                .andExpect(redirectedUrl("/purchase-history"));
+
+        Long orderId = orderRepository.findTop20ByUserIdOrderByCreatedAtDesc(customer.getId()).get(0).getId();
+        mockMvc.perform(get("/api/orders/{id}", orderId).session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.itemCount").value(1))
+                .andExpect(jsonPath("$.lines[0].title").value("Test Book"));
+
+        mockMvc.perform(get("/purchase-history").session(session))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("orders", org.hamcrest.Matchers.hasSize(1)))
+                .andExpect(model().attribute("hasPendingOrders", false));
+
+        // other users can't see it
+        MockHttpSession otherSession = new MockHttpSession();
+        otherSession.setAttribute("user", admin);
+        mockMvc.perform(get("/api/orders/{id}", orderId).session(otherSession))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/orders/{id}", orderId))
+                .andExpect(status().isUnauthorized());
+    }
+
     @Test
     void checkoutNotLoggedIn() throws Exception {
         mockMvc.perform(post("/cart/checkout"))
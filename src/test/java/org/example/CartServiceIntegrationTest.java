@@ -21,13 +21,13 @@ class CartServiceIntegrationTest {
     private CartRepository cartRepository;
 
     @Autowired
-    private BookRepository bookRepository;
+    private PurchaseHistoryService purchaseHistoryService;
 
     @Autowired
-    private UserRepository userRepository;
+    private BookRepository bookRepository;
 
     @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
+    private UserRepository userRepository;
 
     private User user;
     private BookInfo book1;
@@ -38,7 +38,6 @@ class CartServiceIntegrationTest {
         cartRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
 
         user = new User("testuser", "password", "test@example.com", "CUSTOMER");
         userRepository.save(user);
@@ -127,9 +126,9 @@ class CartServiceIntegrationTest {
         Cart cart = cartService.getCart(user);
         assertTrue(cart.getBooks().isEmpty());
 
-        var historyOpt = purchaseHistoryRepository.findByUser(user);
-        assertTrue(historyOpt.isPresent());
-        assertEquals(2, historyOpt.get().getBooks().size());
+        var purchases = purchaseHistoryService.getPurchases(user, null, null, null, 10).purchases();
+        assertEquals(2, purchases.size());
+        assertEquals(book2.getBookPrice(), purchases.get(0).getUnitPrice());
     }
 
     @Test
@@ -140,6 +139,74 @@ class CartServiceIntegrationTest {
         assertTrue(cart.getBooks().isEmpty());
     }
 
+    @Test
+    void addingTheSameBookTwiceIncrementsItsLine() {
+        cartService.addBookToCart(user, book1.getId());
+        cartService.addBookToCart(user, book1.getId());
+        cartService.addBookToCart(user, book2.getId());
+
+        Cart cart = cartService.getCart(user);
+        assertEquals(2, cart.getLines().size());
+        assertEquals(3, cart.getItemCount());
+        assertEquals(2 * 10.99 + 15.99, cartService.getCartTotal(user), 0.001);
+    }
+
+    @Test
+    void decrementDropsTheLineAtZero() {
+        cartService.addBookToCart(user, book1.getId());
+        cartService.addBookToCart(user, book1.getId());
+
+        cartService.decrementBookInCart(user, book1.getId());
+        assertEquals(1, cartService.getCart(user).getItemCount());
+
+        cartService.decrementBookInCart(user, book1.getId());
+        assertTrue(cartService.getCart(user).getLines().isEmpty());
+        assertEquals(0.0, cartService.getCartTotal(user), 0.001);
+    }
+
+    @Test
+    void totalUsesThePriceWhenAdded() {
+        cartService.addBookToCart(user, book1.getId());
+        book1.setBookPrice(99.0);
+        bookRepository.save(book1);
+
+        assertEquals(10.99, cartService.getCartTotal(user), 0.001);
+    }
+
+    @Test
+    void checkoutTakesEveryCopy() {
+        cartService.addBookToCart(user, book1.getId());
+        cartService.addBookToCart(user, book1.getId());
+        cartService.addBookToCart(user, book1.getId());
+
+        assertTrue(cartService.checkout(user));
+
+        assertEquals(2, bookRepository.findById(book1.getId()).orElseThrow().getInventory());
+        assertTrue(cartService.getCart(user).getLines().isEmpty());
+    }
+
+    @Test
+    void checkoutTakesStock() {
+        cartService.addBookToCart(user, book1.getId());
+
+        assertTrue(cartService.checkout(user));
+
+        assertEquals(4, bookRepository.findById(book1.getId()).orElseThrow().getInventory());
+        assertEquals(5, bookRepository.findById(book2.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void checkoutWithoutEnoughStockKeepsCartAndStock() {
+        book1.setInventory(0);
+        bookRepository.save(book1);
+        cartService.addBookToCart(user, book1.getId());
+
+        assertFalse(cartService.checkout(user));
+
+        assertEquals(1, cartService.getCart(user).getBooks().size());
+        assertEquals(0, bookRepository.findById(book1.getId()).orElseThrow().getInventory());
+    }
+
     @Test
     void getCartTotal() {
         cartService.addBookToCart(user, book1.getId());
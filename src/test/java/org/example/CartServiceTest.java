@@ -26,9 +26,6 @@ class CartServiceTest {
     @Autowired
     private CartRepository cartRepository;
 
-    @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
-
     private User user;
     private BookInfo book1;
     private BookInfo book2;
@@ -36,7 +33,6 @@ class CartServiceTest {
     @BeforeEach
     void setUp() {
         cartRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
 
@@ -92,4 +92,20 @@ class CartTest {
         assertTrue(newCart.getBooks().contains(book1));
         assertTrue(newCart.getBooks().contains(book2));
     }
+
+    @Test
+    void testRunningTotalsFollowTheLines() {
+        cart.addBook(book1);
+        cart.addBook(book1);
+        cart.addBook(book2);
+
+        assertEquals(3, cart.getItemCount());
+        assertEquals(2 * 1099 + 1599, cart.getTotalCents());
+
+        cart.removeBook(book1);
+
+        assertEquals(1, cart.getItemCount());
+        assertEquals(1599, cart.getTotalCents());
+        assertEquals(15.99, cart.getTotal(), 0.001);
+    }
 }
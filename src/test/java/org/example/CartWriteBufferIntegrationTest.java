@@ -0,0 +1,112 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(properties = {
+        "bookstore.cart.write-behind.enabled=true",
+        "bookstore.cart.flush-interval-ms=3600000" // only the on-demand flushes run during the test
+})
+@AutoConfigureMockMvc
+@Transactional
+@ActiveProfiles("test")
+class CartWriteBufferIntegrationTest {
+
+    @TempDir
+    static Path journalDir;
+
+    @DynamicPropertySource
+    static void journal(DynamicPropertyRegistry registry) {
+        registry.add("bookstore.cart.journal-dir", () -> journalDir.toString());
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartJournalMarkers journalMarkers;
+
+    private User customer;
+    private BookInfo book;
+
+    @BeforeEach
+    void setUp() {
+        customer = userRepository.save(new User("buffered", "password", "buffered@example.com", "CUSTOMER"));
+        book = bookRepository.save(new BookInfo("Buffered Book", "Fiction", 12.50, "ISBN-BUF", "Author", "Publisher", "Desc", "URL"));
+    }
+
+    @Test
+    void addsAreWrittenWhenTheCartIsRead() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session))
+                .andExpect(redirectedUrl("/"));
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session))
+                .andExpect(redirectedUrl("/"));
+
+        // acknowledged but not written yet
+        assertTrue(cartRepository.findByUser(customer).isEmpty());
+
+        mockMvc.perform(get("/api/cart/summary").session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.itemCount").value(2))
+                .andExpect(jsonPath("$.totalCents").value(2500));
+    }
+
+    @Test
+    void checkoutIncludesBufferedAdds() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+
+        mockMvc.perform(post("/cart/add/{id}", book.getId()).session(session));
+        mockMvc.perform(post("/cart/checkout").session(session))
+                .andExpect(redirectedUrl("/purchase-history"));
+
+        assertEquals(4, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void applyingAddsMarksTheirSegmentsInTheSameTransaction() {
+        List<String> segments = List.of("stripe-3/cart-1.log", "stripe-3/cart-2.log");
+
+        cartService.applyAdds(customer.getId(), Map.of(book.getId(), 2), segments);
+
+        assertEquals(2, cartRepository.findSummaryByUser(customer).orElseThrow().itemCount());
+        assertEquals(Set.of(customer.getId()), journalMarkers.applied().get("stripe-3/cart-2.log"));
+
+        journalMarkers.forget(List.of("stripe-3/cart-1.log"));
+        assertEquals(Set.of("stripe-3/cart-2.log"), journalMarkers.applied().keySet());
+    }
+}
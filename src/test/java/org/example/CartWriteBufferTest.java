@@ -0,0 +1,197 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CartWriteBufferTest {
+
+    @TempDir
+    Path journalDir;
+
+    private CartService cartService;
+    private InMemoryMarkers markers;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        cartService = mock(CartService.class);
+        markers = new InMemoryMarkers();
+        // like the real applyAdds: the markers are written in the same transaction as the adds
+        doAnswer(inv -> {
+            markers.mark(inv.getArgument(0), inv.getArgument(2));
+            return null;
+        }).when(cartService).applyAdds(anyLong(), any(), any());
+        user = userWithId(1L);
+    }
+
+    private CartWriteBuffer newBuffer() throws Exception {
+        return new CartWriteBuffer(cartService, markers, true, journalDir.toString());
+    }
+
+    @Test
+    void addsAreCoalescedUntilFlush() throws Exception {
+        CartWriteBuffer buffer = newBuffer();
+
+        buffer.add(user, 10L);
+        buffer.add(user, 10L);
+        buffer.add(user, 10L);
+        buffer.add(user, 11L);
+        verifyNoInteractions(cartService);
+
+        buffer.flush();
+        verify(cartService, times(1)).applyAdds(eq(1L), eq(Map.of(10L, 3, 11L, 1)), any());
+
+        buffer.flush();
+        verifyNoMoreInteractions(cartService);
+    }
+
+    @Test
+    void flushForUserOnlyWritesWhenSomethingIsPending() throws Exception {
+        CartWriteBuffer buffer = newBuffer();
+
+        buffer.flush(user);
+        verifyNoInteractions(cartService);
+
+        buffer.add(user, 10L);
+        buffer.flush(user);
+        verify(cartService).applyAdds(eq(1L), eq(Map.of(10L, 1)), any());
+    }
+
+    @Test
+    void flushForUserLeavesOtherUsersBuffered() throws Exception {
+        CartWriteBuffer buffer = newBuffer();
+        User sameStripe = userWithId(17L);
+        User otherStripe = userWithId(2L);
+        buffer.add(user, 10L);
+        buffer.add(sameStripe, 10L);
+        buffer.add(otherStripe, 10L);
+
+        buffer.flush(user);
+
+        verify(cartService).applyAdds(eq(1L), eq(Map.of(10L, 1)), any());
+        verifyNoMoreInteractions(cartService);
+
+        buffer.flush();
+        verify(cartService).applyAdds(eq(17L), eq(Map.of(10L, 1)), any());
+        verify(cartService).applyAdds(eq(2L), eq(Map.of(10L, 1)), any());
+        verify(cartService, times(3)).applyAdds(anyLong(), any(), any());
+    }
+
+    @Test
+    void unflushedAddsAreReplayedAfterRestart() throws Exception {
+        CartWriteBuffer crashed = newBuffer();
+        crashed.add(user, 10L);
+        crashed.add(user, 10L);
+        // no flush, no shutdown: the process died
+
+        CartWriteBuffer restarted = newBuffer();
+        restarted.flush();
+        verify(cartService).applyAdds(eq(1L), eq(Map.of(10L, 2)), any());
+
+        // flushed segments are gone, so a second restart has nothing to replay
+        CartWriteBuffer again = newBuffer();
+        again.flush();
+        verify(cartService, times(1)).applyAdds(anyLong(), any(), any());
+        assertNoMarkers();
+    }
+
+    @Test
+    void appliedAddsAreNotReplayedAfterRestart() throws Exception {
+        User sameStripe = userWithId(17L);
+        CartWriteBuffer crashed = newBuffer();
+        crashed.add(user, 10L);
+        crashed.add(sameStripe, 11L);
+        // user 1's adds commit, then the process dies before the sealed segment is deleted
+        crashed.flush(user);
+
+        CartWriteBuffer restarted = newBuffer();
+        restarted.flush();
+
+        verify(cartService, times(1)).applyAdds(eq(1L), any(), any());
+        verify(cartService).applyAdds(eq(17L), eq(Map.of(11L, 1)), any());
+        assertNoMarkers();
+    }
+
+    @Test
+    void staleMarkersArePurgedAtStartup() throws Exception {
+        markers.mark(1L, List.of("stripe-1/cart-1.log"));
+
+        CartWriteBuffer crashed = newBuffer();
+        crashed.add(user, 10L); // journaled to stripe-1/cart-1.log again
+
+        // the reused segment id must not hide the new add
+        CartWriteBuffer restarted = newBuffer();
+        restarted.flush();
+        verify(cartService).applyAdds(eq(1L), eq(Map.of(10L, 1)), any());
+    }
+
+    @Test
+    void failedFlushKeepsTheAddsBufferedAndJournaled() throws Exception {
+        doThrow(new org.springframework.dao.DataAccessResourceFailureException("database down"))
+                .doNothing()
+                .when(cartService).applyAdds(eq(1L), any(), any());
+        CartWriteBuffer buffer = newBuffer();
+
+        buffer.add(user, 10L);
+        buffer.flush();
+        buffer.add(user, 10L);
+
+        // still journaled after the failure
+        CartWriteBuffer restarted = newBuffer();
+        restarted.flush();
+        verify(cartService).applyAdds(eq(1L), eq(Map.of(10L, 2)), any());
+    }
+
+    @Test
+    void disabledBufferWritesThrough() throws Exception {
+        CartWriteBuffer buffer = new CartWriteBuffer(cartService, markers, false, journalDir.toString());
+
+        buffer.add(user, 10L);
+
+        verify(cartService).addBookToCart(user, 10L);
+    }
+
+    private void assertNoMarkers() {
+        org.junit.jupiter.api.Assertions.assertEquals(Map.of(), markers.applied());
+    }
+
+    private static User userWithId(Long id) {
+        User user = new User();
+        user.setId(id);
+        return user;
+    }
+
+    private static class InMemoryMarkers extends CartJournalMarkers {
+        private final Map<String, Set<Long>> rows = new HashMap<>();
+
+        InMemoryMarkers() {
+            super(null);
+        }
+
+        @Override
+        public void mark(Long userId, Collection<String> segments) {
+            segments.forEach(segment -> rows.computeIfAbsent(segment, s -> new HashSet<>()).add(userId));
+        }
+
+        @Override
+        public Map<String, Set<Long>> applied() {
+            Map<String, Set<Long>> copy = new HashMap<>();
+            rows.forEach((segment, users) -> copy.put(segment, new HashSet<>(users)));
+            return copy;
+        }
+
+        @Override
+        public void forget(Collection<String> segments) {
+            segments.forEach(rows::remove);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class CatalogSearchIndexTest {
+
+    private CatalogSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new CatalogSearchIndex(mock(BookRepository.class));
+        index.index(book(1L, "The Hunger Games", "Fantasy, Dystopian", "Suzanne Collins"));
+        index.index(book(2L, "Catching Fire", "Fantasy", "Suzanne Collins"));
+        index.index(book(3L, "Dune", "Science Fiction", "Frank Herbert"));
+    }
+
+    @Test
+    void findsSubstringIgnoringCase() {
+        assertArrayEquals(new int[]{1}, index.find(CatalogSearchIndex.Field.TITLE, "HUNGER"));
+        assertArrayEquals(new int[]{1, 2}, index.find(CatalogSearchIndex.Field.AUTHOR, "collins"));
+        assertArrayEquals(new int[]{1, 2}, index.find(CatalogSearchIndex.Field.GENRE, "fant"));
+    }
+
+    @Test
+    void trigramsOutOfOrderDoNotMatch() {
+        index.index(book(4L, "Banana", "Cooking", "Anon"));
+
+        // every trigram of "ananana" occurs in "banana", but the whole term does not
+        assertEquals(0, index.find(CatalogSearchIndex.Field.TITLE, "ananana").length);
+        assertArrayEquals(new int[]{4}, index.find(CatalogSearchIndex.Field.TITLE, "anana"));
+    }
+
+    @Test
+    void shortTermsFallBackToScanningIndexedValues() {
+        assertArrayEquals(new int[]{3}, index.find(CatalogSearchIndex.Field.TITLE, "du"));
+        assertArrayEquals(new int[]{1, 2, 3}, index.find(CatalogSearchIndex.Field.TITLE, "e"));
+    }
+
+    @Test
+    void reindexAndRemoveKeepPostingsInSync() {
+        index.index(book(3L, "Children of Dune", "Science Fiction", "Frank Herbert"));
+        assertArrayEquals(new int[]{3}, index.find(CatalogSearchIndex.Field.TITLE, "children"));
+
+        index.onBookChanged(BookChangedEvent.removed(1L));
+        assertEquals(0, index.find(CatalogSearchIndex.Field.TITLE, "hunger").length);
+        assertArrayEquals(new int[]{2}, index.find(CatalogSearchIndex.Field.AUTHOR, "collins"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void intersectSortedIds() {
+        assertArrayEquals(new int[]{2, 5}, CatalogSearchIndex.intersect(new int[]{1, 2, 5, 7}, new int[]{2, 3, 5}));
+    }
+
+    private static BookInfo book(Long id, String title, String genre, String author) {
+        BookInfo book = new BookInfo(title, genre, 10.0, "isbn" + id, author, "Publisher", "", "");
+        ReflectionTestUtils.setField(book, "id", id);
+        return book;
+    }
+}
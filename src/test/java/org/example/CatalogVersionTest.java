@@ -0,0 +1,41 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogVersionTest {
+
+    @Test
+    void aChangeOutsideATransactionBumpsOnce() {
+        CatalogVersion version = new CatalogVersion();
+        long before = version.current();
+
+        version.onStockChanged(new StockChangedEvent(Set.of(1L)));
+
+        assertEquals(before + 1, version.current());
+    }
+
+    @Test
+    void aChangeInsideATransactionBumpsAgainAfterCommit() {
+        CatalogVersion version = new CatalogVersion();
+        long before = version.current();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            version.onStockChanged(new StockChangedEvent(Set.of(1L)));
+            long duringCommit = version.current();
+            assertEquals(before + 1, duringCommit);
+
+            // an ETag handed out before the commit must not match what comes after it
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(duringCommit + 1, version.current());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+}
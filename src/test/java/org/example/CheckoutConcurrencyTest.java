@@ -0,0 +1,108 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: each checkout has to commit on its own thread for the race to be real
+@SpringBootTest
+@ActiveProfiles("test")
+class CheckoutConcurrencyTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StockService stockService;
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+        cartRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentCheckoutsOfAHotTitleNeverOversell() throws Exception {
+        BookInfo hot = new BookInfo("Hot Title", "Fiction", 10.0, "HOT-1", "Author", "Publisher", "", "");
+        hot.setInventory(5);
+        bookRepository.save(hot);
+
+        int buyers = 20;
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < buyers; i++) {
+            User u = userRepository.save(new User("buyer" + i, "password", "buyer" + i + "@example.com", "CUSTOMER"));
+            cartService.addBookToCart(u, hot.getId());
+            users.add(u);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(buyers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (User u : users) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return cartService.checkout(u);
+            }));
+        }
+        start.countDown();
+
+        int succeeded = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(30, TimeUnit.SECONDS)) {
+                succeeded++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(5, succeeded);
+        assertEquals(0, bookRepository.findById(hot.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void concurrentStockAdjustmentsAreNotLost() throws Exception {
+        BookInfo book = new BookInfo("Restocked", "Fiction", 10.0, "ADJ-1", "Author", "Publisher", "", "");
+        book.setInventory(50);
+        bookRepository.save(book);
+
+        int admins = 20;
+        ExecutorService pool = Executors.newFixedThreadPool(admins);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < admins; i++) {
+            int delta = i % 2 == 0 ? 3 : -1;
+            results.add(pool.submit(() -> {
+                start.await();
+                return stockService.adjust(book.getId(), delta);
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertEquals(50 + 10 * 3 - 10, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+}
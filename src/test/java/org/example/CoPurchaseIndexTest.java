@@ -0,0 +1,80 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class CoPurchaseIndexTest {
+
+    private OrderLineRepository orderLineRepository;
+    private CoPurchaseIndex index;
+
+    @BeforeEach
+    void setUp() {
+        orderLineRepository = mock(OrderLineRepository.class);
+        index = new CoPurchaseIndex(orderLineRepository);
+    }
+
+    @Test
+    void buildsFromCustomerBasketsAndRanksByCosine() {
+        // customer 1 bought 1, 2, 3; customer 2 bought 1, 2; customer 3 bought 2, 4
+        when(orderLineRepository.findPurchasedUserBookPairs()).thenReturn(List.of(
+                new Object[]{1L, 1L}, new Object[]{1L, 2L}, new Object[]{1L, 3L},
+                new Object[]{2L, 1L}, new Object[]{2L, 2L},
+                new Object[]{3L, 2L}, new Object[]{3L, 4L}));
+        index.run();
+
+        List<CoPurchaseIndex.Neighbour> neighbours = index.alsoBought(1L, 10);
+
+        // 2: 2 / sqrt(2 * 3), 3: 1 / sqrt(2 * 1)
+        assertEquals(List.of(2L, 3L), neighbours.stream().map(CoPurchaseIndex.Neighbour::bookId).toList());
+        assertEquals(2 / Math.sqrt(6), neighbours.get(0).score(), 1e-9);
+        assertEquals(1 / Math.sqrt(2), neighbours.get(1).score(), 1e-9);
+        assertEquals(List.of(2L), index.alsoBought(4L, 10).stream().map(CoPurchaseIndex.Neighbour::bookId).toList());
+        assertEquals(1, index.alsoBought(2L, 1).size());
+    }
+
+    @Test
+    void completedOrderOnlyPairsBooksTheCustomerDidNotOwnYet() {
+        User user = new User();
+        user.setId(1L);
+        index.add(List.of(1), List.of()); // the customer's earlier purchase, as loaded at startup
+        when(orderLineRepository.findPurchasedBookIdsOutside(eq(1L), any())).thenReturn(List.of(1L));
+
+        // book 1 again, plus 2 and 3 for the first time
+        index.recordPurchases(List.of(order(10L, user, 1L, 2L, 3L)));
+
+        assertEquals(List.of(1L, 3L), index.alsoBought(2L, 10).stream().map(CoPurchaseIndex.Neighbour::bookId).toList());
+        assertEquals(List.of(2L, 3L), index.alsoBought(1L, 10).stream().map(CoPurchaseIndex.Neighbour::bookId).toList());
+        // book 1 still has one buyer, so every pair is a perfect match
+        assertEquals(1.0, index.alsoBought(1L, 10).get(0).score(), 1e-9);
+    }
+
+    @Test
+    void removedBookDisappearsFromEveryList() {
+        index.add(List.of(1, 2, 3), List.of());
+
+        index.onBookChanged(BookChangedEvent.removed(2L));
+
+        assertTrue(index.alsoBought(2L, 10).isEmpty());
+        assertEquals(List.of(3L), index.alsoBought(1L, 10).stream().map(CoPurchaseIndex.Neighbour::bookId).toList());
+    }
+
+    private static CustomerOrder order(Long id, User user, Long... bookIds) {
+        CustomerOrder order = new CustomerOrder(user);
+        ReflectionTestUtils.setField(order, "id", id);
+        for (Long bookId : bookIds) {
+            BookInfo book = new BookInfo("Book " + bookId, "Fiction", 10.0, "isbn" + bookId, "Author", "Publisher", "", "");
+            ReflectionTestUtils.setField(book, "id", bookId);
+            order.addLine(book, 1, book.getBookPrice());
+        }
+        return order;
+    }
+}
@@ -0,0 +1,37 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvRecordReaderTest {
+
+    @Test
+    void readsQuotedFieldsWithCommasQuotesAndLineBreaks() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader(
+                "title,description\r\n\"Dune\",\"Spice, sand \"\"and\"\"\r\nworms\"\nplain,,\n"));
+
+        assertEquals(List.of("title", "description"), reader.next());
+        assertEquals(List.of("Dune", "Spice, sand \"and\"\r\nworms"), reader.next());
+        assertEquals(List.of("plain", "", ""), reader.next());
+        assertNull(reader.next());
+        assertEquals(3, reader.getRecordNumber());
+    }
+
+    @Test
+    void lastRecordWithoutLineBreak() throws IOException {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("a,b"));
+        assertEquals(List.of("a", "b"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        CsvRecordReader reader = new CsvRecordReader(new StringReader("\"never closed,x\n"));
+        assertThrows(IOException.class, reader::next);
+    }
+}
@@ -0,0 +1,125 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class GenreAffinityServiceIntegrationTest {
+
+    @Autowired
+    private GenreAffinityService affinityService;
+
+    @Autowired
+    private GenreAffinityRepository affinityRepository;
+
+    @Autowired
+    private PurchaseHistoryService purchaseHistoryService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private User user;
+    private BookInfo fantasy;
+    private BookInfo sciFi;
+
+    @BeforeEach
+    void setUp() {
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+
+        user = userRepository.save(new User("testuser", "password", "test@example.com", "CUSTOMER"));
+
+        fantasy = new BookInfo("The Hobbit", "Fantasy, Adventure", 15.0, "ISBN1", "Tolkien", "Allen", "", "");
+        sciFi = new BookInfo("Dune", "Sci-Fi", 12.0, "ISBN2", "Herbert", "Chilton", "", "");
+        genreService.linkGenres(List.of(fantasy, sciFi));
+        bookRepository.saveAll(List.of(fantasy, sciFi));
+    }
+
+    private void buy(BookInfo... books) {
+        for (BookInfo book : books) {
+            cartService.addBookToCart(user, book.getId());
+        }
+        assertTrue(cartService.checkout(user));
+    }
+
+    private Long genreId(String name) {
+        return genreRepository.findByNameIn(List.of(name)).get(0).getId();
+    }
+
+    @Test
+    void checkoutAddsToTheProfileRow() {
+        buy(fantasy);
+        buy(fantasy, sciFi);
+
+        GenreAffinity row = affinityRepository.findById(user.getId()).orElseThrow();
+        Map<Long, Double> weights = row.getWeights();
+
+        assertEquals(2.0, weights.get(genreId("Fantasy")), 0.001);
+        assertEquals(2.0, weights.get(genreId("Adventure")), 0.001);
+        assertEquals(1.0, weights.get(genreId("Sci-Fi")), 0.001);
+        assertEquals(weights, affinityService.getAffinity(user.getId()));
+    }
+
+    @Test
+    void profileIsEmptyWithoutPurchases() {
+        assertTrue(affinityService.getAffinity(user.getId()).isEmpty());
+    }
+
+    @Test
+    void missingRowIsRebuiltFromHistory() {
+        buy(sciFi, sciFi);
+        affinityRepository.deleteAll();
+
+        Map<Long, Double> weights = affinityService.getAffinity(user.getId());
+
+        assertEquals(Map.of(genreId("Sci-Fi"), 2.0), weights);
+        assertTrue(affinityRepository.existsById(user.getId()));
+    }
+
+    @Test
+    void readingAMissingProfileDoesNotWriteIt() {
+        buy(sciFi, sciFi);
+        affinityRepository.deleteAll();
+
+        GenreAffinity profile = affinityService.readProfile(user.getId());
+
+        assertEquals(Map.of(genreId("Sci-Fi"), 2.0), profile.getWeights());
+        assertNull(profile.getVersion());
+        assertFalse(affinityRepository.existsById(user.getId()));
+    }
+
+    @Test
+    void removingAPurchaseTakesItOutOfTheProfile() {
+        buy(fantasy, sciFi);
+        Long fantasyEntry = purchaseHistoryService.getPurchases(user, null, null, null, 10).purchases().stream()
+                .filter(line -> line.getBook().getId().equals(fantasy.getId()))
+                .findFirst().orElseThrow().getId();
+
+        assertTrue(purchaseHistoryService.removePurchase(user, fantasyEntry));
+
+        assertEquals(Map.of(genreId("Sci-Fi"), 1.0), affinityService.getAffinity(user.getId()));
+    }
+}
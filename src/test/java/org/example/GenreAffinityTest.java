@@ -0,0 +1,50 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GenreAffinityTest {
+
+    private static final Instant T0 = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Duration HALF_LIFE = Duration.ofDays(30);
+
+    @Test
+    void addDecaysOldWeightsBeforeAddingNewOnes() {
+        GenreAffinity affinity = new GenreAffinity(1L, T0);
+        affinity.add(Map.of(1L, 4.0), T0, HALF_LIFE);
+
+        affinity.add(Map.of(2L, 3.0), T0.plus(HALF_LIFE), HALF_LIFE);
+
+        Map<Long, Double> weights = affinity.getWeights();
+        assertEquals(2.0, weights.get(1L), 0.001);
+        assertEquals(3.0, weights.get(2L), 0.001);
+        assertEquals(List.of(2L, 1L), List.copyOf(weights.keySet())); // heaviest first
+        assertEquals(T0.plus(HALF_LIFE), affinity.getUpdatedAt());
+    }
+
+    @Test
+    void zeroHalfLifeNeverDecays() {
+        GenreAffinity affinity = new GenreAffinity(1L, T0);
+        affinity.add(Map.of(1L, 1.0), T0, Duration.ZERO);
+
+        affinity.add(Map.of(1L, 1.0), T0.plus(Duration.ofDays(3650)), Duration.ZERO);
+
+        assertEquals(Map.of(1L, 2.0), affinity.getWeights());
+    }
+
+    @Test
+    void fadedWeightsAreDropped() {
+        GenreAffinity affinity = new GenreAffinity(1L, T0);
+        affinity.add(Map.of(1L, 1.0), T0, HALF_LIFE);
+
+        affinity.add(Map.of(2L, 1.0), T0.plus(HALF_LIFE.multipliedBy(10)), HALF_LIFE);
+
+        assertEquals(Map.of(2L, 1.0), affinity.getWeights());
+    }
+}
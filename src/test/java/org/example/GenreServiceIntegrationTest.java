@@ -0,0 +1,150 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class GenreServiceIntegrationTest {
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private GenreRepository genreRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private BookInventoryRepository bookInventoryRepository;
+
+    @BeforeEach
+    void setUp() {
+        cartRepository.deleteAll();
+        bookInventoryRepository.deleteAll();
+        bookRepository.deleteAll();
+        genreService.onBookChanged(BookChangedEvent.removed(0L));
+    }
+
+    @Test
+    void splitGenresTrimsAndDropsEmpty() {
+        assertEquals(Set.of("Fantasy", "Young Adult"), GenreService.splitGenres(" Fantasy, ,Young Adult ,"));
+        assertTrue(GenreService.splitGenres(null).isEmpty());
+    }
+
+    @Test
+    void linkGenresReusesExistingRows() {
+        BookInfo first = new BookInfo("Dune", "Science Fiction, Classic", 12.0, "1", "Frank Herbert", "Ace", "", "");
+        genreService.linkGenres(first);
+        bookRepository.save(first);
+
+        BookInfo second = new BookInfo("Foundation", "Classic", 11.0, "2", "Isaac Asimov", "Gnome", "", "");
+        genreService.linkGenres(second);
+        bookRepository.save(second);
+
+        assertEquals(2, genreRepository.findByNameIn(List.of("Science Fiction", "Classic")).size());
+        assertEquals(first.getGenres().stream().filter(g -> g.getName().equals("Classic")).findFirst().get().getId(),
+                second.getGenres().iterator().next().getId());
+    }
+
+    @Test
+    void sortedGenreNamesAreCachedUntilABookChanges() {
+        BookInfo book = new BookInfo("Dune", "science fiction, Classic", 12.0, "1", "Frank Herbert", "Ace", "", "");
+        genreService.linkGenres(book);
+        bookRepository.save(book);
+
+        assertEquals(List.of("Classic", "science fiction"), genreService.getSortedGenreNames());
+
+        BookInfo other = new BookInfo("Emma", "Romance", 9.0, "2", "Jane Austen", "Penguin", "", "");
+        genreService.linkGenres(other);
+        bookRepository.save(other);
+        assertEquals(2, genreService.getSortedGenreNames().size(), "no write event yet, cached list is served");
+
+        genreService.onBookChanged(BookChangedEvent.saved(other));
+        assertEquals(List.of("Classic", "Romance", "science fiction"), genreService.getSortedGenreNames());
+    }
+
+    @Test
+    void savesInListedGenresKeepTheCachedNames() {
+        BookInfo book = new BookInfo("Dune", "Classic", 12.0, "1", "Frank Herbert", "Ace", "", "");
+        genreService.linkGenres(book);
+        bookRepository.save(book);
+        assertEquals(List.of("Classic"), genreService.getSortedGenreNames());
+
+        BookInfo other = new BookInfo("Emma", "Classic, Romance", 9.0, "2", "Jane Austen", "Penguin", "", "");
+        genreService.linkGenres(other);
+        bookRepository.save(other);
+        genreService.onBookChanged(BookChangedEvent.saved(book));
+        assertEquals(List.of("Classic"), genreService.getSortedGenreNames(), "nothing new listed, cache kept");
+
+        genreService.onBooksAdded(new BooksAddedEvent(List.of(other)));
+        assertEquals(List.of("Classic", "Romance"), genreService.getSortedGenreNames());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED) // two real transactions racing
+    void concurrentAddsOfTheSameNewGenreBothSucceed() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        CountDownLatch firstInserted = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = threads.submit(() -> tx.executeWithoutResult(status -> {
+                BookInfo book = new BookInfo("Race One", "Race Genre", 1.0, "R1", "A", "P", "", "");
+                genreService.linkGenres(book);
+                bookRepository.save(book);
+                firstInserted.countDown();
+                sleep(300); // the second add runs into the uncommitted genre row meanwhile
+            }));
+            Future<?> second = threads.submit(() -> {
+                firstInserted.await();
+                tx.executeWithoutResult(status -> {
+                    BookInfo book = new BookInfo("Race Two", "Race Genre", 1.0, "R2", "A", "P", "", "");
+                    genreService.linkGenres(book);
+                    bookRepository.save(book);
+                });
+                return null;
+            });
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+
+            List<Genre> genres = genreRepository.findByNameIn(List.of("Race Genre"));
+            assertEquals(1, genres.size());
+            assertEquals(2, bookRepository.findAll().stream()
+                    .filter(b -> b.getBookTitle().startsWith("Race")).count());
+        } finally {
+            threads.shutdownNow();
+            bookRepository.deleteAll(bookRepository.findAll().stream()
+                    .filter(b -> b.getBookTitle().startsWith("Race")).toList());
+            genreRepository.deleteAll(genreRepository.findByNameIn(List.of("Race Genre")));
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntMapTest {
+
+    @Test
+    void addToCountsAndDropsZeroes() {
+        IntIntMap map = new IntIntMap();
+
+        assertEquals(1, map.addTo(7, 1));
+        assertEquals(3, map.addTo(7, 2));
+        assertEquals(0, map.get(8));
+        assertEquals(0, map.addTo(7, -3));
+
+        assertEquals(0, map.size());
+        assertEquals(0, map.get(7));
+    }
+
+    @Test
+    void zeroKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new IntIntMap().addTo(0, 1));
+    }
+
+    @Test
+    void matchesAHashMapThroughGrowthAndRemovals() {
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            int key = 1 + random.nextInt(500);
+            if (random.nextInt(4) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                map.addTo(key, 1);
+                expected.merge(key, 1, Integer::sum);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key), "key " + key));
+        Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+}
@@ -0,0 +1,142 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@ContextConfiguration(classes = BookstoreApplication.class)
+@ActiveProfiles("test")
+class OrderLineRepositoryIntegrationTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private OrderLineRepository orderLineRepository;
+
+    private User user1;
+    private User user2;
+    private BookInfo hobbit;
+    private BookInfo dune;
+
+    @BeforeEach
+    void setUp() {
+        user1 = new User("testuser1", "password1", "test1@example.com", "CUSTOMER");
+        user2 = new User("testuser2", "password2", "test2@example.com", "CUSTOMER");
+        entityManager.persist(user1);
+        entityManager.persist(user2);
+
+        hobbit = entityManager.persist(new BookInfo("The Hobbit", "Fantasy", 15.0, "1", "J.R.R. Tolkien", "Allen", "", ""));
+        dune = entityManager.persist(new BookInfo("Dune", "Sci-Fi", 12.0, "2", "Frank Herbert", "Chilton", "", ""));
+    }
+
+    private List<OrderLine> purchases(User user) {
+        return orderLineRepository.findPurchasePage(user.getId(), Instant.EPOCH, Instant.parse("9999-12-31T00:00:00Z"),
+                Long.MIN_VALUE, PageRequest.ofSize(10));
+    }
+
+    private CustomerOrder order(User user, boolean completed, BookInfo... books) {
+        CustomerOrder order = new CustomerOrder(user);
+        for (BookInfo book : books) {
+            order.addLine(book, 1, book.getBookPrice());
+        }
+        if (completed) {
+            order.complete();
+        }
+        return entityManager.persist(order);
+    }
+
+    @Test
+    void purchasesAreCompletedLinesOfTheUserOnly() {
+        order(user1, true, hobbit, dune);
+        order(user1, false, dune);
+        order(user2, true, hobbit);
+        entityManager.flush();
+
+        List<OrderLine> purchases = purchases(user1);
+
+        assertEquals(2, purchases.size());
+        assertEquals("Dune", purchases.get(0).getBookTitle());
+        assertEquals(15.0, purchases.get(1).getUnitPrice());
+    }
+
+    @Test
+    void repeatPurchasesAreKeptAndPricesAreSnapshots() {
+        order(user1, true, hobbit);
+        hobbit.setBookPrice(20.0);
+        order(user1, true, hobbit);
+        entityManager.flush();
+
+        List<OrderLine> purchases = purchases(user1);
+
+        assertEquals(2, purchases.size());
+        assertEquals(java.util.Set.of(15.0, 20.0),
+                java.util.Set.of(purchases.get(0).getUnitPrice(), purchases.get(1).getUnitPrice()));
+        assertEquals(List.of(hobbit.getId()), orderLineRepository.findPurchasedBookIds(user1.getId()));
+    }
+
+    @Test
+    void pagesSeekPastTheCursor() {
+        order(user1, true, hobbit, dune);
+        entityManager.flush();
+        OrderLine first = purchases(user1).get(0);
+
+        List<OrderLine> rest = orderLineRepository.findPurchasePage(user1.getId(), Instant.EPOCH,
+                first.getOrder().getCreatedAt(), first.getId(), PageRequest.ofSize(10));
+
+        assertEquals(1, rest.size());
+        assertEquals("The Hobbit", rest.get(0).getBookTitle());
+    }
+
+    @Test
+    void hidePurchaseOnlyHidesTheOwnersLine() {
+        CustomerOrder mine = order(user1, true, hobbit);
+        CustomerOrder theirs = order(user2, true, hobbit);
+        entityManager.flush();
+        Long line = mine.getLines().get(0).getId();
+
+        assertEquals(0, orderLineRepository.hidePurchase(user1.getId(), theirs.getLines().get(0).getId()));
+        assertEquals(1, orderLineRepository.hidePurchase(user1.getId(), line));
+        assertEquals(0, orderLineRepository.hidePurchase(user1.getId(), line));
+        entityManager.clear();
+
+        assertTrue(purchases(user1).isEmpty());
+        assertEquals(0, orderLineRepository.sumPurchasedQuantity(user1.getId()));
+        assertEquals(1, purchases(user2).size());
+        assertEquals(1, orderLineRepository.sumPurchasedQuantity(user2.getId()));
+
+        // the sale is still on record
+        assertTrue(orderLineRepository.existsById(line));
+        assertEquals(List.of(hobbit.getId()), orderLineRepository.findPurchasedBookIds(user1.getId()));
+    }
+
+    @Test
+    void findPurchasedGenreQuantitiesReturnsOneRowPerLinkedGenre() {
+        Genre fantasy = entityManager.persist(new Genre("Fantasy"));
+        Genre adventure = entityManager.persist(new Genre("Adventure"));
+
+        BookInfo book = new BookInfo("The Hobbit", "Fantasy, Adventure", 15.0, "3", "J.R.R. Tolkien", "Allen", "", "");
+        book.getGenres().add(fantasy);
+        book.getGenres().add(adventure);
+        entityManager.persist(book);
+
+        order(user1, true, book);
+        entityManager.flush();
+
+        List<Object[]> rows = orderLineRepository.findPurchasedGenreQuantities(user1.getId());
+        assertEquals(java.util.Set.of(fantasy.getId(), adventure.getId()),
+                rows.stream().map(row -> row[0]).collect(java.util.stream.Collectors.toSet()));
+        assertEquals(1, rows.get(0)[1]);
+    }
+}
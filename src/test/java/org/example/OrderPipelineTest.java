@@ -0,0 +1,50 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderPipelineTest {
+
+    @Test
+    void failedBatchesAreRetriedThenTheOrderIsFailed() throws Exception {
+        OrderService orderService = mock(OrderService.class);
+        doThrow(new DataAccessResourceFailureException("database down")).when(orderService).process(anyList());
+        OrderPipeline pipeline = newPipeline(orderService);
+        pipeline.run();
+        try {
+            pipeline.submit(7L);
+
+            verify(orderService, timeout(5_000)).fail(eq(7L), anyString());
+            verify(orderService, times(3)).process(anyList()); // first try + 2 retries
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    void anOrderThatSucceedsOnRetryIsNotFailed() throws Exception {
+        OrderService orderService = mock(OrderService.class);
+        doThrow(new DataAccessResourceFailureException("database down")).doNothing().when(orderService).process(anyList());
+        OrderPipeline pipeline = newPipeline(orderService);
+        pipeline.run();
+        try {
+            pipeline.submit(7L);
+
+            verify(orderService, timeout(5_000).times(2)).process(anyList());
+            verify(orderService, after(200).never()).fail(anyLong(), anyString());
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    private static OrderPipeline newPipeline(OrderService orderService) {
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.findIdsByStatus(CustomerOrder.Status.PENDING)).thenReturn(List.of());
+        return new OrderPipeline(orderService, orderRepository, 1, 10, 10, 2, 10);
+    }
+}
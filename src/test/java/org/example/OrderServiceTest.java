@@ -0,0 +1,205 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Not @Transactional: orders are placed and processed in their own transactions, like in production
+@SpringBootTest
+@ActiveProfiles("test")
+class OrderServiceTest {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StockReservations reservations;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BookInfo book;
+
+    @BeforeEach
+    void setUp() {
+        book = new BookInfo("Order Book", "Fiction", 10.0, "ORDER-1", "Author", "Publisher", "", "");
+        book.setInventory(5);
+        bookRepository.save(book);
+    }
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+        cartRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    // each buyer puts `copies` of the book in their cart and places the order
+    private List<Long> placeOrders(int buyers, int copies) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < buyers; i++) {
+            User u = userRepository.save(new User("orderer" + i, "password", "orderer" + i + "@example.com", "CUSTOMER"));
+            for (int c = 0; c < copies; c++) {
+                cartService.addBookToCart(u, book.getId());
+            }
+            ids.add(cartService.placeOrder(u).orElseThrow());
+        }
+        return ids;
+    }
+
+    private long count(CustomerOrder.Status status) {
+        return orderRepository.findIdsByStatus(status).size();
+    }
+
+    @Test
+    void placingAnOrderEmptiesTheCartAndLeavesStockAlone() {
+        List<Long> ids = placeOrders(1, 2);
+
+        CustomerOrder order = orderRepository.findWithLinesById(ids.get(0)).orElseThrow();
+        assertEquals(CustomerOrder.Status.PENDING, order.getStatus());
+        assertEquals(2, order.getItemCount());
+        assertEquals(2000, order.getTotalCents());
+        assertEquals(0, cartService.getCartSummary(order.getUser()).itemCount());
+        assertEquals(5, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void aBatchTakesTheStockForAllItsOrders() {
+        List<Long> ids = placeOrders(2, 2);
+
+        orderService.process(ids);
+
+        assertEquals(2, count(CustomerOrder.Status.COMPLETED));
+        assertEquals(1, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void aShortBatchRejectsOnlyTheOrdersThatDoNotFit() {
+        List<Long> ids = placeOrders(3, 2);
+
+        orderService.process(ids);
+
+        assertEquals(2, count(CustomerOrder.Status.COMPLETED));
+        assertEquals(1, count(CustomerOrder.Status.REJECTED));
+        assertEquals(1, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+
+        // the rejected order's books are back in its owner's cart
+        CustomerOrder rejected = orderRepository.findWithLinesById(orderRepository.findIdsByStatus(CustomerOrder.Status.REJECTED).get(0)).orElseThrow();
+        User owner = userRepository.findById(rejected.getUser().getId()).orElseThrow();
+        assertEquals(2, cartService.getCartSummary(owner).itemCount());
+        assertTrue(rejected.getFailureReason().contains("Order Book"));
+    }
+
+    @Test
+    void failingAnOrderRejectsItAndPutsItsBooksBack() {
+        Long id = placeOrders(1, 2).get(0);
+
+        orderService.fail(id, "Could not be processed");
+        orderService.fail(id, "again"); // no longer pending: ignored
+
+        CustomerOrder order = orderRepository.findWithLinesById(id).orElseThrow();
+        assertEquals(CustomerOrder.Status.REJECTED, order.getStatus());
+        assertEquals("Could not be processed", order.getFailureReason());
+        assertEquals(2, cartService.getCartSummary(order.getUser()).itemCount());
+        assertEquals(5, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void removingFromTheCartReleasesTheHoldOnlyIfItCommits() {
+        User u = userRepository.save(new User("holder", "password", "holder@example.com", "CUSTOMER"));
+        assertTrue(cartService.reserve(u, book.getId()));
+        assertTrue(cartService.reserve(u, book.getId()));
+        cartService.addBookToCart(u, book.getId());
+        cartService.addBookToCart(u, book.getId());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            cartService.decrementBookInCart(u, book.getId());
+            status.setRollbackOnly();
+        });
+        assertEquals(2, reservations.reserved(book.getId()));
+        assertEquals(2, cartService.getCartSummary(u).itemCount());
+
+        cartService.decrementBookInCart(u, book.getId());
+        assertEquals(1, reservations.reserved(book.getId()));
+
+        cartService.removeBookFromCart(u, book.getId());
+        assertEquals(0, reservations.reserved(book.getId()));
+    }
+
+    @Test
+    void anOrderProcessedByTwoWorkersAtOnceTakesItsStockOnce() throws Exception {
+        book.setInventory(100);
+        book = bookRepository.save(book);
+        List<Long> ids = placeOrders(10, 2);
+
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            for (Long id : ids) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> both = new ArrayList<>();
+                for (int w = 0; w < 2; w++) {
+                    both.add(workers.submit(() -> {
+                        start.await();
+                        orderService.process(List.of(id));
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> f : both) {
+                    f.get(10, TimeUnit.SECONDS);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        assertEquals(10, count(CustomerOrder.Status.COMPLETED));
+        assertEquals(80, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+
+    @Test
+    void workersProcessQueuedOrders() throws Exception {
+        OrderPipeline pipeline = new OrderPipeline(orderService, orderRepository, 2, 100, 10, 3, 100);
+        pipeline.run();
+        try {
+            placeOrders(4, 1).forEach(pipeline::submit);
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (count(CustomerOrder.Status.PENDING) > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+        } finally {
+            pipeline.shutdown();
+        }
+
+        assertEquals(4, count(CustomerOrder.Status.COMPLETED));
+        assertEquals(1, bookRepository.findById(book.getId()).orElseThrow().getInventory());
+    }
+}
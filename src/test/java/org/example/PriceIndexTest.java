@@ -0,0 +1,67 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class PriceIndexTest {
+
+    private PriceIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new PriceIndex(mock(BookRepository.class));
+        index.put(1L, 19.99);
+        index.put(2L, 5.00);
+        index.put(3L, 25.50);
+        index.put(4L, 19.99);
+        index.put(5L, null);
+    }
+
+    @Test
+    void rangeIsInclusiveOnBothEnds() {
+        assertArrayEquals(new int[]{1, 4}, index.find(19.99, 19.99));
+        assertEquals(3, index.count(5.0, 19.99));
+        assertArrayEquals(new int[]{1, 2, 4}, index.find(null, 20.0));
+        assertArrayEquals(new int[]{1, 3, 4}, index.find(10.0, null));
+    }
+
+    @Test
+    void unpricedBooksAreNotIndexed() {
+        assertEquals(4, index.count(null, null));
+    }
+
+    @Test
+    void fractionalCentBoundsBehaveLikeDoubleComparison() {
+        assertEquals(0, index.count(19.995, 20.0));
+        assertEquals(2, index.count(19.985, 19.995));
+    }
+
+    @Test
+    void subCentPricesAreComparedExactly() {
+        index.put(5L, 9.994);
+
+        assertArrayEquals(new int[]{5}, index.find(9.993, 9.995));
+        assertEquals(0, index.count(9.995, 9.999));
+        assertEquals(1, index.count(9.0, 9.994));
+    }
+
+    @Test
+    void emptyAndInvertedRanges() {
+        assertEquals(0, index.find(30.0, 40.0).length);
+        assertEquals(0, index.count(20.0, 10.0));
+    }
+
+    @Test
+    void priceChangesAndRemovalsMoveEntries() {
+        index.put(2L, 30.0);
+        assertArrayEquals(new int[]{2, 3}, index.find(25.0, null));
+        assertEquals(0, index.count(null, 10.0));
+
+        index.onBookChanged(BookChangedEvent.removed(3L));
+        assertArrayEquals(new int[]{2}, index.find(25.0, null));
+        assertEquals(3, index.count(null, null));
+    }
+}
@@ -29,7 +29,7 @@ class PurchaseHistoryControllerIntegrationTest {
     private BookRepository bookRepository;
 
     @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
+    private CartService cartService;
 
     private User customer;
     private User admin;
@@ -37,7 +37,6 @@ class PurchaseHistoryControllerIntegrationTest {
 
     @BeforeEach
     void setUp() {
-        purchaseHistoryRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
 
@@ -58,12 +57,66 @@ class PurchaseHistoryControllerIntegrationTest {
         mockMvc.perform(get("/purchase-history").session(session))
                 .andExpect(status().isOk())
                 .andExpect(view().name("purchase-history"))
-                .andExpect(model().attributeExists("books"))
+                .andExpect(model().attribute("purchases", org.hamcrest.Matchers.empty()))
                 .andExpect(model().attributeExists("user"))
                 .andExpect(model().attributeExists("isLoggedIn"))
                 .andExpect(model().attributeExists("isAdmin"));
     }
 
+    @Test
+    void viewPurchaseHistoryListsEachPurchase() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+
+        cartService.addBookToCart(customer, book.getId());
+        cartService.checkout(customer);
+        cartService.addBookToCart(customer, book.getId());
+        cartService.addBookToCart(customer, book.getId());
+        cartService.checkout(customer);
+
+        mockMvc.perform(get("/purchase-history").session(session))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("purchases", org.hamcrest.Matchers.hasSize(2)))
+                .andExpect(model().attribute("nextCursor", org.hamcrest.Matchers.nullValue()))
+                .andExpect(model().attribute("purchasedCount", 3L));
+    }
+
+    @Test
+    void purchaseApiPagesAndDeletesByKey() throws Exception {
+        MockHttpSession session = new MockHttpSession();
+        session.setAttribute("user", customer);
+        for (int i = 0; i < 3; i++) {
+            cartService.addBookToCart(customer, book.getId());
+            cartService.checkout(customer);
+        }
+
+        String cursor = com.jayway.jsonpath.JsonPath.read(
+                mockMvc.perform(get("/api/purchase-history").param("size", "2").session(session))
+                        .andExpect(status().isOk())
+                        .andExpect(jsonPath("$.purchases.length()").value(2))
+                        .andExpect(jsonPath("$.purchases[0].title").value("Test Book"))
+                        .andExpect(jsonPath("$.nextCursor").isNotEmpty())
+                        .andReturn().getResponse().getContentAsString(), "$.nextCursor");
+
+        String last = mockMvc.perform(get("/api/purchase-history").param("size", "2").param("after", cursor).session(session))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.purchases.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist())
+                .andReturn().getResponse().getContentAsString();
+        Integer id = com.jayway.jsonpath.JsonPath.read(last, "$.purchases[0].id");
+
+        mockMvc.perform(delete("/api/purchase-history/{id}", id).session(session))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/purchase-history/{id}", id).session(session))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/purchase-history"))
+                .andExpect(status().isUnauthorized());
+
+        mockMvc.perform(get("/purchase-history").param("from", "2000-01-01").param("to", "2000-12-31").session(session))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("purchases", org.hamcrest.Matchers.empty()));
+    }
+
     @Test
     void viewPurchaseHistoryNotLoggedIn() throws Exception {
         mockMvc.perform(get("/purchase-history"))
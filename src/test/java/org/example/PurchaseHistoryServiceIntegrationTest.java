@@ -7,6 +7,11 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -18,7 +23,7 @@ class PurchaseHistoryServiceIntegrationTest {
     private PurchaseHistoryService purchaseHistoryService;
 
     @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
+    private CartService cartService;
 
     @Autowired
     private BookRepository bookRepository;
@@ -26,13 +31,15 @@ class PurchaseHistoryServiceIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private OrderLineRepository orderLineRepository;
+
     private User user;
     private BookInfo book1;
     private BookInfo book2;
 
     @BeforeEach
     void setUp() {
-        purchaseHistoryRepository.deleteAll();
         bookRepository.deleteAll();
         userRepository.deleteAll();
 
@@ -45,82 +52,99 @@ class PurchaseHistoryServiceIntegrationTest {
         bookRepository.save(book2);
     }
 
-    @Test
-    void getOrCreateHistory() {
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
+    private void buy(BookInfo... books) {
+        for (BookInfo book : books) {
+            cartService.addBookToCart(user, book.getId());
+        }
+        assertTrue(cartService.checkout(user));
+    }
 
-        assertNotNull(history);
-        assertEquals(user, history.getUser());
-        assertTrue(history.getBooks().isEmpty());
+    private List<OrderLine> purchases() {
+        return purchaseHistoryService.getPurchases(user, null, null, null, 100).purchases();
     }
 
     @Test
-    void getOrCreateHistoryReturnsExistingHistory() {
-        PurchaseHistory history1 = purchaseHistoryService.getOrCreateHistory(user);
-        PurchaseHistory history2 = purchaseHistoryService.getOrCreateHistory(user);
-
-        assertEquals(history1.getId(), history2.getId());
+    void historyIsEmptyBeforeAnyCheckout() {
+        assertTrue(purchases().isEmpty());
+        assertEquals(0, purchaseHistoryService.countPurchasedCopies(user));
     }
 
     @Test
-    void addBookToHistory() {
-        purchaseHistoryService.addBookToHistory(user, book1.getId());
+    void checkoutAppendsPurchases() {
+        buy(book1, book2);
 
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-        assertEquals(1, history.getBooks().size());
-        assertTrue(history.getBooks().contains(book1));
+        List<OrderLine> purchases = purchases();
+        assertEquals(2, purchases.size());
+        assertEquals(List.of("Book Two", "Book One"), purchases.stream().map(OrderLine::getBookTitle).toList());
     }
 
     @Test
-    void addMultipleBooksToHistory() {
-        purchaseHistoryService.addBookToHistory(user, book1.getId());
-        purchaseHistoryService.addBookToHistory(user, book2.getId());
-
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-        assertEquals(2, history.getBooks().size());
-        assertTrue(history.getBooks().contains(book1));
-        assertTrue(history.getBooks().contains(book2));
+    void buyingTheSameBookAgainIsASeparateEntry() {
+        buy(book1);
+        buy(book1, book1);
+
+        assertEquals(2, purchases().size());
+        assertEquals(3, purchaseHistoryService.countPurchasedCopies(user));
     }
 
     @Test
-    void removeBookFromHistory() {
-        purchaseHistoryService.addBookToHistory(user, book1.getId());
-        purchaseHistoryService.addBookToHistory(user, book2.getId());
-
-        purchaseHistoryService.removeBookFromHistory(user, book1.getId());
-
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-        assertEquals(1, history.getBooks().size());
-        assertFalse(history.getBooks().contains(book1));
-        assertTrue(history.getBooks().contains(book2));
+    void pagesFollowTheCursorWithoutOverlap() {
+        for (int i = 0; i < 5; i++) {
+            buy(i % 2 == 0 ? book1 : book2);
+        }
+
+        List<Long> seen = new ArrayList<>();
+        PurchaseCursor cursor = null;
+        int pages = 0;
+        do {
+            PurchaseHistoryService.PurchasePage page = purchaseHistoryService.getPurchases(user, null, null, cursor, 2);
+            page.purchases().forEach(line -> seen.add(line.getId()));
+            cursor = page.next();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(5, seen.size());
+        assertEquals(5, new HashSet<>(seen).size());
+        assertEquals(purchases().stream().map(OrderLine::getId).toList(), seen);
     }
 
     @Test
-    void removeNonExistentBookFromHistory() {
-        purchaseHistoryService.addBookToHistory(user, book1.getId());
+    void dateRangeLimitsThePurchases() {
+        buy(book1);
+        LocalDate today = LocalDate.now();
 
-        purchaseHistoryService.removeBookFromHistory(user, 999L);
-
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-        assertEquals(1, history.getBooks().size());
+        assertEquals(1, purchaseHistoryService.getPurchases(user, today, today, null, 10).purchases().size());
+        assertTrue(purchaseHistoryService.getPurchases(user, today.plusDays(1), null, null, 10).purchases().isEmpty());
+        assertTrue(purchaseHistoryService.getPurchases(user, null, today.minusDays(1), null, 10).purchases().isEmpty());
     }
 
     @Test
-    void saveHistory() {
-        PurchaseHistory history = purchaseHistoryService.getOrCreateHistory(user);
-        history.addBook(book1);
-
-        purchaseHistoryService.save(history);
-
-        var savedHistory = purchaseHistoryRepository.findByUser(user);
-        assertTrue(savedHistory.isPresent());
-        assertEquals(1, savedHistory.get().getBooks().size());
+    void removePurchaseByKey() {
+        buy(book1, book2);
+        Long book1Entry = purchases().stream()
+                .filter(line -> line.getBook().getId().equals(book1.getId()))
+                .findFirst().orElseThrow().getId();
+
+        assertTrue(purchaseHistoryService.removePurchase(user, book1Entry));
+
+        List<OrderLine> purchases = purchases();
+        assertEquals(1, purchases.size());
+        assertEquals(book2.getId(), purchases.get(0).getBook().getId());
+        assertEquals(1, purchaseHistoryService.countPurchasedCopies(user));
+
+        // hidden, not deleted: the order still matches its lines
+        assertTrue(orderLineRepository.existsById(book1Entry));
+        assertEquals(2, purchases.get(0).getOrder().getItemCount());
+        assertFalse(purchaseHistoryService.removePurchase(user, book1Entry));
     }
 
     @Test
-    void addBookToHistoryThrowsExceptionForNonExistentBook() {
-        assertThrows(IllegalArgumentException.class, () -> {
-            purchaseHistoryService.addBookToHistory(user, 999L);
-        });
+    void removeNonExistentPurchase() {
+        buy(book1);
+
+        assertFalse(purchaseHistoryService.removePurchase(user, 999L));
+
+        assertEquals(1, purchases().size());
     }
 }
@@ -0,0 +1,111 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RecommendationCacheTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private RecommendationIndex index;
+    private RecommendationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        index = mock(RecommendationIndex.class);
+        cache = new RecommendationCache(index, 2, 1000, now::get);
+    }
+
+    @Test
+    void hitsUntilInvalidated() {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(List.of(1L), cache.get(7L, 10, () -> List.of(1L + loads.getAndIncrement())));
+        assertEquals(List.of(1L), cache.get(7L, 10, () -> List.of(1L + loads.getAndIncrement())));
+        cache.onPurchasesChanged(new PurchasesChangedEvent(7L));
+        assertEquals(List.of(2L), cache.get(7L, 10, () -> List.of(1L + loads.getAndIncrement())));
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void entriesExpireAndGoStaleWithTheCatalog() {
+        cache.get(7L, 10, () -> List.of(1L));
+
+        now.set(999);
+        assertEquals(List.of(1L), cache.get(7L, 10, () -> List.of(2L)));
+        now.set(1000);
+        assertEquals(List.of(3L), cache.get(7L, 10, () -> List.of(3L)));
+
+        when(index.version()).thenReturn(1L);
+        assertEquals(List.of(4L), cache.get(7L, 10, () -> List.of(4L)));
+        assertEquals(List.of(5L), cache.get(7L, 5, () -> List.of(5L))); // a different limit is a miss too
+    }
+
+    @Test
+    void leastRecentlyUsedUserIsEvicted() {
+        cache.get(1L, 10, () -> List.of(1L));
+        cache.get(2L, 10, () -> List.of(2L));
+        cache.get(1L, 10, () -> List.of(-1L)); // touch 1
+        cache.get(3L, 10, () -> List.of(3L));
+
+        assertEquals(2, cache.size());
+        assertEquals(List.of(1L), cache.get(1L, 10, () -> List.of(-1L)));
+        assertEquals(List.of(-2L), cache.get(2L, 10, () -> List.of(-2L)));
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        assertThrows(IllegalStateException.class, () -> cache.get(7L, 10, () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(List.of(1L), cache.get(7L, 10, () -> List.of(1L)));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<List<Long>> first = pool.submit(() -> cache.get(7L, 10, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return List.of(42L);
+            }));
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+            List<Future<List<Long>>> others = new java.util.ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                others.add(pool.submit(() -> cache.get(7L, 10, () -> {
+                    loads.incrementAndGet();
+                    return List.of(-1L);
+                })));
+            }
+            release.countDown();
+
+            assertEquals(List.of(42L), first.get(5, TimeUnit.SECONDS));
+            for (Future<List<Long>> other : others) {
+                assertEquals(List.of(42L), other.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RecommendationIndexTest {
+
+    private static final long FANTASY = 10L;
+    private static final long SCI_FI = 20L;
+
+    private static final long COOKING = 30L;
+
+    private GenreFacetIndex genreIndex;
+    private RecommendationIndex index;
+
+    @BeforeEach
+    void setUp() {
+        genreIndex = new GenreFacetIndex(mock(BookRepository.class));
+        index = new RecommendationIndex(mock(BookRepository.class), genreIndex);
+
+        save(book(1L, 10.0, FANTASY));
+        save(book(2L, 8.0, FANTASY, SCI_FI));
+        save(book(3L, 30.0, SCI_FI));
+        save(book(4L, 12.0, SCI_FI));
+        save(book(5L, 50.0, COOKING));
+    }
+
+    @Test
+    void booksInSeveralGenresScoreTheSumOfTheirWeights() {
+        List<Long> top = index.topBooks(Map.of(FANTASY, 1.0, SCI_FI, 2.0), Set.of(), 10);
+
+        // 2 scores 3; 3 and 4 score 2 and tie on price; 1 scores 1; 5 is in no profile genre
+        assertEquals(List.of(2L, 3L, 4L, 1L), top);
+    }
+
+    @Test
+    void keepsOnlyTheBestLimitAndSkipsExcluded() {
+        assertEquals(List.of(2L, 3L), index.topBooks(Map.of(FANTASY, 1.0, SCI_FI, 2.0), Set.of(), 2));
+        assertEquals(List.of(3L, 4L), index.topBooks(Map.of(FANTASY, 1.0, SCI_FI, 2.0), Set.of(2L), 2));
+    }
+
+    @Test
+    void followsBookChangesAndRemovals() {
+        save(book(4L, 12.0, FANTASY));
+        remove(3L);
+
+        assertEquals(List.of(2L), index.topBooks(Map.of(SCI_FI, 1.0), Set.of(), 10));
+        assertEquals(List.of(4L, 1L, 2L), index.topBooks(Map.of(FANTASY, 1.0), Set.of(), 10));
+    }
+
+    @Test
+    void versionChangesWithGenresAndPriceButNotWithAReSave() {
+        long before = index.version();
+        save(book(1L, 10.0, FANTASY));
+        assertEquals(before, index.version());
+
+        save(book(1L, 10.0, SCI_FI));
+        long refiled = index.version();
+        assertNotEquals(before, refiled);
+
+        save(book(1L, 11.0, SCI_FI));
+        assertNotEquals(refiled, index.version());
+    }
+
+    @Test
+    void snapshotKeepsTheCatalogItWasTakenFrom() {
+        RecommendationIndex.Snapshot snapshot = index.snapshot();
+        long version = index.version();
+        remove(2L);
+
+        assertEquals(version, snapshot.version());
+        assertEquals(List.of(1L, 2L), snapshot.topBooks(Map.of(FANTASY, 1.0), Set.of(), 10));
+        assertEquals(List.of(1L), index.topBooks(Map.of(FANTASY, 1.0), Set.of(), 10));
+    }
+
+    // both indexes listen to the same event
+    private void save(BookInfo book) {
+        genreIndex.onBookChanged(BookChangedEvent.saved(book));
+        index.onBookChanged(BookChangedEvent.saved(book));
+    }
+
+    private void remove(Long id) {
+        genreIndex.onBookChanged(BookChangedEvent.removed(id));
+        index.onBookChanged(BookChangedEvent.removed(id));
+    }
+
+    private static BookInfo book(Long id, double price, long... genreIds) {
+        BookInfo book = new BookInfo("Book " + id, "", price, "isbn" + id, "Author", "Publisher", "", "");
+        ReflectionTestUtils.setField(book, "id", id);
+        for (long genreId : genreIds) {
+            Genre genre = new Genre("Genre " + genreId);
+            ReflectionTestUtils.setField(genre, "id", genreId);
+            book.getGenres().add(genre);
+        }
+        return book;
+    }
+}
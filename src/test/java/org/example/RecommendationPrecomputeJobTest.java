@@ -0,0 +1,160 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecommendationPrecomputeJobTest {
+
+    private static final List<Long> USERS = LongStream.rangeClosed(1, 25).boxed().toList();
+
+    private UserRepository userRepository;
+    private OrderLineRepository orderLineRepository;
+    private GenreAffinityService affinityService;
+    private RecommendationService recommendationService;
+    private RecommendationIndex index;
+    private UserRecommendationStore store;
+    private RecommendationPrecomputeJob job;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        when(userRepository.findCustomerIdsAfter(anyLong(), any())).thenAnswer(inv -> {
+            long after = inv.getArgument(0);
+            Pageable page = inv.getArgument(1);
+            return USERS.stream().filter(id -> id > after).limit(page.getPageSize()).toList();
+        });
+
+        // even users bought book 1 (genre 10); odd users haven't bought anything
+        orderLineRepository = mock(OrderLineRepository.class);
+        when(orderLineRepository.findPurchasedBookIds(anyLong())).thenReturn(List.of(1L));
+        affinityService = mock(GenreAffinityService.class);
+        when(affinityService.readProfile(anyLong())).thenAnswer(inv -> {
+            long userId = inv.getArgument(0);
+            GenreAffinity profile = new GenreAffinity(userId, Instant.now());
+            if (userId % 2 == 0) {
+                profile.add(Map.of(10L, 1.0), Instant.now(), null);
+            }
+            ReflectionTestUtils.setField(profile, "version", 3L);
+            return profile;
+        });
+
+        recommendationService = mock(RecommendationService.class);
+        when(recommendationService.recommend(any(), any(), anyInt(), any(), any())).thenCallRealMethod();
+        when(recommendationService.mostExpensiveBookIds()).thenReturn(List.of(99L));
+
+        GenreFacetIndex genreIndex = new GenreFacetIndex(mock(BookRepository.class));
+        index = new RecommendationIndex(mock(BookRepository.class), genreIndex);
+        for (BookInfo book : List.of(book(1L, 10.0), book(2L, 12.0))) {
+            genreIndex.onBookChanged(BookChangedEvent.saved(book));
+            index.onBookChanged(BookChangedEvent.saved(book));
+        }
+
+        store = mock(UserRecommendationStore.class);
+        when(store.loadProgress()).thenReturn(Optional.empty());
+
+        job = new RecommendationPrecomputeJob(userRepository, orderLineRepository, affinityService, recommendationService,
+                index, store, 2, 5, 10, 3);
+    }
+
+    @Test
+    void writesEveryCustomerInWavesAndFinishes() {
+        assertTrue(job.run());
+
+        Map<Long, UserRecommendationStore.Row> rows = savedRows();
+        assertEquals(new HashSet<>(USERS), rows.keySet());
+        assertEquals(List.of(2L), rows.get(4L).bookIds());    // owns book 1
+        assertEquals(List.of(99L), rows.get(5L).bookIds());   // no purchases
+        assertEquals(index.version(), rows.get(4L).catalogVersion());
+        assertEquals(3L, rows.get(4L).affinityVersion());
+        assertEquals(5, rows.get(4L).topN());
+
+        ArgumentCaptor<UserRecommendationStore.Progress> progress = ArgumentCaptor.forClass(UserRecommendationStore.Progress.class);
+        verify(store, times(4)).saveProgress(progress.capture()); // 3 waves + done
+        assertEquals(List.of(10L, 20L, 25L, 25L), progress.getAllValues().stream().map(UserRecommendationStore.Progress::lastUserId).toList());
+        assertEquals(UserRecommendationStore.Status.DONE, progress.getValue().status());
+
+        RecommendationPrecomputeJob.RunStats stats = job.lastRun().orElseThrow();
+        assertEquals("DONE", stats.status());
+        assertEquals(25, stats.usersProcessed());
+        assertEquals(0, stats.failures());
+    }
+
+    @Test
+    void unfinishedRunAgainstTheSameCatalogResumes() {
+        when(store.loadProgress()).thenReturn(Optional.of(new UserRecommendationStore.Progress(
+                UserRecommendationStore.Status.RUNNING, 20L, index.version(), 20L, 0L, Instant.now(), null)));
+
+        job.run();
+
+        assertEquals(Set.of(21L, 22L, 23L, 24L, 25L), savedRows().keySet());
+        RecommendationPrecomputeJob.RunStats stats = job.lastRun().orElseThrow();
+        assertEquals(25, stats.usersProcessed());
+        assertEquals(20, stats.resumedAfterUserId());
+    }
+
+    @Test
+    void unfinishedRunAgainstAnOlderCatalogStartsOver() {
+        when(store.loadProgress()).thenReturn(Optional.of(new UserRecommendationStore.Progress(
+                UserRecommendationStore.Status.RUNNING, 20L, index.version() + 1, 20L, 0L, Instant.now(), null)));
+
+        job.run();
+
+        assertEquals(25, savedRows().size());
+    }
+
+    @Test
+    void oneFailingCustomerDoesNotStopTheRun() {
+        when(affinityService.readProfile(7L)).thenThrow(new IllegalStateException("boom"));
+
+        job.run();
+
+        assertEquals(24, savedRows().size());
+        assertEquals(1, job.lastRun().orElseThrow().failures());
+    }
+
+    @Test
+    void scheduledRunLeavesTheSchedulerThread() throws Exception {
+        CompletableFuture<String> ranOn = new CompletableFuture<>();
+        doAnswer(inv -> ranOn.complete(Thread.currentThread().getName()))
+                .when(store).saveProgress(argThat(p -> p.status() == UserRecommendationStore.Status.DONE));
+
+        job.scheduledRun();
+
+        assertEquals("recommendation-precompute", ranOn.get(10, TimeUnit.SECONDS));
+        job.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, UserRecommendationStore.Row> savedRows() {
+        ArgumentCaptor<List<UserRecommendationStore.Row>> batches = ArgumentCaptor.forClass(List.class);
+        verify(store, atLeastOnce()).saveAll(batches.capture());
+        Map<Long, UserRecommendationStore.Row> rows = new HashMap<>();
+        for (List<UserRecommendationStore.Row> batch : batches.getAllValues()) {
+            assertTrue(batch.size() <= 3, "leaves hold at most chunk-size customers");
+            batch.forEach(row -> assertNull(rows.put(row.userId(), row), "user written twice"));
+        }
+        return rows;
+    }
+
+    private static BookInfo book(Long id, double price) {
+        BookInfo book = new BookInfo("Book " + id, "Fantasy", price, "isbn" + id, "Author", "Publisher", "", "");
+        ReflectionTestUtils.setField(book, "id", id);
+        Genre fantasy = new Genre("Fantasy");
+        ReflectionTestUtils.setField(fantasy, "id", 10L);
+        book.getGenres().add(fantasy);
+        return book;
+    }
+}
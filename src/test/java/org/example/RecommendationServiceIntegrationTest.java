@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class RecommendationServiceIntegrationTest {
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private GenreService genreService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    private User user;
+    private BookInfo hobbit;
+    private BookInfo silmarillion;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User("reader", "password", "reader@example.com", "CUSTOMER"));
+
+        hobbit = new BookInfo("The Hobbit", "Fantasy", 15.0, "ISBN-H", "Tolkien", "Allen", "", "");
+        silmarillion = new BookInfo("The Silmarillion", "Fantasy", 18.0, "ISBN-S", "Tolkien", "Allen", "", "");
+        genreService.linkGenres(List.of(hobbit, silmarillion));
+        bookRepository.saveAll(List.of(hobbit, silmarillion));
+        // the index follows the events BookController publishes
+        events.publishEvent(BookChangedEvent.saved(hobbit));
+        events.publishEvent(BookChangedEvent.saved(silmarillion));
+    }
+
+    @Test
+    void checkoutReplacesTheCachedRecommendations() {
+        List<BookInfo> before = recommendationService.getRecommendations(user, 10);
+        assertTrue(before.stream().anyMatch(b -> b.getId().equals(hobbit.getId())));
+
+        cartService.addBookToCart(user, hobbit.getId());
+        assertTrue(cartService.checkout(user));
+
+        List<BookInfo> after = recommendationService.getRecommendations(user, 10);
+        assertEquals(List.of(silmarillion.getId()), after.stream().map(BookInfo::getId).toList());
+    }
+}
@@ -1,45 +1,60 @@
 package org.example;
 
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class RecommendationServiceTest {
 
     @Mock
-    private PurchaseHistoryRepository purchaseRepo;
+    private OrderLineRepository orderLineRepo;
 
     @Mock
     private BookRepository bookRepo;
 
+    @Mock
+    private GenreAffinityService affinityService;
+
+    @Mock
+    private RecommendationIndex recommendationIndex;
+
+    @Mock
+    private UserRecommendationStore precomputed;
+
     @InjectMocks
     private RecommendationService recommendationService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(recommendationService, "recommendationCache",
+                new RecommendationCache(recommendationIndex, 100, 60_000, System::currentTimeMillis));
     }
     @Test
     void testNoPurchasesReturnsTopBooks() {
         User user = new User();
         user.setId(1L);
 
-        when(purchaseRepo.findGenresByUser(user.getId())).thenReturn(Collections.emptyList());
+        when(affinityService.getAffinity(user.getId())).thenReturn(Collections.emptyMap());
 
-        List<BookInfo> topBooks = List.of(
-                new BookInfo("Book1", "Fiction", 20.0, "123", "Author1", "Publisher1", "Desc1", "/cover1.jpg"),
-                new BookInfo("Book2", "Sci-Fi", 25.0, "456", "Author2", "Publisher2", "Desc2", "/cover2.jpg")
-        );
+        BookInfo book1 = new BookInfo("Book1", "Fiction", 20.0, "123", "Author1", "Publisher1", "Desc1", "/cover1.jpg");
+        BookInfo book2 = new BookInfo("Book2", "Sci-Fi", 25.0, "456", "Author2", "Publisher2", "Desc2", "/cover2.jpg");
+        ReflectionTestUtils.setField(book1, "id", 1L);
+        ReflectionTestUtils.setField(book2, "id", 2L);
 
-        when(bookRepo.findTop10ByOrderByBookPriceDesc()).thenReturn(topBooks);
+        when(bookRepo.findTop10ByOrderByBookPriceDesc()).thenReturn(List.of(book1, book2));
+        when(bookRepo.findById(1L)).thenReturn(Optional.of(book1));
+        when(bookRepo.findById(2L)).thenReturn(Optional.of(book2));
 
         List<BookInfo> recommendations = recommendationService.getRecommendations(user, 10);
 
@@ -47,10 +62,61 @@ class RecommendationServiceTest {
         assertEquals("Book1", recommendations.get(0).getBookTitle());
         assertEquals("Book2", recommendations.get(1).getBookTitle());
 
-        verify(purchaseRepo).findGenresByUser(user.getId());
+        verify(affinityService).getAffinity(user.getId());
         verify(bookRepo).findTop10ByOrderByBookPriceDesc();
     }
 
+    @Test
+    void testSecondCallIsServedFromTheCache() {
+        User user = new User();
+        user.setId(1L);
+        when(affinityService.getAffinity(1L)).thenReturn(Map.of(20L, 1.0));
+        when(recommendationIndex.topBooks(any(), any(), eq(10))).thenReturn(List.of(101L));
+        BookInfo foundation = new BookInfo("Foundation", "Sci-Fi", 11.0, "2", "Asimov", "Gnome", "", "");
+        when(bookRepo.findById(101L)).thenReturn(Optional.of(foundation));
+
+        recommendationService.getRecommendations(user, 10);
+        List<BookInfo> again = recommendationService.getRecommendations(user, 10);
+
+        assertEquals(List.of(foundation), again);
+        verify(affinityService, times(1)).getAffinity(1L);
+        verify(recommendationIndex, times(1)).topBooks(any(), any(), eq(10));
+    }
+
+    @Test
+    void testOwnedBooksAreExcludedAndIndexOrderIsKept() {
+        User user = new User();
+        user.setId(1L);
+
+        Map<Long, Double> affinity = Map.of(20L, 3.0, 10L, 1.0);
+        when(affinityService.getAffinity(1L)).thenReturn(affinity);
+        when(orderLineRepo.findPurchasedBookIds(1L)).thenReturn(List.of(100L));
+        when(recommendationIndex.topBooks(affinity, Set.of(100L), 10)).thenReturn(List.of(102L, 101L));
+
+        BookInfo foundation = new BookInfo("Foundation", "Sci-Fi", 11.0, "2", "Asimov", "Gnome", "", "");
+        BookInfo hobbit = new BookInfo("The Hobbit", "Fantasy", 15.0, "3", "Tolkien", "Allen", "", "");
+        when(bookRepo.findById(101L)).thenReturn(Optional.of(foundation));
+        when(bookRepo.findById(102L)).thenReturn(Optional.of(hobbit));
+
+        List<BookInfo> recommendations = recommendationService.getRecommendations(user, 10);
+
+        assertEquals(List.of("The Hobbit", "Foundation"), recommendations.stream().map(BookInfo::getBookTitle).toList());
+        verify(bookRepo, never()).findAll();
+    }
+
+    @Test
+    void testValidPrecomputedRowSkipsLiveComputation() {
+        User user = new User();
+        user.setId(1L);
+        when(recommendationIndex.version()).thenReturn(77L);
+        when(precomputed.lookup(1L, 10, 77L)).thenReturn(Optional.of(List.of(101L)));
+        BookInfo foundation = new BookInfo("Foundation", "Sci-Fi", 11.0, "2", "Asimov", "Gnome", "", "");
+        when(bookRepo.findById(101L)).thenReturn(Optional.of(foundation));
+
+        assertEquals(List.of(foundation), recommendationService.getRecommendations(user, 10));
+        verifyNoInteractions(affinityService, orderLineRepo);
+    }
+
     @Test
     void testNullUserReturnsEmptyList() {
         List<BookInfo> recommendations = recommendationService.getRecommendations(null, 10);
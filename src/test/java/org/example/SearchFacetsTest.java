@@ -0,0 +1,84 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class SearchFacetsTest {
+
+    private static final List<String> GENRE_IDS = List.of("Classic", "Fantasy", "Sci-Fi");
+
+    private GenreFacetIndex genreIndex;
+    private BookInfo dune;
+    private BookInfo hobbit;
+    private BookInfo gatsby;
+
+    @BeforeEach
+    void setUp() {
+        genreIndex = new GenreFacetIndex(mock(BookRepository.class));
+        dune = book(1L, "Dune", "Sci-Fi, Classic", 9.99);
+        hobbit = book(2L, "The Hobbit", "Fantasy, Classic", 15.00);
+        gatsby = book(3L, "The Great Gatsby", "Classic", 120.00);
+        for (BookInfo b : List.of(dune, hobbit, gatsby)) {
+            genreIndex.onBookChanged(BookChangedEvent.saved(b));
+        }
+    }
+
+    @Test
+    void genreCountsOnlyCoverTheResultSet() {
+        SearchFacets facets = SearchFacets.compute(List.of(dune, hobbit), genreIndex,
+                List.of("Classic", "Fantasy", "Sci-Fi", "Horror"));
+
+        assertEquals(Map.of("Classic", 2, "Fantasy", 1, "Sci-Fi", 1, "Horror", 0), facets.genreCounts());
+        assertEquals(List.of("Classic", "Fantasy", "Sci-Fi", "Horror"), List.copyOf(facets.genreCounts().keySet()));
+    }
+
+    @Test
+    void priceHistogramBucketsAreHalfOpen() {
+        SearchFacets facets = SearchFacets.compute(List.of(dune, hobbit, gatsby, book(4L, "Ten", null, 10.00)),
+                genreIndex, List.of());
+
+        List<SearchFacets.PriceBucket> buckets = facets.priceHistogram();
+        assertEquals(SearchFacets.PRICE_EDGES.length, buckets.size());
+        assertEquals(new SearchFacets.PriceBucket(0, 10.0, 1), buckets.get(0));
+        assertEquals(new SearchFacets.PriceBucket(10, 20.0, 2), buckets.get(1));
+        assertEquals(new SearchFacets.PriceBucket(100, null, 1), buckets.get(buckets.size() - 1));
+    }
+
+    @Test
+    void removalsAndGenreChangesAreReflected() {
+        genreIndex.onBookChanged(BookChangedEvent.removed(3L));
+        hobbit.setBookGenre("Fantasy");
+        link(hobbit);
+        genreIndex.onBookChanged(BookChangedEvent.saved(hobbit));
+
+        SearchFacets facets = SearchFacets.compute(List.of(dune, hobbit, gatsby), genreIndex,
+                List.of("Classic", "Fantasy"));
+
+        assertEquals(1, facets.genreCounts().get("Classic"));
+        assertEquals(1, facets.genreCounts().get("Fantasy"));
+    }
+
+    private static BookInfo book(Long id, String title, String genres, Double price) {
+        BookInfo b = new BookInfo(title, genres, price, "isbn-" + id, "Author", "Publisher", "", "");
+        ReflectionTestUtils.setField(b, "id", id);
+        link(b);
+        return b;
+    }
+
+    // what GenreService.linkGenres does before a save, with ids standing in for the Genre rows
+    private static void link(BookInfo book) {
+        book.getGenres().clear();
+        for (String name : GenreService.splitGenres(book.getBookGenre())) {
+            Genre genre = new Genre(name);
+            ReflectionTestUtils.setField(genre, "id", (long) GENRE_IDS.indexOf(name));
+            book.getGenres().add(genre);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockReservationsTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private StockReservations reservations;
+
+    @BeforeEach
+    void setUp() {
+        // 10s TTL on a 1s tick
+        reservations = new StockReservations(10_000, 1_000, now::get);
+    }
+
+    @Test
+    void reserveStopsAtTheStockLevel() {
+        assertTrue(reservations.reserve(1L, 7L, 2, 1));
+        assertTrue(reservations.reserve(2L, 7L, 2, 1));
+        assertFalse(reservations.reserve(3L, 7L, 2, 1));
+
+        assertEquals(2, reservations.reserved(7L));
+        assertTrue(reservations.holds(1L, 7L, 1));
+        assertFalse(reservations.holds(3L, 7L, 1));
+    }
+
+    @Test
+    void releaseFreesUnitsForOthers() {
+        reservations.reserve(1L, 7L, 1, 1);
+        reservations.release(1L, 7L, 5);
+
+        assertEquals(0, reservations.reserved(7L));
+        assertTrue(reservations.reserve(2L, 7L, 1, 1));
+        reservations.release(2L, Map.of(7L, 1));
+        assertEquals(0, reservations.reserved(7L));
+    }
+
+    @Test
+    void holdsExpireAfterTheTtl() {
+        reservations.reserve(1L, 7L, 5, 2);
+
+        now.addAndGet(9_000);
+        reservations.expire();
+        assertEquals(2, reservations.reserved(7L));
+
+        now.addAndGet(2_000);
+        reservations.expire();
+        assertEquals(0, reservations.reserved(7L));
+        assertFalse(reservations.holds(1L, 7L, 1));
+    }
+
+    @Test
+    void anotherAddRenewsTheHold() {
+        reservations.reserve(1L, 7L, 5, 1);
+        now.addAndGet(8_000);
+        reservations.reserve(1L, 7L, 5, 1);
+
+        // the first deadline passes, but the hold was renewed
+        now.addAndGet(4_000);
+        reservations.expire();
+        assertTrue(reservations.holds(1L, 7L, 2));
+
+        now.addAndGet(7_000);
+        reservations.expire();
+        assertEquals(0, reservations.reserved(7L));
+    }
+
+    @Test
+    void refusedAddStillRenewsAnExistingHold() {
+        reservations.reserve(1L, 7L, 1, 1);
+        now.addAndGet(8_000);
+        assertFalse(reservations.reserve(1L, 7L, 1, 1));
+
+        now.addAndGet(4_000);
+        reservations.expire();
+        assertTrue(reservations.holds(1L, 7L, 1));
+    }
+}
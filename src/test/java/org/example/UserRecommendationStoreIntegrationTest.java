@@ -0,0 +1,71 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Transactional
+@ActiveProfiles("test")
+class UserRecommendationStoreIntegrationTest {
+
+    @Autowired
+    private UserRecommendationStore store;
+
+    @Autowired
+    private GenreAffinityRepository affinityRepository;
+
+    @Test
+    void lookupReturnsRowsComputedFromTheCurrentCatalogAndProfile() {
+        GenreAffinity profile = affinityRepository.saveAndFlush(new GenreAffinity(501L, Instant.now()));
+        store.saveAll(List.of(
+                new UserRecommendationStore.Row(501L, List.of(3L, 1L, 2L), 3, 77L, profile.getVersion()),
+                new UserRecommendationStore.Row(502L, List.of(), 3, 77L, -1)));
+
+        assertEquals(Optional.of(List.of(3L, 1L)), store.lookup(501L, 2, 77L));
+        assertEquals(Optional.of(List.of()), store.lookup(502L, 3, 77L)); // no profile row, nothing to recommend
+        assertTrue(store.lookup(501L, 2, 78L).isEmpty());               // catalog changed
+        assertTrue(store.lookup(501L, 4, 77L).isEmpty());               // asked for more than was computed
+        assertTrue(store.lookup(503L, 2, 77L).isEmpty());
+    }
+
+    @Test
+    void profileChangeInvalidatesTheRow() {
+        GenreAffinity profile = affinityRepository.saveAndFlush(new GenreAffinity(601L, Instant.now()));
+        store.saveAll(List.of(new UserRecommendationStore.Row(601L, List.of(1L), 5, 77L, profile.getVersion())));
+
+        profile.add(Map.of(1L, 1.0), Instant.now(), null);
+        affinityRepository.saveAndFlush(profile);
+
+        assertTrue(store.lookup(601L, 1, 77L).isEmpty());
+    }
+
+    @Test
+    void rowsAreOverwritten() {
+        store.saveAll(List.of(new UserRecommendationStore.Row(701L, List.of(1L), 5, 77L, -1)));
+        store.saveAll(List.of(new UserRecommendationStore.Row(701L, List.of(9L, 8L), 5, 77L, -1)));
+
+        assertEquals(Optional.of(List.of(9L, 8L)), store.lookup(701L, 5, 77L));
+    }
+
+    @Test
+    void progressRoundTrips() {
+        Instant started = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        UserRecommendationStore.Progress progress = new UserRecommendationStore.Progress(
+                UserRecommendationStore.Status.RUNNING, 42L, 77L, 40L, 1L, started, null);
+
+        store.saveProgress(progress);
+
+        assertEquals(Optional.of(progress), store.loadProgress());
+    }
+}
@@ -25,13 +25,9 @@ class UserServiceTest {
     @Autowired
     private CartRepository cartRepository;
 
-    @Autowired
-    private PurchaseHistoryRepository purchaseHistoryRepository;
-
     @BeforeEach
     void setUp() {
         cartRepository.deleteAll();
-        purchaseHistoryRepository.deleteAll();
         userRepository.deleteAll();
     }
 